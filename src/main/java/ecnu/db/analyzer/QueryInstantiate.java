@@ -123,7 +123,7 @@ public class QueryInstantiate implements Callable<Integer> {
                 .flatMap(Collection::stream).collect(Collectors.toSet());
 
         ColumnManager.getInstance().cacheAttributeColumn(prepareSamplingColumnName);
-        ColumnManager.getInstance().prepareGeneration(samplingSize);
+        ColumnManager.getInstance().prepareGeneration(0, samplingSize);
 
         filterOperations.parallelStream()
                 .filter(MultiVarFilterOperation.class::isInstance)
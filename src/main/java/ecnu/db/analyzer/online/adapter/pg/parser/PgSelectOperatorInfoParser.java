@@ -0,0 +1,1378 @@
+
+//----------------------------------------------------
+// The following code was generated by CUP v0.11b 20160615 (GIT 4ac7450)
+//----------------------------------------------------
+
+package ecnu.db.analyzer.online.adapter.pg.parser;
+
+import java.util.*;
+import ecnu.db.generator.constraintchain.filter.arithmetic.*;
+import ecnu.db.generator.constraintchain.filter.operation.*;
+import ecnu.db.generator.constraintchain.filter.*;
+import java.io.StringReader;
+import ecnu.db.generator.constraintchain.filter.Parameter;
+import java_cup.runtime.XMLElement;
+
+/** CUP v0.11b 20160615 (GIT 4ac7450) generated parser.
+  */
+@SuppressWarnings({"rawtypes"})
+public class PgSelectOperatorInfoParser extends java_cup.runtime.lr_parser {
+
+ public final Class getSymbolContainer() {
+    return PgSelectSymbol.class;
+}
+
+  /** Default constructor. */
+  @Deprecated
+  public PgSelectOperatorInfoParser() {super();}
+
+  /** Constructor which sets the default scanner. */
+  @Deprecated
+  public PgSelectOperatorInfoParser(java_cup.runtime.Scanner s) {super(s);}
+
+  /** Constructor which sets the default scanner. */
+  public PgSelectOperatorInfoParser(java_cup.runtime.Scanner s, java_cup.runtime.SymbolFactory sf) {super(s,sf);}
+
+  /** Production table. */
+  protected static final short _production_table[][] = 
+    unpackFromStrings(new String[] {
+    "\000\075\000\002\002\004\000\002\002\003\000\002\003" +
+    "\003\000\002\003\003\000\002\003\003\000\002\003\003" +
+    "\000\002\004\006\000\002\004\006\000\002\005\005\000" +
+    "\002\005\004\000\002\006\005\000\002\006\004\000\002" +
+    "\007\003\000\002\007\003\000\002\010\007\000\002\010" +
+    "\007\000\002\011\003\000\002\011\003\000\002\011\003" +
+    "\000\002\011\003\000\002\011\003\000\002\011\003\000" +
+    "\002\012\003\000\002\012\003\000\002\012\003\000\002" +
+    "\013\003\000\002\013\003\000\002\014\011\000\002\014" +
+    "\013\000\002\014\016\000\002\014\020\000\002\025\003" +
+    "\000\002\025\003\000\002\015\003\000\002\015\003\000" +
+    "\002\015\003\000\002\015\003\000\002\016\003\000\002" +
+    "\016\004\000\002\017\011\000\002\026\003\000\002\026" +
+    "\003\000\002\020\007\000\002\020\003\000\002\020\005" +
+    "\000\002\020\003\000\002\020\003\000\002\020\012\000" +
+    "\002\020\004\000\002\020\004\000\002\020\004\000\002" +
+    "\020\004\000\002\027\007\000\002\027\005\000\002\021" +
+    "\003\000\002\021\003\000\002\021\003\000\002\021\003" +
+    "\000\002\022\006\000\002\023\003\000\002\023\003" });
+
+  /** Access to production table. */
+  public short[][] production_table() {return _production_table;}
+
+  /** Parse-action table. */
+  protected static final short[][] _action_table = 
+    unpackFromStrings(new String[] {
+    "\000\201\000\004\010\015\001\002\000\012\002\uffe7\011" +
+    "\uffe7\016\uffe7\017\uffe7\001\002\000\012\002\ufff4\011\ufff4" +
+    "\016\ufff4\017\ufff4\001\002\000\004\002\000\001\002\000" +
+    "\012\002\ufffc\011\ufffc\016\ufffc\017\ufffc\001\002\000\012" +
+    "\002\uffe8\011\uffe8\016\uffe8\017\uffe8\001\002\000\012\002" +
+    "\ufffd\011\ufffd\016\ufffd\017\ufffd\001\002\000\012\002\ufff5" +
+    "\011\ufff5\016\ufff5\017\ufff5\001\002\000\012\002\uffff\011" +
+    "\uffff\016\uffff\017\uffff\001\002\000\004\002\203\001\002" +
+    "\000\024\010\020\030\030\033\025\034\022\035\024\036" +
+    "\017\040\026\041\027\042\031\001\002\000\012\002\ufffe" +
+    "\011\ufffe\016\ufffe\017\ufffe\001\002\000\004\010\174\001" +
+    "\002\000\024\010\020\030\030\033\157\034\022\035\024" +
+    "\036\017\040\026\041\027\042\031\001\002\000\006\016" +
+    "\145\017\146\001\002\000\030\004\uffd3\005\uffd3\006\uffd3" +
+    "\007\uffd3\011\uffd3\020\uffd3\021\uffd3\022\uffd3\023\uffd3\024" +
+    "\uffd3\025\uffd3\001\002\000\016\020\113\021\114\022\115" +
+    "\023\116\024\120\025\112\001\002\000\004\010\065\001" +
+    "\002\000\026\012\045\013\051\015\050\020\uffd6\021\uffd6" +
+    "\022\uffd6\023\uffd6\024\uffd6\025\uffd6\027\044\001\002\000" +
+    "\004\010\033\001\002\000\004\010\033\001\002\000\030" +
+    "\004\uffd4\005\uffd4\006\uffd4\007\uffd4\011\uffd4\020\uffd4\021" +
+    "\uffd4\022\uffd4\023\uffd4\024\uffd4\025\uffd4\001\002\000\004" +
+    "\010\033\001\002\000\030\004\uffcf\005\uffcf\006\uffcf\007" +
+    "\uffcf\011\uffcf\020\uffcf\021\uffcf\022\uffcf\023\uffcf\024\uffcf" +
+    "\025\uffcf\001\002\000\006\010\035\033\034\001\002\000" +
+    "\004\011\041\001\002\000\004\033\036\001\002\000\004" +
+    "\011\037\001\002\000\004\011\040\001\002\000\030\004" +
+    "\uffcd\005\uffcd\006\uffcd\007\uffcd\011\uffcd\020\uffcd\021\uffcd" +
+    "\022\uffcd\023\uffcd\024\uffcd\025\uffcd\001\002\000\030\004" +
+    "\uffcc\005\uffcc\006\uffcc\007\uffcc\011\uffcc\020\uffcc\021\uffcc" +
+    "\022\uffcc\023\uffcc\024\uffcc\025\uffcc\001\002\000\030\004" +
+    "\uffd0\005\uffd0\006\uffd0\007\uffd0\011\uffd0\020\uffd0\021\uffd0" +
+    "\022\uffd0\023\uffd0\024\uffd0\025\uffd0\001\002\000\030\004" +
+    "\uffd1\005\uffd1\006\uffd1\007\uffd1\011\uffd1\020\uffd1\021\uffd1" +
+    "\022\uffd1\023\uffd1\024\uffd1\025\uffd1\001\002\000\004\010" +
+    "\uffe1\001\002\000\004\011\uffc5\001\002\000\004\010\053" +
+    "\001\002\000\004\011\052\001\002\000\004\010\uffe2\001" +
+    "\002\000\004\011\uffc6\001\002\000\012\002\uffc7\011\uffc7" +
+    "\016\uffc7\017\uffc7\001\002\000\012\030\054\031\055\032" +
+    "\060\034\061\001\002\000\014\011\uffde\030\uffde\031\uffde" +
+    "\032\uffde\034\uffde\001\002\000\014\011\uffe0\030\uffe0\031" +
+    "\uffe0\032\uffe0\034\uffe0\001\002\000\014\011\062\030\054" +
+    "\031\055\032\060\034\061\001\002\000\014\011\uffdc\030" +
+    "\uffdc\031\uffdc\032\uffdc\034\uffdc\001\002\000\014\011\uffdf" +
+    "\030\uffdf\031\uffdf\032\uffdf\034\uffdf\001\002\000\014\011" +
+    "\uffdd\030\uffdd\031\uffdd\032\uffdd\034\uffdd\001\002\000\004" +
+    "\011\064\001\002\000\014\011\uffdb\030\uffdb\031\uffdb\032" +
+    "\uffdb\034\uffdb\001\002\000\012\002\uffe6\011\uffe6\016\uffe6" +
+    "\017\uffe6\001\002\000\006\010\067\033\066\001\002\000" +
+    "\004\030\102\001\002\000\004\033\070\001\002\000\004" +
+    "\011\071\001\002\000\004\030\072\001\002\000\004\030" +
+    "\073\001\002\000\004\011\074\001\002\000\006\015\050" +
+    "\027\044\001\002\000\004\010\076\001\002\000\012\030" +
+    "\054\031\055\032\060\034\061\001\002\000\014\011\100" +
+    "\030\054\031\055\032\060\034\061\001\002\000\004\011" +
+    "\101\001\002\000\012\002\uffe3\011\uffe3\016\uffe3\017\uffe3" +
+    "\001\002\000\004\030\103\001\002\000\004\011\104\001" +
+    "\002\000\006\015\050\027\044\001\002\000\004\010\106" +
+    "\001\002\000\012\030\054\031\055\032\060\034\061\001" +
+    "\002\000\014\011\110\030\054\031\055\032\060\034\061" +
+    "\001\002\000\004\011\111\001\002\000\012\002\uffe4\011" +
+    "\uffe4\016\uffe4\017\uffe4\001\002\000\030\010\uffed\030\uffed" +
+    "\031\uffed\032\uffed\033\uffed\034\uffed\036\uffed\037\uffed\040" +
+    "\uffed\041\uffed\042\uffed\001\002\000\030\010\ufff1\030\ufff1" +
+    "\031\ufff1\032\ufff1\033\ufff1\034\ufff1\036\ufff1\037\ufff1\040" +
+    "\ufff1\041\ufff1\042\ufff1\001\002\000\030\010\ufff0\030\ufff0" +
+    "\031\ufff0\032\ufff0\033\ufff0\034\ufff0\036\ufff0\037\ufff0\040" +
+    "\ufff0\041\ufff0\042\ufff0\001\002\000\030\010\uffef\030\uffef" +
+    "\031\uffef\032\uffef\033\uffef\034\uffef\036\uffef\037\uffef\040" +
+    "\uffef\041\uffef\042\uffef\001\002\000\030\010\uffee\030\uffee" +
+    "\031\uffee\032\uffee\033\uffee\034\uffee\036\uffee\037\uffee\040" +
+    "\uffee\041\uffee\042\uffee\001\002\000\030\010\127\030\030" +
+    "\031\124\032\121\033\123\034\022\036\017\037\125\040" +
+    "\026\041\027\042\031\001\002\000\030\010\uffec\030\uffec" +
+    "\031\uffec\032\uffec\033\uffec\034\uffec\036\uffec\037\uffec\040" +
+    "\uffec\041\uffec\042\uffec\001\002\000\004\011\uffeb\001\002" +
+    "\000\004\011\143\001\002\000\004\011\uffd6\001\002\000" +
+    "\004\011\uffea\001\002\000\004\011\uffe9\001\002\000\004" +
+    "\011\142\001\002\000\022\010\127\030\030\033\131\034" +
+    "\022\036\017\040\026\041\027\042\031\001\002\000\012" +
+    "\004\133\005\135\006\136\007\134\001\002\000\014\004" +
+    "\uffd6\005\uffd6\006\uffd6\007\uffd6\011\132\001\002\000\014" +
+    "\004\uffd5\005\uffd5\006\uffd5\007\uffd5\011\uffd5\001\002\000" +
+    "\022\010\uffcb\030\uffcb\033\uffcb\034\uffcb\036\uffcb\040\uffcb" +
+    "\041\uffcb\042\uffcb\001\002\000\022\010\uffc9\030\uffc9\033" +
+    "\uffc9\034\uffc9\036\uffc9\040\uffc9\041\uffc9\042\uffc9\001\002" +
+    "\000\022\010\uffca\030\uffca\033\uffca\034\uffca\036\uffca\040" +
+    "\uffca\041\uffca\042\uffca\001\002\000\022\010\uffc8\030\uffc8" +
+    "\033\uffc8\034\uffc8\036\uffc8\040\uffc8\041\uffc8\042\uffc8\001" +
+    "\002\000\022\010\127\030\030\033\123\034\022\036\017" +
+    "\040\026\041\027\042\031\001\002\000\004\011\141\001" +
+    "\002\000\030\004\uffd7\005\uffd7\006\uffd7\007\uffd7\011\uffd7" +
+    "\020\uffd7\021\uffd7\022\uffd7\023\uffd7\024\uffd7\025\uffd7\001" +
+    "\002\000\012\002\ufff3\011\ufff3\016\ufff3\017\ufff3\001\002" +
+    "\000\012\002\ufff2\011\ufff2\016\ufff2\017\ufff2\001\002\000" +
+    "\004\011\155\001\002\000\004\010\015\001\002\000\004" +
+    "\010\015\001\002\000\004\011\150\001\002\000\012\002" +
+    "\ufffa\011\ufffa\016\ufffa\017\ufffa\001\002\000\006\011\ufff6" +
+    "\017\146\001\002\000\004\011\ufff7\001\002\000\006\011" +
+    "\ufff8\016\145\001\002\000\004\011\ufff9\001\002\000\012" +
+    "\002\ufffb\011\ufffb\016\ufffb\017\ufffb\001\002\000\026\004" +
+    "\133\005\135\006\136\007\134\020\113\021\114\022\115" +
+    "\023\116\024\120\025\112\001\002\000\040\004\uffd6\005" +
+    "\uffd6\006\uffd6\007\uffd6\011\160\012\045\013\051\015\050" +
+    "\020\uffd6\021\uffd6\022\uffd6\023\uffd6\024\uffd6\025\uffd6\027" +
+    "\044\001\002\000\036\004\uffd5\005\uffd5\006\uffd5\007\uffd5" +
+    "\014\161\015\050\020\uffd5\021\uffd5\022\uffd5\023\uffd5\024" +
+    "\uffd5\025\uffd5\026\162\027\044\001\002\000\004\031\uffd9" +
+    "\001\002\000\004\031\uffd8\001\002\000\004\010\167\001" +
+    "\002\000\004\031\165\001\002\000\004\011\166\001\002" +
+    "\000\012\002\uffda\011\uffda\016\uffda\017\uffda\001\002\000" +
+    "\012\030\054\031\055\032\060\034\061\001\002\000\014" +
+    "\011\171\030\054\031\055\032\060\034\061\001\002\000" +
+    "\004\011\172\001\002\000\012\002\uffe5\011\uffe5\016\uffe5" +
+    "\017\uffe5\001\002\000\030\004\uffce\005\uffce\006\uffce\007" +
+    "\uffce\011\uffce\020\uffce\021\uffce\022\uffce\023\uffce\024\uffce" +
+    "\025\uffce\001\002\000\006\010\175\033\034\001\002\000" +
+    "\004\033\176\001\002\000\014\004\133\005\135\006\136" +
+    "\007\134\011\037\001\002\000\004\010\033\001\002\000" +
+    "\004\011\201\001\002\000\004\011\202\001\002\000\030" +
+    "\004\uffd2\005\uffd2\006\uffd2\007\uffd2\011\uffd2\020\uffd2\021" +
+    "\uffd2\022\uffd2\023\uffd2\024\uffd2\025\uffd2\001\002\000\004" +
+    "\002\001\001\002" });
+
+  /** Access to parse-action table. */
+  public short[][] action_table() {return _action_table;}
+
+  /** <code>reduce_goto</code> table. */
+  protected static final short[][] _reduce_table = 
+    unpackFromStrings(new String[] {
+    "\000\201\000\026\002\013\003\005\004\012\007\015\010" +
+    "\011\013\004\014\007\017\003\022\010\024\006\001\001" +
+    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
+    "\002\001\001\000\002\001\001\000\002\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\026\003" +
+    "\020\004\012\007\015\010\011\013\004\014\007\017\003" +
+    "\020\022\022\010\024\006\001\001\000\002\001\001\000" +
+    "\004\027\172\001\001\000\026\003\020\004\012\007\015" +
+    "\010\011\013\004\014\007\017\003\020\155\022\010\024" +
+    "\006\001\001\000\006\005\146\006\143\001\001\000\002" +
+    "\001\001\000\004\011\116\001\001\000\002\001\001\000" +
+    "\006\023\046\025\045\001\001\000\004\027\042\001\001" +
+    "\000\004\027\041\001\001\000\002\001\001\000\004\027" +
+    "\031\001\001\000\002\001\001\000\002\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
+    "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
+    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
+    "\002\001\001\000\002\001\001\000\002\001\001\000\002" +
+    "\001\001\000\002\001\001\000\006\015\056\016\055\001" +
+    "\001\000\002\001\001\000\002\001\001\000\004\015\062" +
+    "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
+    "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
+    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
+    "\002\001\001\000\002\001\001\000\002\001\001\000\002" +
+    "\001\001\000\004\025\074\001\001\000\002\001\001\000" +
+    "\006\015\056\016\076\001\001\000\004\015\062\001\001" +
+    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
+    "\002\001\001\000\004\025\104\001\001\000\002\001\001" +
+    "\000\006\015\056\016\106\001\001\000\004\015\062\001" +
+    "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
+    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
+    "\002\001\001\000\006\012\125\020\121\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
+    "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
+    "\000\004\020\127\001\001\000\004\021\136\001\001\000" +
+    "\002\001\001\000\002\001\001\000\002\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\004\020" +
+    "\137\001\001\000\002\001\001\000\002\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\024\003" +
+    "\152\004\012\007\015\010\011\013\004\014\007\017\003" +
+    "\022\010\024\006\001\001\000\024\003\150\004\012\007" +
+    "\015\010\011\013\004\014\007\017\003\022\010\024\006" +
+    "\001\001\000\002\001\001\000\002\001\001\000\004\006" +
+    "\151\001\001\000\002\001\001\000\004\005\153\001\001" +
+    "\000\002\001\001\000\002\001\001\000\006\011\116\021" +
+    "\136\001\001\000\006\023\046\025\045\001\001\000\006" +
+    "\025\162\026\163\001\001\000\002\001\001\000\002\001" +
+    "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
+    "\000\002\001\001\000\006\015\056\016\167\001\001\000" +
+    "\004\015\062\001\001\000\002\001\001\000\002\001\001" +
+    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
+    "\004\021\176\001\001\000\004\027\177\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
+    "\001" });
+
+  /** Access to <code>reduce_goto</code> table. */
+  public short[][] reduce_table() {return _reduce_table;}
+
+  /** Instance of action encapsulation class. */
+  protected CUP$PgSelectOperatorInfoParser$actions action_obj;
+
+  /** Action encapsulation object initializer. */
+  protected void init_actions()
+    {
+      action_obj = new CUP$PgSelectOperatorInfoParser$actions(this);
+    }
+
+  /** Invoke a user supplied parse action. */
+  public java_cup.runtime.Symbol do_action(
+    int                        act_num,
+    java_cup.runtime.lr_parser parser,
+    java.util.Stack            stack,
+    int                        top)
+    throws java.lang.Exception
+  {
+    /* call code in generated class */
+    return action_obj.CUP$PgSelectOperatorInfoParser$do_action(act_num, parser, stack, top);
+  }
+
+  /** Indicates start state. */
+  public int start_state() {return 0;}
+  /** Indicates start production. */
+  public int start_production() {return 0;}
+
+  /** <code>EOF</code> Symbol index. */
+  public int EOF_sym() {return 0;}
+
+  /** <code>error</code> Symbol index. */
+  public int error_sym() {return 1;}
+
+
+
+  private LogicNode root;
+  private int parameterId = 0;
+
+  public LogicNode parseSelectOperatorInfo(String operatorInfo) throws Exception {
+    this.root = new LogicNode();
+    root.setType(BoolExprType.AND);
+    ((PgSelectOperatorInfoLexer) this.getScanner()).yyreset(new StringReader(operatorInfo));
+    this.parse();
+    return this.root;
+  }
+
+
+/** Cup generated class to encapsulate user supplied action code.*/
+@SuppressWarnings({"rawtypes", "unchecked", "unused"})
+class CUP$PgSelectOperatorInfoParser$actions {
+  private final PgSelectOperatorInfoParser parser;
+
+  /** Constructor */
+  CUP$PgSelectOperatorInfoParser$actions(PgSelectOperatorInfoParser parser) {
+    this.parser = parser;
+  }
+
+  /** Method 0 with the actual generated action code for actions 0 to 300. */
+  public final java_cup.runtime.Symbol CUP$PgSelectOperatorInfoParser$do_action_part00000000(
+    int                        CUP$PgSelectOperatorInfoParser$act_num,
+    java_cup.runtime.lr_parser CUP$PgSelectOperatorInfoParser$parser,
+    java.util.Stack            CUP$PgSelectOperatorInfoParser$stack,
+    int                        CUP$PgSelectOperatorInfoParser$top)
+    throws java.lang.Exception
+    {
+      /* Symbol object for return from actions */
+      java_cup.runtime.Symbol CUP$PgSelectOperatorInfoParser$result;
+
+      /* select the action based on the action number */
+      switch (CUP$PgSelectOperatorInfoParser$act_num)
+        {
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 0: // $START ::= expr EOF 
+            {
+              Object RESULT =null;
+		int start_valleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int start_valright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		Object start_val = (Object)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		RESULT = start_val;
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("$START",0, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          /* ACCEPT */
+          CUP$PgSelectOperatorInfoParser$parser.done_parsing();
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 1: // expr ::= bool_expr 
+            {
+              Object RESULT =null;
+		int eleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		BoolExprNode e = (BoolExprNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                         root.setChildren(Collections.singletonList(e));
+                                                 
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("expr",0, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 2: // bool_expr ::= logical_expr 
+            {
+              BoolExprNode RESULT =null;
+		int eleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		BoolExprNode e = (BoolExprNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = e;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("bool_expr",1, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 3: // bool_expr ::= compare_expr 
+            {
+              BoolExprNode RESULT =null;
+		int eleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		AbstractFilterOperation e = (AbstractFilterOperation)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = e;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("bool_expr",1, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 4: // bool_expr ::= isnull_expr 
+            {
+              BoolExprNode RESULT =null;
+		int eleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		IsNullFilterOperation e = (IsNullFilterOperation)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = e;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("bool_expr",1, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 5: // bool_expr ::= not_expr 
+            {
+              BoolExprNode RESULT =null;
+		int eleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		AbstractFilterOperation e = (AbstractFilterOperation)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = e;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("bool_expr",1, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 6: // logical_expr ::= LPAREN bool_expr or_logical_arguments RPAREN 
+            {
+              BoolExprNode RESULT =null;
+		int e2left = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).left;
+		int e2right = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).right;
+		BoolExprNode e2 = (BoolExprNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).value;
+		int childrenleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int childrenright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		List<BoolExprNode> children = (List<BoolExprNode>)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		
+                                                                LogicNode node = new LogicNode();
+                                                                node.setType(BoolExprType.OR);
+                                                                children.add(0, e2);
+                                                                node.setChildren(children);
+                                                                RESULT = node;
+                                                            
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("logical_expr",2, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-3)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 7: // logical_expr ::= LPAREN bool_expr and_logical_arguments RPAREN 
+            {
+              BoolExprNode RESULT =null;
+		int e2left = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).left;
+		int e2right = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).right;
+		BoolExprNode e2 = (BoolExprNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).value;
+		int childrenleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int childrenright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		List<BoolExprNode> children = (List<BoolExprNode>)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		
+                                                                LogicNode node = new LogicNode();
+                                                                node.setType(BoolExprType.AND);
+                                                                children.add(0, e2);
+                                                                node.setChildren(children);
+                                                                RESULT = node;
+                                                            
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("logical_expr",2, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-3)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 8: // and_logical_arguments ::= AND bool_expr and_logical_arguments 
+            {
+              List<BoolExprNode> RESULT =null;
+		int andleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).left;
+		int andright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).right;
+		Object and = (Object)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).value;
+		int e1left = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int e1right = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		BoolExprNode e1 = (BoolExprNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		int exprsleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int exprsright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		List<BoolExprNode> exprs = (List<BoolExprNode>)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                         exprs.add(e1);
+                                                                         RESULT =  exprs;
+                                                                     
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("and_logical_arguments",3, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 9: // and_logical_arguments ::= AND bool_expr 
+            {
+              List<BoolExprNode> RESULT =null;
+		int andleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int andright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		Object and = (Object)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		int e1left = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int e1right = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		BoolExprNode e1 = (BoolExprNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                 List<BoolExprNode> nodes = new ArrayList<>();
+                                                                                 nodes.add(e1);
+                                                                                 RESULT = nodes;
+                                                                      
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("and_logical_arguments",3, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 10: // or_logical_arguments ::= OR bool_expr or_logical_arguments 
+            {
+              List<BoolExprNode> RESULT =null;
+		int orleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).left;
+		int orright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).right;
+		Object or = (Object)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).value;
+		int e1left = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int e1right = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		BoolExprNode e1 = (BoolExprNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		int exprsleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int exprsright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		List<BoolExprNode> exprs = (List<BoolExprNode>)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                         exprs.add(e1);
+                                                                         RESULT =  exprs;
+                                                                     
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("or_logical_arguments",4, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 11: // or_logical_arguments ::= OR bool_expr 
+            {
+              List<BoolExprNode> RESULT =null;
+		int orleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int orright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		Object or = (Object)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		int e1left = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int e1right = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		BoolExprNode e1 = (BoolExprNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                              List<BoolExprNode> nodes = new ArrayList<>();
+                                                                                              nodes.add(e1);
+                                                                                              RESULT = nodes;
+                                                                     
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("or_logical_arguments",4, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 12: // compare_expr ::= uni_compare_expr 
+            {
+              AbstractFilterOperation RESULT =null;
+		int eleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		AbstractFilterOperation e = (AbstractFilterOperation)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT=e;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("compare_expr",5, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 13: // compare_expr ::= multi_compare_expr 
+            {
+              AbstractFilterOperation RESULT =null;
+		int eleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		AbstractFilterOperation e = (AbstractFilterOperation)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT=e;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("compare_expr",5, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 14: // uni_compare_expr ::= LPAREN arithmetic_expr uni_compare_operator uni_compare_constant RPAREN 
+            {
+              AbstractFilterOperation RESULT =null;
+		int e1left = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-3)).left;
+		int e1right = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-3)).right;
+		ArithmeticNode e1 = (ArithmeticNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-3)).value;
+		int opleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).left;
+		int opright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).right;
+		CompareOperator op = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).value;
+		int constantleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int constantright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		String constant = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		
+                                                                                                    Parameter parameter = new Parameter(parameterId++, e1.toString(), constant);
+                                                                                                    if(constant.contains("$")){
+                                                                                                       parameter.setType(Parameter.ParameterType.VIRTUAL);
+                                                                                                    }
+                                                                                                    AbstractFilterOperation operation;
+                                                                                                    if (e1.getType() == ArithmeticNodeType.COLUMN) {
+                                                                                                        operation = new UniVarFilterOperation(((ColumnNode) e1).getCanonicalColumnName(), op, Collections.singletonList(parameter));
+                                                                                                    } else {
+                                                                                                        operation = new MultiVarFilterOperation(op, e1, Collections.singletonList(parameter));
+                                                                                                    }
+                                                                                                    RESULT = operation;
+                                                                                                
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("uni_compare_expr",6, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 15: // uni_compare_expr ::= LPAREN arithmetic_expr uni_compare_operator arithmetic_expr RPAREN 
+            {
+              AbstractFilterOperation RESULT =null;
+		int e1left = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-3)).left;
+		int e1right = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-3)).right;
+		ArithmeticNode e1 = (ArithmeticNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-3)).value;
+		int opleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).left;
+		int opright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).right;
+		CompareOperator op = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).value;
+		int e2left = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int e2right = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		ArithmeticNode e2 = (ArithmeticNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		
+                                                                                                    if (e2.getType() == ArithmeticNodeType.CONSTANT) {
+                                                                                                        Parameter parameter = new Parameter(parameterId++, e1.toString(), ((NumericNode) e2).toString());
+                                                                                                        if (e1.getType() == ArithmeticNodeType.COLUMN) {
+                                                                                                            String canonicalColumnName = ((ColumnNode) e1).getCanonicalColumnName();
+                                                                                                            RESULT = new UniVarFilterOperation(canonicalColumnName, op, Collections.singletonList(parameter));
+                                                                                                        } else {
+                                                                                                            RESULT = new MultiVarFilterOperation(op, e1, Collections.singletonList(parameter));
+                                                                                                        }
+                                                                                                    } else {
+                                                                                                        AbstractFilterOperation operation;
+                                                                                                        ArithmeticNode e = ArithmeticNodeFactory.create(ArithmeticNodeType.MINUS);
+                                                                                                        e.setLeftNode(e1);
+                                                                                                        e.setRightNode(e2);
+                                                                                                        RESULT = new MultiVarFilterOperation(op, e, Collections.singletonList(new Parameter(parameterId++, e.toString(), "0")));
+                                                                                                    }
+                                                                                                
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("uni_compare_expr",6, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 16: // uni_compare_operator ::= LT 
+            {
+              CompareOperator RESULT =null;
+		int ltleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int ltright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		CompareOperator lt = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = lt;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("uni_compare_operator",7, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 17: // uni_compare_operator ::= GT 
+            {
+              CompareOperator RESULT =null;
+		int gtleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int gtright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		CompareOperator gt = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = gt;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("uni_compare_operator",7, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 18: // uni_compare_operator ::= LE 
+            {
+              CompareOperator RESULT =null;
+		int leleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int leright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		CompareOperator le = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = le;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("uni_compare_operator",7, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 19: // uni_compare_operator ::= GE 
+            {
+              CompareOperator RESULT =null;
+		int geleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int geright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		CompareOperator ge = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = ge;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("uni_compare_operator",7, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 20: // uni_compare_operator ::= EQ 
+            {
+              CompareOperator RESULT =null;
+		int eqleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int eqright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		CompareOperator eq = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = eq;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("uni_compare_operator",7, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 21: // uni_compare_operator ::= NE 
+            {
+              CompareOperator RESULT =null;
+		int neleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int neright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		CompareOperator ne = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = ne;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("uni_compare_operator",7, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 22: // uni_compare_constant ::= DATE 
+            {
+              String RESULT =null;
+		int dateleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int dateright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		String date = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = date;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("uni_compare_constant",8, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 23: // uni_compare_constant ::= STRING 
+            {
+              String RESULT =null;
+		int strleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int strright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		String str = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = str; 
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("uni_compare_constant",8, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 24: // uni_compare_constant ::= VIRTUALNUM 
+            {
+              String RESULT =null;
+		int virtualnumleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int virtualnumright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		String virtualnum = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = virtualnum; 
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("uni_compare_constant",8, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 25: // multi_compare_expr ::= in_compare_expr 
+            {
+              AbstractFilterOperation RESULT =null;
+		int eleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		UniVarFilterOperation e = (UniVarFilterOperation)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT=e;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("multi_compare_expr",9, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 26: // multi_compare_expr ::= like_compare_expr 
+            {
+              AbstractFilterOperation RESULT =null;
+		int eleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		UniVarFilterOperation e = (UniVarFilterOperation)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT=e;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("multi_compare_expr",9, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 27: // in_compare_expr ::= LPAREN CANONICAL_COLUMN_NAME in_expr LPAREN in_arguments RPAREN RPAREN 
+            {
+              UniVarFilterOperation RESULT =null;
+		int colleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-5)).left;
+		int colright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-5)).right;
+		String col = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-5)).value;
+		int inornotinleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).left;
+		int inornotinright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).right;
+		CompareOperator inornotin = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).value;
+		int argumentsleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).left;
+		int argumentsright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).right;
+		List<String> arguments = (List<String>)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).value;
+		
+                                                                                    List<Parameter> parameterList = new ArrayList<>();
+                                                                                    for (String argument: arguments) {
+                                                                                        Parameter parameter = new Parameter(parameterId++, col, argument);
+                                                                                        parameterList.add(parameter);
+                                                                                    }
+                                                                                    UniVarFilterOperation operation = new UniVarFilterOperation(col, inornotin, parameterList);
+                                                                                    if(inornotin == CompareOperator.NOT_IN){
+                                                                                        operation.setOperator(CompareOperator.NOT_IN);
+                                                                                    }
+                                                                                    RESULT = operation;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("in_compare_expr",10, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-6)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 28: // in_compare_expr ::= LPAREN LPAREN CANONICAL_COLUMN_NAME RPAREN in_expr LPAREN in_arguments RPAREN RPAREN 
+            {
+              UniVarFilterOperation RESULT =null;
+		int colleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-6)).left;
+		int colright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-6)).right;
+		String col = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-6)).value;
+		int inornotinleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).left;
+		int inornotinright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).right;
+		CompareOperator inornotin = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).value;
+		int argumentsleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).left;
+		int argumentsright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).right;
+		List<String> arguments = (List<String>)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).value;
+		
+                                                                                            List<Parameter> parameterList = new ArrayList<>();
+                                                                                            for (String argument: arguments) {
+                                                                                                Parameter parameter = new Parameter(parameterId++, col, argument);
+                                                                                                parameterList.add(parameter);
+                                                                                            }
+                                                                                            UniVarFilterOperation operation = new UniVarFilterOperation(col, inornotin, parameterList);
+                                                                                            if(inornotin == CompareOperator.NOT_IN){
+                                                                                                operation.setOperator(CompareOperator.NOT_IN);
+                                                                                            }
+                                                                                            RESULT = operation;
+                                                                                          
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("in_compare_expr",10, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-8)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 29: // in_compare_expr ::= LPAREN SUBSTRING LPAREN CANONICAL_COLUMN_NAME INTEGER INTEGER RPAREN in_expr LPAREN in_arguments RPAREN RPAREN 
+            {
+              UniVarFilterOperation RESULT =null;
+		int colleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-8)).left;
+		int colright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-8)).right;
+		String col = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-8)).value;
+		int leftIntleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-7)).left;
+		int leftIntright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-7)).right;
+		Integer leftInt = (Integer)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-7)).value;
+		int rightIntleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-6)).left;
+		int rightIntright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-6)).right;
+		Integer rightInt = (Integer)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-6)).value;
+		int inornotinleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).left;
+		int inornotinright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).right;
+		CompareOperator inornotin = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).value;
+		int argumentsleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).left;
+		int argumentsright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).right;
+		List<String> arguments = (List<String>)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).value;
+		
+                                                                                   List<Parameter> parameterList = new ArrayList<>();
+                                                                                   for (String argument: arguments) {
+
+                                                                                       if(leftInt > 1){
+                                                                                          argument = "%" + argument;
+                                                                                       }
+                                                                                       argument = argument + "%";
+                                                                                       Parameter parameter = new Parameter(parameterId++, col, argument);
+                                                                                       parameter.setType(Parameter.ParameterType.SUBSTRING);
+                                                                                       parameterList.add(parameter);
+                                                                                   }
+                                                                                   UniVarFilterOperation operation = new UniVarFilterOperation(col, inornotin, parameterList);
+                                                                                   if(inornotin == CompareOperator.NOT_IN){
+                                                                                       operation.setOperator(CompareOperator.NOT_IN);
+                                                                                   }
+                                                                                    RESULT = operation;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("in_compare_expr",10, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-11)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 30: // in_compare_expr ::= LPAREN SUBSTRING LPAREN LPAREN CANONICAL_COLUMN_NAME RPAREN INTEGER INTEGER RPAREN in_expr LPAREN in_arguments RPAREN RPAREN 
+            {
+              UniVarFilterOperation RESULT =null;
+		int colleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-9)).left;
+		int colright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-9)).right;
+		String col = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-9)).value;
+		int leftIntleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-7)).left;
+		int leftIntright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-7)).right;
+		Integer leftInt = (Integer)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-7)).value;
+		int rightIntleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-6)).left;
+		int rightIntright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-6)).right;
+		Integer rightInt = (Integer)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-6)).value;
+		int inornotinleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).left;
+		int inornotinright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).right;
+		CompareOperator inornotin = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).value;
+		int argumentsleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).left;
+		int argumentsright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).right;
+		List<String> arguments = (List<String>)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).value;
+		
+                                                                                   List<Parameter> parameterList = new ArrayList<>();
+                                                                                   for (String argument: arguments) {
+
+                                                                                       if(leftInt > 1){
+                                                                                          argument = "%" + argument;
+                                                                                       }
+                                                                                       argument = argument + "%";
+                                                                                       Parameter parameter = new Parameter(parameterId++, col, argument);
+                                                                                       parameter.setType(Parameter.ParameterType.SUBSTRING);
+                                                                                       parameterList.add(parameter);
+                                                                                   }
+                                                                                   UniVarFilterOperation operation = new UniVarFilterOperation(col, inornotin, parameterList);
+                                                                                   if(inornotin == CompareOperator.NOT_IN){
+                                                                                       operation.setOperator(CompareOperator.NOT_IN);
+                                                                                   }
+                                                                                    RESULT = operation;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("in_compare_expr",10, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-13)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 31: // in_expr ::= NOT_IN 
+            {
+              CompareOperator RESULT =null;
+		int notinleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int notinright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		CompareOperator notin = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		 RESULT = notin; 
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("in_expr",19, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 32: // in_expr ::= IN 
+            {
+              CompareOperator RESULT =null;
+		int inleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int inright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		CompareOperator in = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		 RESULT = in; 
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("in_expr",19, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 33: // in_argument ::= STRING 
+            {
+              String RESULT =null;
+		int strleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int strright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		String str = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                      RESULT = str;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("in_argument",11, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 34: // in_argument ::= DATE 
+            {
+              String RESULT =null;
+		int dateleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int dateright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		String date = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                      RESULT = date;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("in_argument",11, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 35: // in_argument ::= INTEGER 
+            {
+              String RESULT =null;
+		int integerleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int integerright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		Integer integer = (Integer)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                      RESULT = integer.toString();
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("in_argument",11, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 36: // in_argument ::= FLOAT 
+            {
+              String RESULT =null;
+		int float_left = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int float_right = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		Float float_ = (Float)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                      RESULT = float_.toString();
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("in_argument",11, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 37: // in_arguments ::= in_argument 
+            {
+              List<String> RESULT =null;
+		int argumentleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int argumentright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		String argument = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                      List<String> arguments = new ArrayList<>();
+                                                                                      arguments.add(argument);
+                                                                                      RESULT = arguments;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("in_arguments",12, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 38: // in_arguments ::= in_arguments in_argument 
+            {
+              List<String> RESULT =null;
+		int e1left = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int e1right = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		List<String> e1 = (List<String>)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		int argumentleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int argumentright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		String argument = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                      e1.add(argument);
+                                                                                      RESULT = e1;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("in_arguments",12, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 39: // like_compare_expr ::= LPAREN LPAREN CANONICAL_COLUMN_NAME RPAREN like_expr STRING RPAREN 
+            {
+              UniVarFilterOperation RESULT =null;
+		int colleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).left;
+		int colright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).right;
+		String col = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).value;
+		int likeopleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).left;
+		int likeopright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).right;
+		CompareOperator likeop = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).value;
+		int strleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int strright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		String str = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		
+                                                                                            Parameter parameter = new Parameter(parameterId++, col, str);
+                                                                                            parameter.setType(Parameter.ParameterType.LIKE);
+                                                                                            UniVarFilterOperation operation = new UniVarFilterOperation(col, likeop, Collections.singletonList(parameter));
+                                                                                            if(likeop == CompareOperator.NOT_LIKE){
+                                                                                              operation.setOperator(CompareOperator.NOT_LIKE);
+                                                                                            }
+                                                                                            RESULT = operation;
+                                                                                       
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("like_compare_expr",13, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-6)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 40: // like_expr ::= NOT_LIKE 
+            {
+              CompareOperator RESULT =null;
+		int notlikeleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int notlikeright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		CompareOperator notlike = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		 RESULT = notlike; 
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("like_expr",20, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 41: // like_expr ::= LIKE 
+            {
+              CompareOperator RESULT =null;
+		int likeleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int likeright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		CompareOperator like = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		 RESULT = like; 
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("like_expr",20, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 42: // arithmetic_expr ::= LPAREN arithmetic_expr arithmetic_operator arithmetic_expr RPAREN 
+            {
+              ArithmeticNode RESULT =null;
+		int e1left = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-3)).left;
+		int e1right = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-3)).right;
+		ArithmeticNode e1 = (ArithmeticNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-3)).value;
+		int opleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).left;
+		int opright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).right;
+		ArithmeticNodeType op = (ArithmeticNodeType)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).value;
+		int e2left = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int e2right = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		ArithmeticNode e2 = (ArithmeticNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		
+                                                                                                  ArithmeticNode node = ArithmeticNodeFactory.create(op);
+                                                                                                  node.setLeftNode(e1);
+                                                                                                  node.setRightNode(e2);
+                                                                                                  RESULT = node;
+                                                                                              
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("arithmetic_expr",14, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 43: // arithmetic_expr ::= CANONICAL_COLUMN_NAME 
+            {
+              ArithmeticNode RESULT =null;
+		int colleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int colright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		String col = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                      ArithmeticNode node = ArithmeticNodeFactory.create(ArithmeticNodeType.COLUMN);
+                                                                                      ((ColumnNode) node).setCanonicalColumnName(col);
+                                                                                      RESULT = node;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("arithmetic_expr",14, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 44: // arithmetic_expr ::= LPAREN CANONICAL_COLUMN_NAME RPAREN 
+            {
+              ArithmeticNode RESULT =null;
+		int colleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int colright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		String col = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		
+                                                                                      ArithmeticNode node = ArithmeticNodeFactory.create(ArithmeticNodeType.COLUMN);
+                                                                                      ((ColumnNode) node).setCanonicalColumnName(col);
+                                                                                      RESULT = node;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("arithmetic_expr",14, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 45: // arithmetic_expr ::= INTEGER 
+            {
+              ArithmeticNode RESULT =null;
+		int numleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int numright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		Integer num = (Integer)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                      ArithmeticNode node = ArithmeticNodeFactory.create(ArithmeticNodeType.CONSTANT);
+                                                                                      ((NumericNode) node).setConstant(num);
+                                                                                      RESULT = node;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("arithmetic_expr",14, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 46: // arithmetic_expr ::= FLOAT 
+            {
+              ArithmeticNode RESULT =null;
+		int numleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int numright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		Float num = (Float)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                      ArithmeticNode node = ArithmeticNodeFactory.create(ArithmeticNodeType.CONSTANT);
+                                                                                      ((NumericNode) node).setConstant(num);
+                                                                                      RESULT = node;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("arithmetic_expr",14, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 47: // arithmetic_expr ::= SUM LPAREN LPAREN CANONICAL_COLUMN_NAME arithmetic_operator agg_columnName RPAREN RPAREN 
+            {
+              ArithmeticNode RESULT =null;
+		int sumleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-7)).left;
+		int sumright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-7)).right;
+		ArithmeticNodeType sum = (ArithmeticNodeType)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-7)).value;
+		int colleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).left;
+		int colright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).right;
+		String col = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)).value;
+		
+                                                                                      ArithmeticNode node = ArithmeticNodeFactory.create(sum);
+                                                                                      ArithmeticNode leftNode = ArithmeticNodeFactory.create(ArithmeticNodeType.COLUMN);
+                                                                                      ((ColumnNode) leftNode).setCanonicalColumnName(col);
+                                                                                      node.setLeftNode(leftNode);
+                                                                                      RESULT = node;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("arithmetic_expr",14, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-7)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 48: // arithmetic_expr ::= AVG agg_columnName 
+            {
+              ArithmeticNode RESULT =null;
+		int avgleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int avgright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		ArithmeticNodeType avg = (ArithmeticNodeType)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		int leftNodeleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int leftNoderight = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		ArithmeticNode leftNode = (ArithmeticNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                      ArithmeticNode node = ArithmeticNodeFactory.create(avg);
+                                                                                      node.setLeftNode(leftNode);
+                                                                                      RESULT = node;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("arithmetic_expr",14, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 49: // arithmetic_expr ::= MIN agg_columnName 
+            {
+              ArithmeticNode RESULT =null;
+		int minleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int minright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		ArithmeticNodeType min = (ArithmeticNodeType)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		int leftNodeleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int leftNoderight = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		ArithmeticNode leftNode = (ArithmeticNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                      ArithmeticNode node = ArithmeticNodeFactory.create(min);
+                                                                                      node.setLeftNode(leftNode);
+                                                                                      RESULT = node;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("arithmetic_expr",14, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 50: // arithmetic_expr ::= MAX agg_columnName 
+            {
+              ArithmeticNode RESULT =null;
+		int maxleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int maxright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		ArithmeticNodeType max = (ArithmeticNodeType)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		int leftNodeleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int leftNoderight = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		ArithmeticNode leftNode = (ArithmeticNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                      ArithmeticNode node = ArithmeticNodeFactory.create(max);
+                                                                                      node.setLeftNode(leftNode);
+                                                                                      RESULT = node;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("arithmetic_expr",14, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 51: // arithmetic_expr ::= SUM agg_columnName 
+            {
+              ArithmeticNode RESULT =null;
+		int sumleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int sumright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		ArithmeticNodeType sum = (ArithmeticNodeType)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		int leftNodeleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int leftNoderight = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		ArithmeticNode leftNode = (ArithmeticNode)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		
+                                                                                      ArithmeticNode node = ArithmeticNodeFactory.create(sum);
+                                                                                      node.setLeftNode(leftNode);
+                                                                                      RESULT = node;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("arithmetic_expr",14, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 52: // agg_columnName ::= LPAREN LPAREN CANONICAL_COLUMN_NAME RPAREN RPAREN 
+            {
+              ArithmeticNode RESULT =null;
+		int colleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).left;
+		int colright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).right;
+		String col = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).value;
+		
+                                                                                      ArithmeticNode node = ArithmeticNodeFactory.create(ArithmeticNodeType.COLUMN);
+                                                                                      ((ColumnNode) node).setCanonicalColumnName(col);
+                                                                                      RESULT = node;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("agg_columnName",21, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-4)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 53: // agg_columnName ::= LPAREN CANONICAL_COLUMN_NAME RPAREN 
+            {
+              ArithmeticNode RESULT =null;
+		int colleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int colright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		String col = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		
+                                                                                      ArithmeticNode node = ArithmeticNodeFactory.create(ArithmeticNodeType.COLUMN);
+                                                                                      ((ColumnNode) node).setCanonicalColumnName(col);
+                                                                                      RESULT = node;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("agg_columnName",21, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 54: // arithmetic_operator ::= PLUS 
+            {
+              ArithmeticNodeType RESULT =null;
+		int plusleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int plusright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		ArithmeticNodeType plus = (ArithmeticNodeType)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = plus;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("arithmetic_operator",15, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 55: // arithmetic_operator ::= MINUS 
+            {
+              ArithmeticNodeType RESULT =null;
+		int minusleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int minusright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		ArithmeticNodeType minus = (ArithmeticNodeType)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = minus;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("arithmetic_operator",15, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 56: // arithmetic_operator ::= MUL 
+            {
+              ArithmeticNodeType RESULT =null;
+		int mulleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int mulright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		ArithmeticNodeType mul = (ArithmeticNodeType)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = mul;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("arithmetic_operator",15, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 57: // arithmetic_operator ::= DIV 
+            {
+              ArithmeticNodeType RESULT =null;
+		int divleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int divright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		ArithmeticNodeType div = (ArithmeticNodeType)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		  RESULT = div;  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("arithmetic_operator",15, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 58: // isnull_expr ::= LPAREN CANONICAL_COLUMN_NAME null_expr RPAREN 
+            {
+              IsNullFilterOperation RESULT =null;
+		int colleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).left;
+		int colright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).right;
+		String col = (String)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-2)).value;
+		int isornotnullleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).left;
+		int isornotnullright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).right;
+		CompareOperator isornotnull = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-1)).value;
+		
+                                                                                      IsNullFilterOperation operation = new IsNullFilterOperation(col);
+                                                                                      if(isornotnull == CompareOperator.IS_NOT_NULL){
+                                                                                        operation.setOperator(CompareOperator.IS_NOT_NULL);
+                                                                                      }
+                                                                                      RESULT = operation;
+                                                                                  
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("isnull_expr",16, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.elementAt(CUP$PgSelectOperatorInfoParser$top-3)), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 59: // null_expr ::= IS_NOT_NULL 
+            {
+              CompareOperator RESULT =null;
+		int isnotnullleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int isnotnullright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		CompareOperator isnotnull = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		 RESULT = isnotnull; 
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("null_expr",17, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 60: // null_expr ::= ISNULL 
+            {
+              CompareOperator RESULT =null;
+		int isnullleft = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).left;
+		int isnullright = ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()).right;
+		CompareOperator isnull = (CompareOperator)((java_cup.runtime.Symbol) CUP$PgSelectOperatorInfoParser$stack.peek()).value;
+		 RESULT = isnull; 
+              CUP$PgSelectOperatorInfoParser$result = parser.getSymbolFactory().newSymbol("null_expr",17, ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$PgSelectOperatorInfoParser$stack.peek()), RESULT);
+            }
+          return CUP$PgSelectOperatorInfoParser$result;
+
+          /* . . . . . .*/
+          default:
+            throw new Exception(
+               "Invalid action number "+CUP$PgSelectOperatorInfoParser$act_num+"found in internal parse table");
+
+        }
+    } /* end of method */
+
+  /** Method splitting the generated action code into several parts. */
+  public final java_cup.runtime.Symbol CUP$PgSelectOperatorInfoParser$do_action(
+    int                        CUP$PgSelectOperatorInfoParser$act_num,
+    java_cup.runtime.lr_parser CUP$PgSelectOperatorInfoParser$parser,
+    java.util.Stack            CUP$PgSelectOperatorInfoParser$stack,
+    int                        CUP$PgSelectOperatorInfoParser$top)
+    throws java.lang.Exception
+    {
+              return CUP$PgSelectOperatorInfoParser$do_action_part00000000(
+                               CUP$PgSelectOperatorInfoParser$act_num,
+                               CUP$PgSelectOperatorInfoParser$parser,
+                               CUP$PgSelectOperatorInfoParser$stack,
+                               CUP$PgSelectOperatorInfoParser$top);
+    }
+}
+
+}
@@ -135,6 +135,10 @@ public abstract class DbConnector {
         }
     }
 
+    protected Connection getConnection() {
+        return conn;
+    }
+
     public void executeSql(String sql) throws SQLException {
         try (Statement stmt = conn.createStatement()) {
             stmt.execute(sql);
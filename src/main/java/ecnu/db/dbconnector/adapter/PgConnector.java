@@ -3,6 +3,8 @@ package ecnu.db.dbconnector.adapter;
 import ecnu.db.dbconnector.DbConnector;
 import ecnu.db.utils.DatabaseConnectorConfig;
 import ecnu.db.utils.exception.TouchstoneException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
 
 import java.sql.SQLException;
 
@@ -10,6 +12,7 @@ public class PgConnector extends DbConnector {
 
     private static final String DB_DRIVER_TYPE = "postgresql";
     private static final String JDBC_PROPERTY = "";
+    private static final int COPY_BUFFER_SIZE = 1024 * 1024;
 
     public PgConnector(DatabaseConnectorConfig config) throws TouchstoneException, SQLException {
         super(config, DB_DRIVER_TYPE, JDBC_PROPERTY);
@@ -35,5 +38,18 @@ public class PgConnector extends DbConnector {
         return "EXPLAIN (ANALYZE, VERBOSE, FORMAT JSON, COSTS FALSE, TIMING FALSE) %s";
     }
 
+    /**
+     * 开启一个COPY FROM STDIN的数据流，关闭数据流时结束COPY，写入失败时需要先调用cancelCopy放弃已写入的数据
+     *
+     * @param copySql COPY ... FROM STDIN语句
+     * @return 写入COPY数据的输出流
+     */
+    public PGCopyOutputStream copyIn(String copySql) throws SQLException {
+        return new PGCopyOutputStream(getConnection().unwrap(PGConnection.class), copySql, COPY_BUFFER_SIZE);
+    }
+
+    public void close() throws SQLException {
+        getConnection().close();
+    }
 
 }
@@ -0,0 +1,182 @@
+package ecnu.db.generator;
+
+import ecnu.db.schema.Column;
+import ecnu.db.schema.ColumnBuffer;
+import ecnu.db.schema.ColumnType;
+import ecnu.db.schema.TableManager;
+import ecnu.db.utils.CommonUtils;
+import ecnu.db.utils.exception.TouchstoneException;
+import org.apache.arrow.compression.CommonsCompressionFactory;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.TimeStampSecTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.compression.CompressionCodec;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.apache.arrow.vector.compression.NoCompressionCodec;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.message.IpcOption;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 将batch输出为Arrow IPC文件，各列直接由列内部的long数组构建，不经过字符串转换
+ */
+public class ArrowBatchWriter implements AutoCloseable {
+    /**
+     * 每个record batch包含的行数
+     */
+    private static final int RECORD_BATCH_ROWS = 1 << 16;
+
+    private static final int DECIMAL_PRECISION = 38;
+
+    private static final int DECIMAL_BIT_WIDTH = 128;
+
+    private static final ArrowType BIGINT = new ArrowType.Int(64, true);
+
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private final BufferAllocator allocator;
+
+    private final CompressionUtil.CodecType codecType;
+
+    public ArrowBatchWriter(OutputCodec codec) throws TouchstoneException {
+        codecType = switch (codec) {
+            case NONE -> CompressionUtil.CodecType.NO_COMPRESSION;
+            case ZSTD -> CompressionUtil.CodecType.ZSTD;
+            case LZ4 -> CompressionUtil.CodecType.LZ4_FRAME;
+            default -> throw new TouchstoneException(String.format("Arrow文件不支持%s压缩", codec));
+        };
+        allocator = new RootAllocator();
+    }
+
+    /**
+     * 将batch写为一个Arrow IPC文件，写完后关闭输出流
+     *
+     * @return 写出的字节数
+     */
+    public long write(DataBatch batch, OutputStream outputStream) throws IOException, TouchstoneException {
+        try (BufferAllocator batchAllocator = allocator.newChildAllocator(batch.schemaName(), 0, Long.MAX_VALUE);
+             VectorSchemaRoot root = VectorSchemaRoot.create(getSchema(batch), batchAllocator);
+             ArrowFileWriter writer = new ArrowFileWriter(root, null, Channels.newChannel(outputStream), Map.of(),
+                     IpcOption.DEFAULT, getCompressionFactory(), codecType)) {
+            writer.start();
+            int keySize = batch.keyData().length;
+            for (int start = 0; start < batch.size(); start += RECORD_BATCH_ROWS) {
+                int end = Math.min(start + RECORD_BATCH_ROWS, batch.size());
+                for (int i = 0; i < keySize; i++) {
+                    fillKeys((BigIntVector) root.getVector(i), batch.keyData()[i], start, end);
+                }
+                for (int i = 0; i < batch.attColumns().length; i++) {
+                    fillAttributes(root.getVector(keySize + i), batch.attColumns()[i], batch.attData()[i], start, end);
+                }
+                root.setRowCount(end - start);
+                writer.writeBatch();
+            }
+            writer.end();
+            return writer.bytesWritten();
+        }
+    }
+
+    /**
+     * CommonsCompressionFactory只支持ZSTD与LZ4，不压缩时需要使用NoCompressionCodec
+     */
+    private CompressionCodec.Factory getCompressionFactory() {
+        return codecType == CompressionUtil.CodecType.NO_COMPRESSION
+                ? NoCompressionCodec.Factory.INSTANCE : CommonsCompressionFactory.INSTANCE;
+    }
+
+    private static Schema getSchema(DataBatch batch) throws TouchstoneException {
+        List<Field> fields = new ArrayList<>();
+        for (String keyColumnName : batch.keyColumnNames()) {
+            fields.add(Field.nullable(getSimpleName(keyColumnName), BIGINT));
+        }
+        List<String> attColumnNames = TableManager.getInstance().getAttributeColumnNames(batch.schemaName());
+        for (int i = 0; i < batch.attColumns().length; i++) {
+            fields.add(Field.nullable(getSimpleName(attColumnNames.get(i)), getArrowType(batch.attColumns()[i])));
+        }
+        return new Schema(fields);
+    }
+
+    private static String getSimpleName(String canonicalColumnName) {
+        return canonicalColumnName.split("\\.")[2];
+    }
+
+    /**
+     * decimal列的specialValue为10的小数位数次方，列内部值加min即为unscaled value
+     */
+    private static ArrowType getArrowType(Column column) throws TouchstoneException {
+        if (column.getColumnType() == ColumnType.DECIMAL && column.getDecimalScale() < 0) {
+            throw new TouchstoneException(String.format("decimal列的specialValue需要是10的幂，当前为%d", column.getSpecialValue()));
+        }
+        return switch (column.getColumnType()) {
+            case INTEGER -> BIGINT;
+            case DECIMAL -> new ArrowType.Decimal(DECIMAL_PRECISION, column.getDecimalScale(), DECIMAL_BIT_WIDTH);
+            case VARCHAR -> ArrowType.Utf8.INSTANCE;
+            case DATE -> new ArrowType.Date(DateUnit.DAY);
+            case DATETIME -> new ArrowType.Timestamp(TimeUnit.SECOND, ZoneId.systemDefault().getId());
+            default -> throw new UnsupportedOperationException();
+        };
+    }
+
+    private static void fillKeys(BigIntVector vector, LongBuffer keys, int start, int end) {
+        vector.reset();
+        for (int rowId = start; rowId < end; rowId++) {
+            long key = keys.get(rowId);
+            if (key == Long.MIN_VALUE) {
+                vector.setNull(rowId - start);
+            } else {
+                vector.setSafe(rowId - start, key);
+            }
+        }
+        vector.setValueCount(end - start);
+    }
+
+    private static void fillAttributes(FieldVector vector, Column column, ColumnBuffer data, int start, int end) {
+        vector.reset();
+        long min = column.getMin();
+        for (int rowId = start; rowId < end; rowId++) {
+            int index = rowId - start;
+            if (data.isNull(rowId)) {
+                vector.setNull(index);
+                continue;
+            }
+            long value = data.get(rowId);
+            switch (column.getColumnType()) {
+                case INTEGER -> ((BigIntVector) vector).setSafe(index, column.getSpecialValue() * value + min);
+                case DECIMAL -> ((DecimalVector) vector).setSafe(index, value + min);
+                case VARCHAR -> ((VarCharVector) vector).setSafe(index,
+                        column.transferDataToValue(value).getBytes(StandardCharsets.UTF_8));
+                // 与CSV和PG二进制格式一致，输出UTC零点在系统时区下的日期
+                case DATE -> ((DateDayVector) vector).setSafe(index, (int) Math.floorDiv(
+                        CommonUtils.toLocalEpochSecond((value + min) * SECONDS_PER_DAY), SECONDS_PER_DAY));
+                case DATETIME -> ((TimeStampSecTZVector) vector).setSafe(index, value + min);
+                default -> throw new UnsupportedOperationException();
+            }
+        }
+        vector.setValueCount(end - start);
+    }
+
+    @Override
+    public void close() {
+        allocator.close();
+    }
+}
@@ -0,0 +1,23 @@
+package ecnu.db.generator;
+
+/**
+ * 将batch中的行编码为某种文件格式的字节
+ */
+public interface BatchEncoder {
+    /**
+     * 写入文件头，每个数据文件只写一次
+     */
+    default void encodeHeader(RowEncoder encoder) {
+    }
+
+    /**
+     * 将[start, end)之间的行编码至缓冲区
+     */
+    void encodeRows(int start, int end, RowEncoder encoder);
+
+    /**
+     * 写入文件尾，每个数据文件只写一次
+     */
+    default void encodeTrailer(RowEncoder encoder) {
+    }
+}
@@ -8,55 +8,489 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 public class ConstructCpModel {
 
     private static final double DISTINCT_FK_SKEW = 2;
+    /**
+     * CP求解用完时间上限后贪心分配至少可以使用的时间
+     */
+    private static final double GREEDY_MIN_TIME_IN_SECONDS = 1;
+    /**
+     * 贪心分配最多评估的候选移动次数，不依赖墙上时间，确定性求解时同样生效
+     */
+    private static final long GREEDY_MAX_WORK = 20_000_000;
     private final Logger logger = LoggerFactory.getLogger(ConstructCpModel.class);
     private final CpModel model = new CpModel();
     private final CpSolver solver = new CpSolver();
+    private final CpSolverConfig config;
+    /**
+     * 每个filter status下各个等价类的行数变量，同一个等价类的主键状态共享同一个变量
+     */
     private IntVar[][] vars;
+    /**
+     * 每个filter status下各个等价类的代表，即等价类中编号最小的主键状态，共享的变量的解只分配给代表。
+     * 等价类按照代表从小到大排列
+     */
+    private int[][] representatives;
+    /**
+     * 每个filter status下出现在约束中的主键状态所在的等价类
+     */
+    private final List<Map<Integer, Integer>> involvedPk2Class = new ArrayList<>();
+    /**
+     * 每个filter status下各个输出状态中不在约束中的主键状态所在的等价类，没有这样的主键状态时为-1
+     */
+    private int[][] outputClasses;
     private final Map<Integer, IntVar[][]> fkDistinctVars = new HashMap<>();
-    private final List<IntVar> involvedVars = new LinkedList<>();
-
-    private final Map<Integer, Map<Integer, Set<IntVar>>> fkSharePkVars = new HashMap<>();
 
     private final Map<Integer, List<List<IntVar>>> fkDistinctInvolvedVars = new HashMap<>();
 
+    /**
+     * 建模时只记录约束涉及的cell，第一次使用模型时才按照等价类创建变量和约束。
+     * cell的编号为 槽位 * filter status数量 * 主键状态数量 + filter status的位置 * 主键状态数量 + 主键状态的位置，
+     * 槽位0为行数变量，JDC外键列的distinct变量依次使用后续的槽位
+     */
+    private final Map<Integer, Integer> fkIndex2Slot = new LinkedHashMap<>();
+
+    private final List<PendingConstraint> pendingConstraints = new ArrayList<>();
+
+    private int[] involvedCells = new int[16];
+
+    private int involvedCellNum = 0;
+
+    private final Map<Integer, Map<Integer, Set<Integer>>> fkSharePkCells = new HashMap<>();
+
+    /**
+     * 联合主键状态在各条链上所有不同的输出状态
+     */
+    private JoinStatus[] outputStatuses;
+
+    /**
+     * 每个联合主键状态的输出状态在outputStatuses中的位置
+     */
+    private int[] pkOutputIndexes;
+
+    private int pkStatusNum;
+
     private final ResourceBundle rb = LanguageManager.getInstance().getRb();
 
+    /**
+     * 模型中所有的线性约束，用于检验复用的解是否合法
+     */
+    private final List<LinearBound> linearBounds = new ArrayList<>();
+
+    /**
+     * 连接基数约束与外键共享主键数量的约束，CP求解失败时由贪心分配尽量满足
+     */
+    private final List<LinearBound> greedyBounds = new ArrayList<>();
+
+    /**
+     * 每个JDC外键列的基数与放大后的表大小
+     */
+    private final Map<Integer, long[]> fkIndex2DistinctScale = new HashMap<>();
+
+    private JoinStatus[] filterStatuses;
+
+    private long[] statusSizes;
+
+    private int range;
+
+    /**
+     * 按变量编号记录的解
+     */
+    private long[] values;
+
+    /**
+     * 热启动加入的约束在模型中的起始位置，没有热启动时为-1
+     */
+    private int warmStartConstraintStart = -1;
+
+    /**
+     * 热启动使用的缩放后的解，同时作为贪心分配的初始解
+     */
+    private long[] warmStartCandidate;
+
+    /**
+     * 建模时记录的约束 lower <= sum(cells) <= upper
+     *
+     * @param shareFkIndex 外键共享主键数量的约束对应的外键列，连接基数约束为-1
+     */
+    private record PendingConstraint(int[] cells, long lower, long upper, int shareFkIndex) {
+    }
+
+    /**
+     * 主键状态的标识与其所有cell所在的约束，相同时两个主键状态等价
+     */
+    private record PkStatusSignature(int[] constraintIndexes) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PkStatusSignature signature && Arrays.equals(constraintIndexes, signature.constraintIndexes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(constraintIndexes);
+        }
+    }
+
+    /**
+     * 线性约束 lower <= sum(coefficients[i] * var[varIndexes[i]]) <= upper
+     */
+    private record LinearBound(int[] varIndexes, long[] coefficients, long lower, long upper) {
+        boolean isSatisfied(long[] values) {
+            return getRelativeError(values) == 0;
+        }
+
+        /**
+         * @return 违反量与被违反的边界之比，满足约束时为0
+         */
+        double getRelativeError(long[] values) {
+            long sum = 0;
+            for (int i = 0; i < varIndexes.length; i++) {
+                sum += coefficients[i] * values[varIndexes[i]];
+            }
+            if (sum < lower) {
+                return (double) (lower - sum) / Math.max(Math.abs(lower), 1);
+            } else if (sum > upper) {
+                return (double) (sum - upper) / Math.max(Math.abs(upper), 1);
+            }
+            return 0;
+        }
+    }
+
     static {
         Loader.loadNativeLibraries();
     }
 
+    public ConstructCpModel() {
+        this(CpSolverConfig.DEFAULT);
+    }
+
+    public ConstructCpModel(CpSolverConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 在时间上限内求解，超时未找到解或者无解时使用贪心分配的解，并输出其违反约束的程度
+     */
     public long[][] solve() {
-        logger.debug("num of vars is {}", model.model().getVariablesCount());
-        solver.getParameters().setEnumerateAllSolutions(false);
-        solver.getParameters().setNumWorkers(Runtime.getRuntime().availableProcessors());
-        CpSolverStatus status = solver.solve(model);
-        if (status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE) {
-            logger.info(rb.getString("constructCpModelCostTime"), solver.wallTime() * 1000);
-            int filterStatusCount = vars.length;
-            int pkStatusCount = vars[0].length;
-            long[][] rowCountForEachStatus = new long[filterStatusCount][pkStatusCount];
-            for (int filterIndex = 0; filterIndex < filterStatusCount; filterIndex++) {
-                for (int pkStatusIndex = 0; pkStatusIndex < pkStatusCount; pkStatusIndex++) {
-                    rowCountForEachStatus[filterIndex][pkStatusIndex] = solver.value(vars[filterIndex][pkStatusIndex]);
+        buildModel();
+        if (values == null) {
+            logger.debug("num of vars is {}", model.model().getVariablesCount());
+            config.apply(solver.getParameters(), config.maxTimeInSeconds());
+            CpSolverStatus status = solver.solve(model);
+            double usedTime = getUsedTime();
+            double costTime = solver.wallTime();
+            if (warmStartConstraintStart >= 0 && status == CpSolverStatus.INFEASIBLE) {
+                // 上一个batch的解的结构不适用于当前batch，去掉热启动的约束后在剩余的时间内重新求解
+                clearWarmStart();
+                double remainTime = config.maxTimeInSeconds() - usedTime;
+                if (config.maxTimeInSeconds() <= 0 || remainTime > 0) {
+                    config.apply(solver.getParameters(), remainTime);
+                    status = solver.solve(model);
+                    costTime += solver.wallTime();
                 }
             }
-            return rowCountForEachStatus;
-        } else {
-            throw new UnsupportedOperationException("No solution found.");
+            if (isSolved(status)) {
+                logger.info(rb.getString("constructCpModelCostTime"), costTime * 1000);
+                values = solver.response().getSolutionList().stream().mapToLong(Long::longValue).toArray();
+            } else {
+                // 贪心分配使用剩余的时间且至少有GREEDY_MIN_TIME_IN_SECONDS，确定性求解时不按墙上时间截断，只受评估次数的限制
+                double greedyTime = config.maxTimeInSeconds() <= 0 || config.deterministic()
+                        ? Double.POSITIVE_INFINITY
+                        : Math.max(config.maxTimeInSeconds() - costTime, GREEDY_MIN_TIME_IN_SECONDS);
+                values = solveGreedy(greedyTime);
+                long violatedNum = linearBounds.stream().filter(bound -> !bound.isSatisfied(values)).count();
+                double maxError = linearBounds.stream().mapToDouble(bound -> bound.getRelativeError(values)).max().orElse(0);
+                logger.warn(rb.getString("cpGreedyFallback"), status, costTime * 1000, violatedNum, linearBounds.size(), maxError);
+            }
+        }
+        return getValues(vars);
+    }
+
+    /**
+     * @return 本次求解消耗的时间，确定性求解时为确定性时间
+     */
+    private double getUsedTime() {
+        return config.deterministic() ? solver.response().getDeterministicTime() : solver.wallTime();
+    }
+
+    /**
+     * 贪心分配每个filter status填充各个主键状态的行数。distinct数量d与行数x满足 x * 基数 / 放大后的表大小 <= d <= x，
+     * 因此distinct变量上的约束按该关系放松为行数上的约束参与分配。分配行数后distinct数量先取最小值，
+     * 再在不超过行数的范围内增加，直到满足distinct的连接基数约束
+     *
+     * @param maxTimeInSeconds 贪心分配的时间上限
+     * @return 按变量编号记录的解
+     */
+    private long[] solveGreedy(double maxTimeInSeconds) {
+        int columnSize = Arrays.stream(vars).mapToInt(filterVars -> filterVars.length).max().orElse(0);
+        int varSize = model.model().getVariablesCount();
+        // 每个变量对应的行数变量的cell，以及distinct变量的 放大后的表大小 / 基数
+        int[] varIndex2Cell = new int[varSize];
+        double[] varIndex2Scale = new double[varSize];
+        Arrays.fill(varIndex2Scale, 1);
+        // 每个等价类作为一个cell分配行数，filter status的等价类少于columnSize时其余的cell不可用
+        boolean[] validCells = new boolean[vars.length * columnSize];
+        for (int filterIndex = 0; filterIndex < vars.length; filterIndex++) {
+            for (int classIndex = 0; classIndex < vars[filterIndex].length; classIndex++) {
+                int cell = filterIndex * columnSize + classIndex;
+                validCells[cell] = true;
+                varIndex2Cell[vars[filterIndex][classIndex].getIndex()] = cell;
+                for (Map.Entry<Integer, IntVar[][]> fkIndex2Vars : fkDistinctVars.entrySet()) {
+                    long[] distinctScale = fkIndex2DistinctScale.get(fkIndex2Vars.getKey());
+                    int distinctIndex = fkIndex2Vars.getValue()[filterIndex][classIndex].getIndex();
+                    varIndex2Cell[distinctIndex] = cell;
+                    varIndex2Scale[distinctIndex] = (double) distinctScale[1] / distinctScale[0];
+                }
+            }
+        }
+        GreedyPopulationSolver greedySolver = new GreedyPopulationSolver(statusSizes, columnSize, validCells);
+        for (LinearBound bound : greedyBounds) {
+            int[] cells = Arrays.stream(bound.varIndexes()).map(index -> varIndex2Cell[index]).toArray();
+            double scale = Arrays.stream(bound.varIndexes()).mapToDouble(index -> varIndex2Scale[index]).max().orElse(1);
+            long upper = bound.upper() == Long.MAX_VALUE ? Long.MAX_VALUE : (long) (bound.upper() * scale);
+            greedySolver.addConstraint(cells, bound.lower(), upper);
+        }
+        long[] initial = null;
+        if (warmStartCandidate != null) {
+            initial = new long[vars.length * columnSize];
+            for (IntVar[] filterVars : vars) {
+                for (IntVar populationVar : filterVars) {
+                    initial[varIndex2Cell[populationVar.getIndex()]] = warmStartCandidate[populationVar.getIndex()];
+                }
+            }
+        }
+        long[] populations = greedySolver.solve(initial, maxTimeInSeconds, GREEDY_MAX_WORK);
+        long[] result = new long[varSize];
+        for (int varIndex = 0; varIndex < varSize; varIndex++) {
+            long population = populations[varIndex2Cell[varIndex]];
+            result[varIndex] = Math.min(population, (long) Math.ceil(population / varIndex2Scale[varIndex]));
+        }
+        for (LinearBound bound : greedyBounds) {
+            long sum = Arrays.stream(bound.varIndexes()).mapToLong(index -> result[index]).sum();
+            long need = sum < bound.lower() ? bound.lower() - sum : 0;
+            for (int i = 0; i < bound.varIndexes().length && need > 0; i++) {
+                int varIndex = bound.varIndexes()[i];
+                long increment = Math.min(need, populations[varIndex2Cell[varIndex]] - result[varIndex]);
+                result[varIndex] += increment;
+                need -= increment;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isSolved(CpSolverStatus status) {
+        return status == CpSolverStatus.OPTIMAL || status == CpSolverStatus.FEASIBLE;
+    }
+
+    private long[][] getValues(IntVar[][] intVars) {
+        long[][] result = new long[intVars.length][pkStatusNum];
+        for (int filterIndex = 0; filterIndex < intVars.length; filterIndex++) {
+            for (int classIndex = 0; classIndex < intVars[filterIndex].length; classIndex++) {
+                result[filterIndex][representatives[filterIndex][classIndex]] = values[intVars[filterIndex][classIndex].getIndex()];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return solve得到的解
+     */
+    public CpSolution getSolution() {
+        Map<Integer, long[][]> fkIndex2Distinct = new HashMap<>();
+        for (Map.Entry<Integer, IntVar[][]> fkIndex2Vars : fkDistinctVars.entrySet()) {
+            fkIndex2Distinct.put(fkIndex2Vars.getKey(), getValues(fkIndex2Vars.getValue()));
         }
+        return new CpSolution(filterStatuses, statusSizes, getValues(vars), fkIndex2Distinct);
+    }
+
+    /**
+     * 直方图与上一个batch足够接近时，将上一个batch的解按比例缩放到当前直方图，缩放后满足所有约束时直接作为解，不再求解
+     *
+     * @param previous  上一个batch的解
+     * @param tolerance 两个直方图的行数占比之间允许的最大总变差距离
+     * @return 是否复用了上一个batch的解
+     */
+    public boolean reuse(CpSolution previous, double tolerance) {
+        buildModel();
+        if (previous == null || previous.filterStatuses().length != filterStatuses.length) {
+            return false;
+        }
+        long[] candidate = scaleSolution(previous);
+        if (Arrays.stream(candidate).anyMatch(value -> value < 0 || value > range)) {
+            return false;
+        }
+        double distance = getHistogramDistance(previous);
+        if (distance > tolerance || !linearBounds.stream().allMatch(bound -> bound.isSatisfied(candidate))) {
+            return false;
+        }
+        logger.info(rb.getString("reuseCpSolution"), distance);
+        values = candidate;
+        return true;
+    }
+
+    /**
+     * 以上一个batch的解热启动求解：缩放后的解作为初始解提示，且上一个batch中为0的填充方案在当前batch中也固定为0。
+     * 固定为0后无解时，solve会去掉这些约束重新求解
+     *
+     * @param previous 上一个batch的解
+     */
+    public void warmStart(CpSolution previous) {
+        buildModel();
+        if (previous == null) {
+            return;
+        }
+        long[] candidate = scaleSolution(previous);
+        warmStartCandidate = candidate;
+        warmStartConstraintStart = model.getBuilder().getConstraintsCount();
+        List<IntVar> populationVars = getRepresentativeVars(vars);
+        for (IntVar populationVar : populationVars) {
+            if (candidate[populationVar.getIndex()] == 0) {
+                model.addEquality(populationVar, 0);
+            }
+        }
+        List<IntVar> allVars = new ArrayList<>(populationVars);
+        fkDistinctVars.values().forEach(fkVars -> allVars.addAll(getRepresentativeVars(fkVars)));
+        for (IntVar intVar : allVars) {
+            if (candidate[intVar.getIndex()] >= 0) {
+                model.addHint(intVar, candidate[intVar.getIndex()]);
+            }
+        }
+    }
+
+    private static List<IntVar> getRepresentativeVars(IntVar[][] intVars) {
+        List<IntVar> representativeVars = new ArrayList<>();
+        for (IntVar[] filterVars : intVars) {
+            representativeVars.addAll(List.of(filterVars));
+        }
+        return representativeVars;
+    }
+
+    private void clearWarmStart() {
+        var builder = model.getBuilder();
+        for (int i = builder.getConstraintsCount() - 1; i >= warmStartConstraintStart; i--) {
+            builder.removeConstraints(i);
+        }
+        model.clearHints();
+        warmStartConstraintStart = -1;
+    }
+
+    /**
+     * @return 两个直方图中各个状态行数占比之差的绝对值之和的一半，状态不同时返回1
+     */
+    private double getHistogramDistance(CpSolution previous) {
+        Map<JoinStatus, Integer> previousIndexes = getStatusIndexes(previous.filterStatuses());
+        double previousRange = Arrays.stream(previous.statusSizes()).sum();
+        double distance = 0;
+        for (int filterIndex = 0; filterIndex < filterStatuses.length; filterIndex++) {
+            Integer previousIndex = previousIndexes.get(filterStatuses[filterIndex]);
+            if (previousIndex == null) {
+                return 1;
+            }
+            distance += Math.abs((double) statusSizes[filterIndex] / range - previous.statusSizes()[previousIndex] / previousRange);
+        }
+        return distance / 2;
+    }
+
+    private static Map<JoinStatus, Integer> getStatusIndexes(JoinStatus[] statuses) {
+        Map<JoinStatus, Integer> status2Index = new HashMap<>();
+        for (int i = 0; i < statuses.length; i++) {
+            status2Index.put(statuses[i], i);
+        }
+        return status2Index;
+    }
+
+    /**
+     * 按照每个filter status的行数之比缩放上一个batch的解，每个filter status缩放后的行数之和与当前直方图一致。
+     * 等价的主键状态的解累加到共享的变量上
+     *
+     * @return 按变量编号记录的缩放结果，无法缩放的变量为-1
+     */
+    private long[] scaleSolution(CpSolution previous) {
+        long[] candidate = new long[model.model().getVariablesCount()];
+        Arrays.fill(candidate, -1);
+        if (previous.populations()[0].length != pkStatusNum) {
+            return candidate;
+        }
+        Map<JoinStatus, Integer> previousIndexes = getStatusIndexes(previous.filterStatuses());
+        for (int filterIndex = 0; filterIndex < filterStatuses.length; filterIndex++) {
+            Integer previousIndex = previousIndexes.get(filterStatuses[filterIndex]);
+            long previousSize = previousIndex == null ? 0 : previous.statusSizes()[previousIndex];
+            if (previousSize == 0) {
+                continue;
+            }
+            long[] population = scaleRow(previous.populations()[previousIndex], previousSize, statusSizes[filterIndex]);
+            double ratio = (double) statusSizes[filterIndex] / previousSize;
+            IntVar[] filterVars = vars[filterIndex];
+            for (IntVar populationVar : filterVars) {
+                candidate[populationVar.getIndex()] = 0;
+            }
+            for (int pkStatusIndex = 0; pkStatusIndex < population.length; pkStatusIndex++) {
+                if (population[pkStatusIndex] != 0) {
+                    candidate[filterVars[getClassIndex(filterIndex, pkStatusIndex)].getIndex()] += population[pkStatusIndex];
+                }
+            }
+            for (Map.Entry<Integer, IntVar[][]> fkIndex2Vars : fkDistinctVars.entrySet()) {
+                long[][] previousDistinct = previous.fkIndex2Distinct().get(fkIndex2Vars.getKey());
+                if (previousDistinct == null) {
+                    continue;
+                }
+                IntVar[] distinctVars = fkIndex2Vars.getValue()[filterIndex];
+                for (IntVar distinctVar : distinctVars) {
+                    candidate[distinctVar.getIndex()] = 0;
+                }
+                for (int pkStatusIndex = 0; pkStatusIndex < population.length; pkStatusIndex++) {
+                    if (previousDistinct[previousIndex][pkStatusIndex] != 0) {
+                        candidate[distinctVars[getClassIndex(filterIndex, pkStatusIndex)].getIndex()] +=
+                                Math.round(previousDistinct[previousIndex][pkStatusIndex] * ratio);
+                    }
+                }
+                long[] distinctScale = fkIndex2DistinctScale.get(fkIndex2Vars.getKey());
+                for (int classIndex = 0; classIndex < filterVars.length; classIndex++) {
+                    // distinct数量不超过行数，且不少于行数 * 基数 / 放大后的表大小
+                    long classPopulation = candidate[filterVars[classIndex].getIndex()];
+                    long minDistinct = Math.ceilDiv(classPopulation * distinctScale[0], distinctScale[1]);
+                    int distinctIndex = distinctVars[classIndex].getIndex();
+                    candidate[distinctIndex] = Math.min(Math.max(candidate[distinctIndex], minDistinct), classPopulation);
+                }
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * 按比例缩放一行的解，舍入误差按小数部分从大到小补齐，保证总和为newSize
+     */
+    private static long[] scaleRow(long[] row, long oldSize, long newSize) {
+        long[] scaled = new long[row.length];
+        double[] remainders = new double[row.length];
+        long sum = 0;
+        for (int i = 0; i < row.length; i++) {
+            double value = (double) row[i] * newSize / oldSize;
+            scaled[i] = (long) value;
+            remainders[i] = value - scaled[i];
+            sum += scaled[i];
+        }
+        Integer[] order = new Integer[row.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (left, right) -> Double.compare(remainders[right], remainders[left]));
+        for (int i = 0; sum < newSize; i = (i + 1) % order.length, sum++) {
+            scaled[order[i]]++;
+        }
+        return scaled;
     }
 
     public FkRange[][] getDistinctResult(int fkColIndex) {
         var involvedFkVars = fkDistinctInvolvedVars.remove(fkColIndex);
-        FkRange[][] fkRanges = new FkRange[vars.length][vars[0].length];
+        FkRange[][] fkRanges = new FkRange[vars.length][pkStatusNum];
         for (List<IntVar> samePkStatusVars : involvedFkVars) {
             int start = 0;
             for (IntVar samePkStatusVar : samePkStatusVars) {
-                int range = (int) solver.value(samePkStatusVar);
+                int range = (int) values[samePkStatusVar.getIndex()];
                 String[] tags = samePkStatusVar.getName().split("-");
                 int filterIndex = Integer.parseInt(tags[1]);
                 int pkIndex = Integer.parseInt(tags[2]);
@@ -65,7 +499,7 @@ public class ConstructCpModel {
             }
         }
         for (int filterIndex = 0; filterIndex < vars.length; filterIndex++) {
-            for (int pkIndex = 0; pkIndex < vars[0].length; pkIndex++) {
+            for (int pkIndex = 0; pkIndex < pkStatusNum; pkIndex++) {
                 if (fkRanges[filterIndex][pkIndex] == null) {
                     fkRanges[filterIndex][pkIndex] = new FkRange(-1, -1);
                 }
@@ -75,82 +509,269 @@ public class ConstructCpModel {
     }
 
     public void initDistinctModel(int fkColIndex, long fkColCardinality, long fkTableSize) {
-        IntVar[][] distinctVars = new IntVar[vars.length][vars[0].length];
         // todo 用fk的最大重复次数来替代
         fkTableSize = (long) (fkTableSize * DISTINCT_FK_SKEW);
-        for (int filterIndex = 0; filterIndex < distinctVars.length; filterIndex++) {
-            for (int pkIndex = 0; pkIndex < distinctVars[0].length; pkIndex++) {
-                IntVar numVar = vars[filterIndex][pkIndex];
-                String varName = fkColIndex + "-" + filterIndex + "-" + pkIndex;
-                IntVar distinctVar = model.newIntVarFromDomain(numVar.getDomain(), varName);
-                model.addLessOrEqual(distinctVar, numVar);
-                // distinct的外键均匀分布与每个range中, i.e., x / tableSize <= d/fkColCardinality
-                model.addLessOrEqual(LinearExpr.term(numVar, fkColCardinality), LinearExpr.term(distinctVar, fkTableSize));
-                distinctVars[filterIndex][pkIndex] = distinctVar;
+        fkIndex2DistinctScale.put(fkColIndex, new long[]{fkColCardinality, fkTableSize});
+        fkIndex2Slot.put(fkColIndex, fkIndex2Slot.size() + 1);
+        fkSharePkCells.put(fkColIndex, new HashMap<>());
+    }
+
+    /**
+     * 为每个等价类创建行数变量与distinct变量，并加入记录的约束。
+     * 同一个filter status下，标识相同且所有cell所在的约束都相同的主键状态在模型中无法区分，合并为一个变量。
+     * 只有出现在约束中的主键状态需要比较所在的约束，其余的主键状态只按照输出状态得到的标识合并
+     */
+    private void buildModel() {
+        if (vars != null) {
+            return;
+        }
+        int filterSize = filterStatuses.length;
+        int slotNum = fkIndex2Slot.size() + 1;
+        int slotCellNum = filterSize * pkStatusNum;
+        // 约束涉及的cell按照 (filter status, 主键状态, 槽位, 约束) 排序，同一个主键状态所在的约束相邻
+        long[] entries = new long[pendingConstraints.stream().mapToInt(constraint -> constraint.cells().length).sum()];
+        int entryNum = 0;
+        for (int constraintIndex = 0; constraintIndex < pendingConstraints.size(); constraintIndex++) {
+            for (int cell : pendingConstraints.get(constraintIndex).cells()) {
+                long pkCell = (long) (cell % slotCellNum) * slotNum + cell / slotCellNum;
+                entries[entryNum++] = pkCell << 32 | constraintIndex;
             }
         }
-        fkSharePkVars.put(fkColIndex, new HashMap<>());
-        fkDistinctVars.put(fkColIndex, distinctVars);
+        Arrays.sort(entries);
+        int[][] outputMembers = getOutputMembers();
+        vars = new IntVar[filterSize][];
+        representatives = new int[filterSize][];
+        outputClasses = new int[filterSize][];
+        List<IntVar[][]> slot2Vars = new ArrayList<>();
+        slot2Vars.add(vars);
+        for (Integer fkColIndex : fkIndex2Slot.keySet()) {
+            IntVar[][] distinctVars = new IntVar[filterSize][];
+            fkDistinctVars.put(fkColIndex, distinctVars);
+            slot2Vars.add(distinctVars);
+        }
+        List<Integer> fkColIndexes = new ArrayList<>(fkIndex2Slot.keySet());
+        BitSet involvedPks = new BitSet(pkStatusNum);
+        int entryStart = 0;
+        int classNum = 0;
+        for (int filterIndex = 0; filterIndex < filterSize; filterIndex++) {
+            // 行在filter status为false的链上的输出状态总是false，标识为filter status与输出状态同时为true的链
+            Map<JoinStatus, Integer> key2Id = new HashMap<>();
+            int[] outputKeys = new int[outputStatuses.length];
+            for (int outputIndex = 0; outputIndex < outputStatuses.length; outputIndex++) {
+                Integer keyId = key2Id.putIfAbsent(filterStatuses[filterIndex].and(outputStatuses[outputIndex]), key2Id.size());
+                outputKeys[outputIndex] = keyId == null ? key2Id.size() - 1 : keyId;
+            }
+            // 出现在约束中的主键状态的签名为标识，以及每个槽位上所在约束的数量与编号
+            Map<PkStatusSignature, Integer> signature2Representative = new HashMap<>();
+            Map<Integer, Integer> pk2Representative = new HashMap<>();
+            while (entryStart < entries.length && (entries[entryStart] >>> 32) / slotNum / pkStatusNum == filterIndex) {
+                long pkCell = (entries[entryStart] >>> 32) / slotNum;
+                int entryEnd = entryStart;
+                while (entryEnd < entries.length && (entries[entryEnd] >>> 32) / slotNum == pkCell) {
+                    entryEnd++;
+                }
+                int pkStatusIndex = (int) (pkCell % pkStatusNum);
+                int[] signature = new int[1 + slotNum + entryEnd - entryStart];
+                signature[0] = outputKeys[pkOutputIndexes[pkStatusIndex]];
+                for (int i = entryStart; i < entryEnd; i++) {
+                    signature[1 + (int) ((entries[i] >>> 32) % slotNum)]++;
+                    signature[1 + slotNum + i - entryStart] = (int) entries[i];
+                }
+                Integer representative = signature2Representative.putIfAbsent(new PkStatusSignature(signature), pkStatusIndex);
+                pk2Representative.put(pkStatusIndex, representative == null ? pkStatusIndex : representative);
+                involvedPks.set(pkStatusIndex);
+                entryStart = entryEnd;
+            }
+            // 其余主键状态中标识相同的合并，代表为各个输出状态中第一个不在约束中的主键状态的最小值
+            int[] keyRepresentatives = new int[key2Id.size()];
+            Arrays.fill(keyRepresentatives, -1);
+            for (int outputIndex = 0; outputIndex < outputStatuses.length; outputIndex++) {
+                for (int pkStatusIndex : outputMembers[outputIndex]) {
+                    if (!involvedPks.get(pkStatusIndex)) {
+                        int keyId = outputKeys[outputIndex];
+                        if (keyRepresentatives[keyId] < 0 || keyRepresentatives[keyId] > pkStatusIndex) {
+                            keyRepresentatives[keyId] = pkStatusIndex;
+                        }
+                        break;
+                    }
+                }
+            }
+            involvedPks.clear();
+            int[] classRepresentatives = IntStream.concat(signature2Representative.values().stream().mapToInt(Integer::intValue),
+                    Arrays.stream(keyRepresentatives).filter(representative -> representative >= 0)).sorted().toArray();
+            representatives[filterIndex] = classRepresentatives;
+            Map<Integer, Integer> pk2Class = new HashMap<>();
+            pk2Representative.forEach((pkStatusIndex, representative) ->
+                    pk2Class.put(pkStatusIndex, Arrays.binarySearch(classRepresentatives, representative)));
+            involvedPk2Class.add(pk2Class);
+            outputClasses[filterIndex] = new int[outputStatuses.length];
+            for (int outputIndex = 0; outputIndex < outputStatuses.length; outputIndex++) {
+                int representative = keyRepresentatives[outputKeys[outputIndex]];
+                outputClasses[filterIndex][outputIndex] = representative < 0 ? -1 : Arrays.binarySearch(classRepresentatives, representative);
+            }
+            for (IntVar[][] slotVars : slot2Vars) {
+                slotVars[filterIndex] = new IntVar[classRepresentatives.length];
+            }
+            for (int classIndex = 0; classIndex < classRepresentatives.length; classIndex++) {
+                int pkStatusIndex = classRepresentatives[classIndex];
+                vars[filterIndex][classIndex] = model.newIntVar(0, range, filterIndex + "-" + pkStatusIndex);
+                for (int slot = 1; slot < slot2Vars.size(); slot++) {
+                    String varName = fkColIndexes.get(slot - 1) + "-" + filterIndex + "-" + pkStatusIndex;
+                    slot2Vars.get(slot)[filterIndex][classIndex] = model.newIntVar(0, range, varName);
+                }
+            }
+            classNum += classRepresentatives.length;
+        }
+        logger.debug("merge {} joint pk statuses of {} filter statuses into {} classes", pkStatusNum, filterSize, classNum);
+        for (int filterIndex = 0; filterIndex < filterSize; filterIndex++) {
+            addSumConstraint(List.of(vars[filterIndex]), statusSizes[filterIndex], statusSizes[filterIndex]);
+        }
+        for (Map.Entry<Integer, IntVar[][]> fkIndex2Vars : fkDistinctVars.entrySet()) {
+            long[] distinctScale = fkIndex2DistinctScale.get(fkIndex2Vars.getKey());
+            for (int filterIndex = 0; filterIndex < filterSize; filterIndex++) {
+                for (int classIndex = 0; classIndex < vars[filterIndex].length; classIndex++) {
+                    IntVar numVar = vars[filterIndex][classIndex];
+                    IntVar distinctVar = fkIndex2Vars.getValue()[filterIndex][classIndex];
+                    addLinearConstraint(new IntVar[]{distinctVar, numVar}, new long[]{1, -1}, Long.MIN_VALUE, 0);
+                    // distinct的外键均匀分布与每个range中, i.e., x / tableSize <= d/fkColCardinality
+                    addLinearConstraint(new IntVar[]{numVar, distinctVar}, new long[]{distinctScale[0], -distinctScale[1]}, Long.MIN_VALUE, 0);
+                }
+            }
+        }
+        for (PendingConstraint constraint : pendingConstraints) {
+            // 等价的主键状态总是同时出现在约束中，共享的变量只加入一次
+            Set<IntVar> intVars = new LinkedHashSet<>();
+            for (int cell : constraint.cells()) {
+                int filterIndex = cell % slotCellNum / pkStatusNum;
+                int classIndex = getClassIndex(filterIndex, cell % pkStatusNum);
+                intVars.add(slot2Vars.get(cell / slotCellNum)[filterIndex][classIndex]);
+            }
+            greedyBounds.add(addSumConstraint(intVars, constraint.lower(), constraint.upper()));
+            if (constraint.shareFkIndex() >= 0) {
+                fkDistinctInvolvedVars.get(constraint.shareFkIndex()).add(new ArrayList<>(intVars));
+            }
+        }
+        pendingConstraints.clear();
+    }
+
+    /**
+     * @return 每个输出状态下的联合主键状态，从小到大排列
+     */
+    private int[][] getOutputMembers() {
+        int[] memberNums = new int[outputStatuses.length];
+        for (int outputIndex : pkOutputIndexes) {
+            memberNums[outputIndex]++;
+        }
+        int[][] outputMembers = new int[outputStatuses.length][];
+        for (int outputIndex = 0; outputIndex < outputStatuses.length; outputIndex++) {
+            outputMembers[outputIndex] = new int[memberNums[outputIndex]];
+        }
+        Arrays.fill(memberNums, 0);
+        for (int pkStatusIndex = 0; pkStatusIndex < pkStatusNum; pkStatusIndex++) {
+            int outputIndex = pkOutputIndexes[pkStatusIndex];
+            outputMembers[outputIndex][memberNums[outputIndex]++] = pkStatusIndex;
+        }
+        return outputMembers;
+    }
+
+    /**
+     * @return filter status下主键状态所在的等价类
+     */
+    private int getClassIndex(int filterIndex, int pkStatusIndex) {
+        Integer classIndex = involvedPk2Class.get(filterIndex).get(pkStatusIndex);
+        return classIndex == null ? outputClasses[filterIndex][pkOutputIndexes[pkStatusIndex]] : classIndex;
     }
 
     public void applyFKShareConstraint(int fkColIndex, Map<ArrayList<Integer>, Long> samePkStatusIndexes2Limitations) {
-        var pkIndex2IntVar = fkSharePkVars.remove(fkColIndex);
+        var pkIndex2Cells = fkSharePkCells.remove(fkColIndex);
         fkDistinctInvolvedVars.put(fkColIndex, new ArrayList<>());
         for (var pkIndexes2Limitation : samePkStatusIndexes2Limitations.entrySet()) {
             var samePkStatusIndexes = pkIndexes2Limitation.getKey();
-            List<IntVar> sharedFk = new ArrayList<>();
+            List<Integer> sharedFk = new ArrayList<>();
             for (Integer samePkStatusIndex : samePkStatusIndexes) {
-                if (pkIndex2IntVar.containsKey(samePkStatusIndex)) {
-                    sharedFk.addAll(pkIndex2IntVar.get(samePkStatusIndex));
+                if (pkIndex2Cells.containsKey(samePkStatusIndex)) {
+                    sharedFk.addAll(pkIndex2Cells.get(samePkStatusIndex));
                 }
             }
             if (!sharedFk.isEmpty()) {
-                fkDistinctInvolvedVars.get(fkColIndex).add(sharedFk);
-                model.addLessOrEqual(LinearExpr.sum(sharedFk.toArray(new IntVar[0])), pkIndexes2Limitation.getValue());
+                int[] cells = sharedFk.stream().mapToInt(Integer::intValue).toArray();
+                pendingConstraints.add(new PendingConstraint(cells, Long.MIN_VALUE, pkIndexes2Limitation.getValue(), fkColIndex));
             }
         }
     }
 
 
     /**
-     * 根据join info table计算不同status的填充数量
+     * 根据join info table计算不同status的填充数量，所有主键状态的输出状态相同
      *
      * @param filterHistogram  filter status的统计直方图
      * @param pkJointStatusNum 所有联合主键的数量
      * @param range            每个填充方案的的上界
      */
     public void initModel(Map<JoinStatus, Long> filterHistogram, int pkJointStatusNum, int range) {
-        vars = new IntVar[filterHistogram.size()][pkJointStatusNum];
-        for (int i = 0; i < filterHistogram.size(); i++) {
-            for (int j = 0; j < pkJointStatusNum; j++) {
-                vars[i][j] = model.newIntVar(0, range, i + "-" + j);
-            }
-        }
-        int i = 0;
-        for (Map.Entry<JoinStatus, Long> status2Size : filterHistogram.entrySet()) {
-            model.addEquality(LinearExpr.sum(vars[i++]), status2Size.getValue());
+        int chainNum = filterHistogram.keySet().iterator().next().size();
+        initModel(filterHistogram, new JoinStatus[]{new JoinStatus(new boolean[chainNum])}, new int[pkJointStatusNum], range);
+    }
+
+    /**
+     * 根据join info table计算不同status的填充数量
+     *
+     * @param filterHistogram filter status的统计直方图
+     * @param outputStatuses  联合主键状态在各条链上所有不同的输出状态，链与filter status一致
+     * @param pkOutputIndexes 每个联合主键状态的输出状态的位置，同一个filter status下输出状态与filter status按位与的结果不同的联合主键状态不会合并为一个变量
+     * @param range           每个填充方案的的上界
+     */
+    public void initModel(Map<JoinStatus, Long> filterHistogram, JoinStatus[] outputStatuses, int[] pkOutputIndexes, int range) {
+        this.range = range;
+        this.outputStatuses = outputStatuses;
+        this.pkOutputIndexes = pkOutputIndexes;
+        pkStatusNum = pkOutputIndexes.length;
+        filterStatuses = filterHistogram.keySet().toArray(new JoinStatus[0]);
+        statusSizes = filterHistogram.values().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private int getCell(int slot, int filterIndex, int pkStatusIndex) {
+        return (slot * filterStatuses.length + filterIndex) * pkStatusNum + pkStatusIndex;
+    }
+
+    private void addInvolvedCell(int cell) {
+        if (involvedCellNum == involvedCells.length) {
+            involvedCells = Arrays.copyOf(involvedCells, involvedCellNum * 2);
         }
+        involvedCells[involvedCellNum++] = cell;
     }
 
     public void addJoinDistinctValidVar(int fkColIndex, int filterIndex, int pkStatusIndex) {
-        IntVar fkVar = fkDistinctVars.get(fkColIndex)[filterIndex][pkStatusIndex];
-        involvedVars.add(fkVar);
-        var pkIndex2IntVar = fkSharePkVars.get(fkColIndex);
-        pkIndex2IntVar.computeIfAbsent(pkStatusIndex, v -> new HashSet<>());
-        pkIndex2IntVar.get(pkStatusIndex).add(fkVar);
+        int cell = getCell(fkIndex2Slot.get(fkColIndex), filterIndex, pkStatusIndex);
+        addInvolvedCell(cell);
+        fkSharePkCells.get(fkColIndex).computeIfAbsent(pkStatusIndex, v -> new LinkedHashSet<>()).add(cell);
     }
 
     public void addJoinCardinalityValidVar(int filterIndex, int pkStatusIndex) {
-        involvedVars.add(vars[filterIndex][pkStatusIndex]);
+        addInvolvedCell(getCell(0, filterIndex, pkStatusIndex));
     }
 
     public void addJoinCardinalityConstraint(long eqJoinSize) {
+        int[] cells = Arrays.copyOf(involvedCells, involvedCellNum);
         if (eqJoinSize == 1 || eqJoinSize == 2) {
-            model.addLinearConstraint(LinearExpr.sum(involvedVars.toArray(new IntVar[0])), eqJoinSize - 2, eqJoinSize + 2);
+            pendingConstraints.add(new PendingConstraint(cells, eqJoinSize - 2, eqJoinSize + 2, -1));
         } else {
-            model.addLinearConstraint(LinearExpr.sum(involvedVars.toArray(new IntVar[0])), (long) (eqJoinSize*0.96), (long) (eqJoinSize*1.04));
+            pendingConstraints.add(new PendingConstraint(cells, (long) (eqJoinSize*0.96), (long) (eqJoinSize*1.04), -1));
         }
 
-        involvedVars.clear();
+        involvedCellNum = 0;
+    }
+
+    private LinearBound addSumConstraint(Collection<IntVar> intVars, long lower, long upper) {
+        long[] coefficients = new long[intVars.size()];
+        Arrays.fill(coefficients, 1);
+        return addLinearConstraint(intVars.toArray(new IntVar[0]), coefficients, lower, upper);
+    }
+
+    private LinearBound addLinearConstraint(IntVar[] intVars, long[] coefficients, long lower, long upper) {
+        model.addLinearConstraint(LinearExpr.weightedSum(intVars, coefficients), lower, upper);
+        LinearBound bound = new LinearBound(Arrays.stream(intVars).mapToInt(IntVar::getIndex).toArray(), coefficients, lower, upper);
+        linearBounds.add(bound);
+        return bound;
     }
 }
@@ -0,0 +1,17 @@
+package ecnu.db.generator;
+
+import ecnu.db.generator.joininfo.JoinStatus;
+
+import java.util.Map;
+
+/**
+ * 一个batch的CP问题的解，用于热启动下一个batch的求解
+ *
+ * @param filterStatuses   直方图中的filter status
+ * @param statusSizes      每个filter status的行数
+ * @param populations      每个filter status填充各个主键状态的行数
+ * @param fkIndex2Distinct 每个JDC外键列在各个filter status与主键状态上的distinct数量
+ */
+public record CpSolution(JoinStatus[] filterStatuses, long[] statusSizes, long[][] populations,
+                         Map<Integer, long[][]> fkIndex2Distinct) {
+}
@@ -0,0 +1,32 @@
+package ecnu.db.generator;
+
+import com.google.ortools.sat.SatParameters;
+
+/**
+ * 每个batch的CP求解参数
+ *
+ * @param maxTimeInSeconds 每个batch的求解时间上限，不大于0时不限制，超时未找到解时使用贪心分配的解
+ * @param numWorkers       求解线程数，固定线程数保证不同机器上的搜索过程一致
+ * @param randomSeed       求解的随机种子
+ * @param deterministic    为true时交替执行各个搜索策略，并以确定性时间计算时间上限，相同的输入总是得到相同的解
+ */
+public record CpSolverConfig(double maxTimeInSeconds, int numWorkers, int randomSeed, boolean deterministic) {
+    public static final CpSolverConfig DEFAULT = new CpSolverConfig(60, 8, 0, false);
+
+    /**
+     * @param maxTimeInSeconds 本次求解的时间上限，不大于0时不限制
+     */
+    void apply(SatParameters.Builder parameters, double maxTimeInSeconds) {
+        parameters.setEnumerateAllSolutions(false);
+        parameters.setNumWorkers(numWorkers);
+        parameters.setRandomSeed(randomSeed);
+        parameters.setInterleaveSearch(deterministic);
+        if (maxTimeInSeconds > 0) {
+            if (deterministic) {
+                parameters.setMaxDeterministicTime(maxTimeInSeconds);
+            } else {
+                parameters.setMaxTimeInSeconds(maxTimeInSeconds);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ecnu.db.generator;
+
+import ecnu.db.schema.Column;
+import ecnu.db.schema.ColumnBuffer;
+import ecnu.db.utils.BatchArena;
+
+import java.nio.LongBuffer;
+
+/**
+ * 按列组织的一个batch的数据，输出时再编码为字节
+ *
+ * @param schemaName     表名
+ * @param keyColumnNames 主键与外键的列名，顺序与keyData一致
+ * @param keyData        主键与外键的值，存放在BatchArena分配的堆外缓冲区中，Long.MIN_VALUE表示null
+ * @param attColumns     属性列
+ * @param attData        属性列在列内部表示的值
+ * @param size           batch的行数
+ */
+public record DataBatch(String schemaName, String[] keyColumnNames, LongBuffer[] keyData,
+                        Column[] attColumns, ColumnBuffer[] attData, int size) implements BatchEncoder {
+
+    /**
+     * 将[start, end)之间的行以CSV格式编码至缓冲区
+     */
+    @Override
+    public void encodeRows(int start, int end, RowEncoder encoder) {
+        for (int rowId = start; rowId < end; rowId++) {
+            for (LongBuffer keys : keyData) {
+                long key = keys.get(rowId);
+                if (key == Long.MIN_VALUE) {
+                    encoder.appendNull();
+                } else {
+                    encoder.appendLong(key);
+                }
+                encoder.appendDelimiter();
+            }
+            for (int i = 0; i < attColumns.length; i++) {
+                if (i > 0) {
+                    encoder.appendDelimiter();
+                }
+                attColumns[i].output(attData[i].get(rowId), encoder);
+            }
+            encoder.appendLineSeparator();
+        }
+    }
+
+    /**
+     * 输出完成后将所有列的缓冲区归还给BatchArena，供之后的batch复用
+     */
+    public void release() {
+        for (LongBuffer keys : keyData) {
+            BatchArena.getInstance().free(keys);
+        }
+        for (ColumnBuffer buffer : attData) {
+            buffer.release();
+        }
+    }
+}
@@ -5,13 +5,21 @@ import ecnu.db.LanguageManager;
 import ecnu.db.generator.constraintchain.ConstraintChain;
 import ecnu.db.generator.constraintchain.ConstraintChainManager;
 import ecnu.db.generator.constraintchain.ConstraintChainNode;
+import ecnu.db.generator.constraintchain.filter.ConstraintChainFilterNode;
+import ecnu.db.generator.constraintchain.filter.FilterCache;
+import ecnu.db.generator.constraintchain.filter.LogicNode;
 import ecnu.db.generator.constraintchain.join.ConstraintChainFkJoinNode;
 import ecnu.db.generator.constraintchain.join.ConstraintChainPkJoinNode;
-import ecnu.db.generator.joininfo.JoinStatus;
+import ecnu.db.generator.joininfo.JoinStatusIndex;
 import ecnu.db.generator.joininfo.RuleTable;
 import ecnu.db.generator.joininfo.RuleTableManager;
 import ecnu.db.schema.ColumnManager;
+import ecnu.db.schema.FilterKernel;
 import ecnu.db.schema.TableManager;
+import ecnu.db.utils.BatchArena;
+import ecnu.db.utils.CounterRandom;
+import ecnu.db.utils.DatabaseConnectorConfig;
+import ecnu.db.utils.exception.TouchstoneException;
 import org.jgrapht.Graph;
 import org.jgrapht.alg.connectivity.KosarajuStrongConnectivityInspector;
 import org.jgrapht.graph.DefaultDirectedGraph;
@@ -22,9 +30,15 @@ import picocli.CommandLine;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.LongBuffer;
+import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 
@@ -48,12 +62,62 @@ public class DataGenerator implements Callable<Integer> {
     private boolean expandRules;
     @CommandLine.Option(names = {"-sf", "--scale-factor"}, description = "the size of each batch", defaultValue = "1")
     private int scaleFactor;
+    @CommandLine.Option(names = {"--sink"}, description = "how to output the data: ${COMPLETION-CANDIDATES}, default value: '${DEFAULT-VALUE}'", defaultValue = "FILE")
+    private DataWriter.SinkType sinkType;
+    @CommandLine.Option(names = {"--writer_threads"}, description = "threads for writing data files, default value: '${DEFAULT-VALUE}'", defaultValue = "6")
+    private int writerThreads;
+    @CommandLine.Option(names = {"--max_inflight_batches"}, description = "max batches waiting to be written, the generation blocks when reached, default value: '${DEFAULT-VALUE}'", defaultValue = "12")
+    private int maxInFlightBatches;
+    @CommandLine.Option(names = {"--format"}, description = "format of the data files: ${COMPLETION-CANDIDATES}, default value: '${DEFAULT-VALUE}'", defaultValue = "CSV")
+    private OutputFormat format;
+    @CommandLine.Option(names = {"--codec"}, description = "compression of the data files: ${COMPLETION-CANDIDATES}, default value: '${DEFAULT-VALUE}'", defaultValue = "NONE")
+    private OutputCodec codec;
+    @CommandLine.Option(names = {"--varchar_dictionary_threshold"}, description = "VARCHAR columns with fewer distinct values are rendered once into a dictionary, default value: '${DEFAULT-VALUE}'", defaultValue = "4096")
+    private int varcharDictionaryThreshold;
+    @CommandLine.Option(names = {"--varchar_cache_size"}, description = "slots of the value cache for mid-cardinality VARCHAR columns, 0 to disable, default value: '${DEFAULT-VALUE}'", defaultValue = "16384")
+    private int varcharCacheSize;
+    @CommandLine.Option(names = {"--cp_reuse_tolerance"}, description = "max distance between the status histograms of two batches for reusing the scaled CP solution of the previous batch, 0 to always solve, default value: '${DEFAULT-VALUE}'", defaultValue = "0.01")
+    private double cpReuseTolerance;
+    @CommandLine.Option(names = {"--cp_time_limit"}, description = "time limit in seconds for solving the CP model of each batch, the greedy assignment is used when no solution is found in time, 0 for no limit, default value: '${DEFAULT-VALUE}'", defaultValue = "60")
+    private double cpTimeLimit;
+    @CommandLine.Option(names = {"--cp_workers"}, description = "worker threads of the CP solver, default value: '${DEFAULT-VALUE}'", defaultValue = "8")
+    private int cpWorkers;
+    @CommandLine.Option(names = {"--cp_seed"}, description = "random seed of the CP solver, default value: '${DEFAULT-VALUE}'", defaultValue = "0")
+    private int cpSeed;
+    @CommandLine.Option(names = {"--cp_deterministic"}, description = "interleave the CP search and count the time limit in deterministic time, so that the same input always gets the same solution", defaultValue = "false")
+    private boolean cpDeterministic;
+    @CommandLine.Option(names = {"--clustered_tables"}, split = ",", description = "tables whose attribute values keep the CDF order inside each batch instead of being shuffled by a shared row permutation, e.g. public.lineitem")
+    private Set<String> clusteredTables = new HashSet<>();
+    @CommandLine.Option(names = {"--seed"}, description = "seed of all random values, every batch is generated identically from the same seed and config regardless of threads and generators, default value: '${DEFAULT-VALUE}'", defaultValue = "0")
+    private long seed;
+    @CommandLine.ArgGroup(exclusive = false, heading = "Target database for COPY sink%n")
+    private CopySinkConfig copySinkConfig;
+
+    static class CopySinkConfig {
+        @CommandLine.Option(names = {"-H", "--host"}, defaultValue = "localhost", description = "database ip, default value: '${DEFAULT-VALUE}'")
+        private String databaseIp;
+        @CommandLine.Option(names = {"-P", "--port"}, defaultValue = "5432", description = "database port, default value: '${DEFAULT-VALUE}'")
+        private String databasePort;
+        @CommandLine.Option(names = {"-u", "--user"}, required = true, description = "database user name")
+        private String databaseUser;
+        @CommandLine.Option(names = {"-p", "--password"}, required = true, description = "database password", interactive = true)
+        private String databasePwd;
+        @CommandLine.Option(names = {"-D", "--database_name"}, required = true, description = "database name")
+        private String databaseName;
+        @CommandLine.Option(names = {"--copy_streams"}, defaultValue = "4", description = "parallel COPY streams, default value: '${DEFAULT-VALUE}'")
+        private int copyStreams;
+    }
 
 
     private Map<String, List<ConstraintChain>> schema2chains;
 
     private DataWriter dataWriter;
 
+    /**
+     * 同时求解与填充外键组的线程，每张表按照同时求解的外键组数量调整线程数，外键组内部的填充任务提交到FkGenerator的线程池
+     */
+    private ThreadPoolExecutor fkGroupPool;
+
 
     // batch生成的起始位置
     private long batchStart;
@@ -80,7 +144,7 @@ public class DataGenerator implements Callable<Integer> {
     }
 
 
-    private void init() throws IOException {
+    private void init() throws IOException, TouchstoneException, SQLException {
         //载入schema配置文件
         TableManager.getInstance().setResultDir(configPath);
         TableManager.getInstance().loadSchemaInfo();
@@ -88,20 +152,34 @@ public class DataGenerator implements Callable<Integer> {
         ColumnManager.getInstance().setResultDir(configPath);
         ColumnManager.getInstance().loadColumnMetaData();
         ColumnManager.getInstance().loadColumnDistribution();
+        ColumnManager.getInstance().setVarcharValueCache(varcharDictionaryThreshold, varcharCacheSize);
+        logger.info("filter kernel: {}", FilterKernel.isVectorized() ? "vector" : "scalar");
         //载入约束链，并进行transform
         ConstraintChainManager.getInstance().setResultDir(configPath);
         Map<String, List<ConstraintChain>> query2chains = ConstraintChainManager.loadConstrainChainResult(configPath);
         ConstraintChainManager.getInstance().cleanConstrainChains(query2chains);
         schema2chains = getSchema2Chains(query2chains);
-        // 删除上次生成的数据
-        File dataDir = new File(outputPath);
-        if (dataDir.isDirectory() && dataDir.listFiles() != null) {
-            Arrays.stream(Objects.requireNonNull(dataDir.listFiles()))
-                    .filter(File::delete)
-                    .forEach(file -> logger.info(rb.getString("deleteOldData"), file.getName()));
-        }
         // 初始化数据生成器
-        dataWriter = new DataWriter(outputPath, generatorId);
+        if (sinkType == DataWriter.SinkType.COPY) {
+            if (copySinkConfig == null) {
+                throw new TouchstoneException(rb.getString("copySinkWithoutDatabase"));
+            }
+            if (format == OutputFormat.ARROW) {
+                throw new TouchstoneException(String.format(rb.getString("copySinkUnsupportedFormat"), format));
+            }
+            DatabaseConnectorConfig config = new DatabaseConnectorConfig(copySinkConfig.databaseIp, copySinkConfig.databasePort,
+                    copySinkConfig.databaseUser, copySinkConfig.databasePwd, copySinkConfig.databaseName);
+            dataWriter = new DataWriter(config, copySinkConfig.copyStreams, maxInFlightBatches, format);
+        } else {
+            // 删除上次生成的数据
+            File dataDir = new File(outputPath);
+            if (dataDir.isDirectory() && dataDir.listFiles() != null) {
+                Arrays.stream(Objects.requireNonNull(dataDir.listFiles()))
+                        .filter(File::delete)
+                        .forEach(file -> logger.info(rb.getString("deleteOldData"), file.getName()));
+            }
+            dataWriter = new DataWriter(outputPath, generatorId, writerThreads, maxInFlightBatches, format, codec);
+        }
 
         stepRange = (long) stepSize * (generatorNum - 1);
     }
@@ -140,54 +218,139 @@ public class DataGenerator implements Callable<Integer> {
             batchSize = stepSize;
         }
         batchStart = batchSize * generatorId;
+        BatchArena.getInstance().setBatchSize((int) Math.min(batchSize, tableSize));
     }
 
 
-    private boolean[][] generateStatusViewOfEachRow(List<ConstraintChain> constraintChains, int range) {
+    private StatusMatrix generateStatusViewOfEachRow(List<ConstraintChain> constraintChains, int range) {
         // 计算外键的filter status
-        boolean[][] statusVectorOfEachRow = new boolean[range][constraintChains.size()];
-        constraintChains.stream().parallel().forEach(chain -> {
-            boolean[] statusVector = chain.evaluateFilterStatus(range);
-            int chainIndex = chain.getChainIndex();
-            for (int rowId = 0; rowId < statusVector.length; rowId++) {
-                statusVectorOfEachRow[rowId][chainIndex] = statusVector[rowId];
-            }
-        });
-        return statusVectorOfEachRow;
+        StatusMatrix statusMatrix = new StatusMatrix(range, constraintChains.size());
+        // 多条约束链中重复出现的谓词只计算一次
+        List<LogicNode> filterRoots = constraintChains.stream().map(chain -> chain.getNodes().get(0))
+                .filter(ConstraintChainFilterNode.class::isInstance)
+                .map(node -> ((ConstraintChainFilterNode) node).getRoot()).toList();
+        FilterCache filterCache = FilterCache.build(filterRoots, range);
+        logger.debug("shared filter results: {}", filterCache.size());
+        constraintChains.stream().parallel().forEach(chain ->
+                statusMatrix.setChainStatus(chain.getChainIndex(), chain.evaluateFilterStatus(range, filterCache)));
+        filterCache.release();
+        return statusMatrix;
     }
 
-    private StringBuilder[] generatePks(boolean[][] statusVectorOfEachRow, int[] pkStatusChainIndexes, String pkName) {
+    private LongBuffer generatePks(StatusMatrix statusMatrix, int[] pkStatusChainIndexes, String pkName) {
         //todo 处理多列主键
-        int range = statusVectorOfEachRow.length;
-        StringBuilder[] rowData = new StringBuilder[range];
+        int range = statusMatrix.size();
+        if (pkName.isEmpty()) {
+            return null;
+        }
+        LongBuffer pkData = BatchArena.getInstance().allocateLongBuffer(range);
         if (pkStatusChainIndexes.length > 0) {
             //创建主键状态矩阵
-            JoinStatus[] allStatuses = new JoinStatus[range];
-            Map<JoinStatus, Long> pkHistogram = new HashMap<>();
-            FkGenerator.staticsStatusHistogram(statusVectorOfEachRow, allStatuses, pkStatusChainIndexes, pkHistogram);
+            int[] statusIndexes = BatchArena.getInstance().allocateInts(range);
+            JoinStatusIndex statusIndex = new JoinStatusIndex();
+            long[] statusSizes = FkGenerator.staticsStatusHistogram(statusMatrix, pkStatusChainIndexes, statusIndexes, statusIndex);
             String showStatusVectorTable = rb.getString("showStatusVectorTable");
             logger.info(showStatusVectorTable, pkName);
-            for (Map.Entry<JoinStatus, Long> joinStatusLongEntry : pkHistogram.entrySet()) {
-                logger.info("size:{}, status:{}", joinStatusLongEntry.getValue(), joinStatusLongEntry.getKey().status());
+            for (int i = 0; i < statusSizes.length; i++) {
+                logger.info("size:{}, status:{}", statusSizes[i], statusIndex.get(i).status());
+            }
+            long[] nextPks = RuleTableManager.getInstance().addRuleTable(pkName, statusIndex.getStatuses(), statusSizes, batchStart);
+            for (int rowId = 0; rowId < range; rowId++) {
+                pkData.put(rowId, nextPks[statusIndexes[rowId]]++);
             }
-            var pkStatus2Location = RuleTableManager.getInstance().addRuleTable(pkName, pkHistogram, batchStart);
-            IntStream.range(0, range).parallel().forEach(rowId ->
-                    rowData[rowId] = new StringBuilder().append(pkStatus2Location.get(allStatuses[rowId]).getAndIncrement()).append(','));
+            BatchArena.getInstance().free(statusIndexes);
         }
         //处理不需要外键填充的主键状态
-        else if (!pkName.isEmpty()) {
-            IntStream.range(0, range).parallel().forEach(i -> rowData[i] = new StringBuilder().append(batchStart + i).append(','));
+        else {
+            IntStream.range(0, range).parallel().forEach(i -> pkData.put(i, batchStart + i));
+        }
+        return pkData;
+    }
+
+    /**
+     * 组织一个batch的输出数据，列的顺序为主键、外键、属性列
+     */
+    private DataBatch createDataBatch(String schemaName, String pkName, LongBuffer pkData,
+                                      Map<String, LongBuffer> fkCol2Values, int range) {
+        List<String> keyColumnNames = new ArrayList<>();
+        List<LongBuffer> keyData = new ArrayList<>();
+        if (pkData != null) {
+            keyColumnNames.add(pkName);
+            keyData.add(pkData);
+        }
+        keyColumnNames.addAll(fkCol2Values.keySet());
+        keyData.addAll(fkCol2Values.values());
+        return new DataBatch(schemaName, keyColumnNames.toArray(new String[0]), keyData.toArray(new LongBuffer[0]),
+                ColumnManager.getInstance().getAttributeColumns(),
+                ColumnManager.getInstance().getAttributeColumnData(), range);
+    }
+
+    /**
+     * 外键组i依赖于排在它之前且与它涉及相同约束链的外键组，前者输出的约束链状态是后者的输入
+     *
+     * @return 每个外键组依赖的外键组
+     */
+    private int[][] getFkGroupDependencies(List<ConstraintChain> allChains, List<List<String>> fkGroups) {
+        List<Set<Integer>> groupChainIndexes = new ArrayList<>();
+        for (List<String> fkGroup : fkGroups) {
+            groupChainIndexes.add(allChains.stream().filter(chain -> !chain.getInvolvedNodes(fkGroup).isEmpty())
+                    .map(ConstraintChain::getChainIndex).collect(Collectors.toSet()));
+        }
+        int[][] groupDependencies = new int[fkGroups.size()][];
+        for (int groupIndex = 0; groupIndex < fkGroups.size(); groupIndex++) {
+            Set<Integer> chainIndexes = groupChainIndexes.get(groupIndex);
+            groupDependencies[groupIndex] = IntStream.range(0, groupIndex)
+                    .filter(i -> groupChainIndexes.get(i).stream().anyMatch(chainIndexes::contains)).toArray();
+        }
+        return groupDependencies;
+    }
+
+    /**
+     * 将求解线程数平均分给可以同时求解的外键组，同时求解的外键组数量为依赖关系中同一层的外键组的最大数量
+     *
+     * @return 每个外键组的求解线程数
+     */
+    private int getCpWorkersPerGroup(int[][] groupDependencies) {
+        int[] levels = new int[groupDependencies.length];
+        Map<Integer, Integer> level2GroupNum = new HashMap<>();
+        for (int groupIndex = 0; groupIndex < groupDependencies.length; groupIndex++) {
+            for (int dependency : groupDependencies[groupIndex]) {
+                levels[groupIndex] = Math.max(levels[groupIndex], levels[dependency] + 1);
+            }
+            level2GroupNum.merge(levels[groupIndex], 1, Integer::sum);
+        }
+        int parallelGroupNum = level2GroupNum.values().stream().mapToInt(Integer::intValue).max().orElse(1);
+        return Math.max(1, cpWorkers / parallelGroupNum);
+    }
+
+    /**
+     * 每个外键组分到cpWorkersPerGroup个求解线程，同时求解的外键组数量不超过 cp_workers / cpWorkersPerGroup
+     */
+    private void setFkGroupPoolSize(int cpWorkersPerGroup) {
+        int poolSize = Math.max(1, cpWorkers / cpWorkersPerGroup);
+        if (poolSize > fkGroupPool.getMaximumPoolSize()) {
+            fkGroupPool.setMaximumPoolSize(poolSize);
+            fkGroupPool.setCorePoolSize(poolSize);
         } else {
-            IntStream.range(0, range).parallel().forEach(i -> rowData[i] = new StringBuilder());
+            fkGroupPool.setCorePoolSize(poolSize);
+            fkGroupPool.setMaximumPoolSize(poolSize);
         }
-        return rowData;
     }
 
-    private Map<String, long[]> generateFks(boolean[][] statusVectorOfEachRow, FkGenerator[] fkGenerators,
-                                            List<List<String>> fkGroups) {
-        Map<String, long[]> fkCol2Values = new TreeMap<>();
+    private Map<String, LongBuffer> generateFks(StatusMatrix statusMatrix, FkGenerator[] fkGenerators,
+                                                List<List<String>> fkGroups, int[][] groupDependencies, long batchStart) {
+        // 互不依赖的外键组同时求解与填充
+        List<CompletableFuture<LongBuffer[]>> futureFkValues = new ArrayList<>();
         for (int groupIndex = 0; groupIndex < fkGenerators.length; groupIndex++) {
-            long[][] fkValues = fkGenerators[groupIndex].generateFK(statusVectorOfEachRow);
+            FkGenerator fkGenerator = fkGenerators[groupIndex];
+            CompletableFuture<?>[] dependencies = Arrays.stream(groupDependencies[groupIndex])
+                    .mapToObj(futureFkValues::get).toArray(CompletableFuture[]::new);
+            futureFkValues.add(CompletableFuture.allOf(dependencies)
+                    .thenApplyAsync(v -> fkGenerator.generateFK(statusMatrix, batchStart), fkGroupPool));
+        }
+        Map<String, LongBuffer> fkCol2Values = new TreeMap<>();
+        for (int groupIndex = 0; groupIndex < fkGenerators.length; groupIndex++) {
+            LongBuffer[] fkValues = futureFkValues.get(groupIndex).join();
             List<String> fkGroup = fkGroups.get(groupIndex);
             for (int fkColIndex = 0; fkColIndex < fkGroup.size(); fkColIndex++) {
                 fkCol2Values.put(fkGroup.get(fkColIndex), fkValues[fkColIndex]);
@@ -196,10 +359,13 @@ public class DataGenerator implements Callable<Integer> {
         return fkCol2Values;
     }
 
-    private void generateFksNoConstraints(Map<String, long[]> fkCol2Values, SortedMap<String, Long> allFk2TableSize, int range) {
+    private void generateFksNoConstraints(Map<String, LongBuffer> fkCol2Values, SortedMap<String, Long> allFk2TableSize, int range) {
         for (Map.Entry<String, Long> fk2TableSize : allFk2TableSize.entrySet()) {
             if (!fkCol2Values.containsKey(fk2TableSize.getKey())) {
-                long[] fks = ThreadLocalRandom.current().longs(range, 1, fk2TableSize.getValue() + 1).toArray();
+                CounterRandom random = CounterRandom.of(fk2TableSize.getKey());
+                LongBuffer fks = BatchArena.getInstance().allocateLongBuffer(range);
+                IntStream.range(0, range).parallel().forEach(rowId ->
+                        fks.put(rowId, random.nextLong(batchStart + rowId, 1, fk2TableSize.getValue() + 1)));
                 fkCol2Values.put(fk2TableSize.getKey(), fks);
             }
         }
@@ -217,20 +383,20 @@ public class DataGenerator implements Callable<Integer> {
         return pkJoinTag2ChainIndex.values().stream().mapToInt(Integer::intValue).toArray();
     }
 
-    private void generateTableWithoutChains(String pkName, long tableSize, String schemaName) {
+    private void generateTableWithoutChains(String pkName, long tableSize, String schemaName) throws InterruptedException {
         long pkStart = ColumnManager.getInstance().getMin(pkName);
         while (batchStart < tableSize) {
             int range = (int) (Math.min(batchStart + batchSize, tableSize) - batchStart);
             //生成属性列数据
-            ColumnManager.getInstance().prepareGeneration(range);
-            String[] attRows = ColumnManager.getInstance().generateAttRows(range);
-            StringBuilder[] rowData = new StringBuilder[range];
-            if (pkName.isEmpty()) {
-                IntStream.range(0, range).parallel().forEach(i -> rowData[i] = new StringBuilder());
-            } else {
-                IntStream.range(0, range).parallel().forEach(i -> rowData[i] = new StringBuilder().append(batchStart + i + pkStart).append(","));
+            ColumnManager.getInstance().prepareGeneration(batchStart, range);
+            LongBuffer pkData = null;
+            if (!pkName.isEmpty()) {
+                long firstPk = batchStart + pkStart;
+                LongBuffer pks = BatchArena.getInstance().allocateLongBuffer(range);
+                IntStream.range(0, range).parallel().forEach(rowId -> pks.put(rowId, firstPk + rowId));
+                pkData = pks;
             }
-            dataWriter.addWriteTask(schemaName, rowData, attRows);
+            dataWriter.addWriteTask(createDataBatch(schemaName, pkName, pkData, Collections.emptyMap(), range));
             batchStart += range + stepRange;
         }
     }
@@ -240,6 +406,7 @@ public class DataGenerator implements Callable<Integer> {
         if (expandRules) {
             RuleTable.openExpandRuleMap();
         }
+        CounterRandom.setSeed(seed);
         init();
         long generateNonKeyTime = 0;
         long solveCPTime = 0;
@@ -249,76 +416,77 @@ public class DataGenerator implements Callable<Integer> {
         Runtime runtime = Runtime.getRuntime();
 
         long start = System.currentTimeMillis();
-        for (String schemaName : TableManager.getInstance().createTopologicalOrder()) {
-            long tableSize = TableManager.getInstance().getTableSize(schemaName) * scaleFactor;
-            String pkName = TableManager.getInstance().getPrimaryKeys(schemaName);
-            computeStepRange(tableSize);
-            String startDataOutPut = rb.getString("startDataOutPut");
-            logger.info(startDataOutPut, schemaName, tableSize);
-            // 准备生成的属性列生成器
-            List<String> attColumnNames = TableManager.getInstance().getAttributeColumnNames(schemaName);
-            ColumnManager.getInstance().cacheAttributeColumn(attColumnNames);
-            // 获得所有约束链
-            List<ConstraintChain> allChains = schema2chains.get(schemaName);
-            logger.info("used memory before GN(MB): {}", (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024);
-            if (allChains == null) {
-                // todo 当前假设主键是连续的
-                long start1 = System.currentTimeMillis();
-                generateTableWithoutChains(pkName, tableSize, schemaName);
-                generateNonKeyTime = (System.currentTimeMillis() - start1);
-                logger.info("used memory after GN(MB): {}", (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024);
-                continue;
-            }
-            // 设置chain的索引
-            for (int i = 0; i < allChains.size(); i++) {
-                allChains.get(i).setChainIndex(i);
-            }
-            // 获取外键约束链
-            List<ConstraintChain> haveFkConstrainChains = allChains.stream().filter(ConstraintChain::hasFkNode).toList();
-            // 根据外键列的连接依赖性划外键列生成组
-            List<List<String>> fkGroups = classifyFkDependency(haveFkConstrainChains);
-            SortedMap<String, Long> allFk2TableSize = TableManager.getInstance().getFk2PkTableSize(schemaName);
-            FkGenerator[] fkGenerators = new FkGenerator[fkGroups.size()];
-            for (int i = 0; i < fkGenerators.length; i++) {
-                fkGenerators[i] = new FkGenerator(allChains, fkGroups.get(i), tableSize);
-            }
-            int[] pkStatusChainIndexes = getPkStatusChainIndexes(allChains);
-            // 开始生成
-            while (batchStart < tableSize) {
-                int range = (int) (Math.min(batchStart + batchSize, tableSize) - batchStart);
-                String generateFromTo = rb.getString("generateFromTo");
-                logger.info(generateFromTo, batchStart, batchStart + range);
-                long start1 = System.currentTimeMillis();
-                ColumnManager.getInstance().prepareGeneration(range);
-                generateNonKeyTime += (System.currentTimeMillis() - start1);
-                long startComputeStatusVector = System.currentTimeMillis();
-                boolean[][] statusVectorOfEachRow = generateStatusViewOfEachRow(allChains, range);
-                computeStatusVectorTime += System.currentTimeMillis() - startComputeStatusVector;
-                Map<String, long[]> fkCol2Values = generateFks(statusVectorOfEachRow, fkGenerators, fkGroups);
-                generateFksNoConstraints(fkCol2Values, allFk2TableSize, range);
-                long startPopulatePK = System.currentTimeMillis();
-                StringBuilder[] keyData = generatePks(statusVectorOfEachRow, pkStatusChainIndexes, pkName);
-                populateKeyTime += System.currentTimeMillis() - startPopulatePK;
-                IntStream.range(0, keyData.length).parallel().forEach(index -> {
-                    StringBuilder row = keyData[index];
-                    for (long[] fks : fkCol2Values.values()) {
-                        long fk = fks[index];
-                        if (fk == Long.MIN_VALUE) {
-                            row.append("\\N,");
-                        } else {
-                            row.append(fk).append(",");
-                        }
-                    }
-                });
-                //转换为字符串准备输出
-                String[] data = ColumnManager.getInstance().generateAttRows(range);
-                dataWriter.addWriteTask(schemaName, keyData, data);
-                batchStart += range + stepRange;
+        fkGroupPool = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        try {
+            for (String schemaName : TableManager.getInstance().createTopologicalOrder()) {
+                long tableSize = TableManager.getInstance().getTableSize(schemaName) * scaleFactor;
+                String pkName = TableManager.getInstance().getPrimaryKeys(schemaName);
+                computeStepRange(tableSize);
+                String startDataOutPut = rb.getString("startDataOutPut");
+                logger.info(startDataOutPut, schemaName, tableSize);
+                // 准备生成的属性列生成器
+                List<String> attColumnNames = TableManager.getInstance().getAttributeColumnNames(schemaName);
+                ColumnManager.getInstance().cacheAttributeColumn(attColumnNames);
+                ColumnManager.getInstance().setRowPermutationRandom(clusteredTables.contains(schemaName) ? null :
+                        CounterRandom.of(schemaName, "rowPermutation"));
+                // 获得所有约束链
+                List<ConstraintChain> allChains = schema2chains.get(schemaName);
+                logger.info("used memory before GN(MB): {}", (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024);
+                if (allChains == null) {
+                    // todo 当前假设主键是连续的
+                    long start1 = System.currentTimeMillis();
+                    generateTableWithoutChains(pkName, tableSize, schemaName);
+                    generateNonKeyTime = (System.currentTimeMillis() - start1);
+                    logger.info("used memory after GN(MB): {}", (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024);
+                    continue;
+                }
+                // 设置chain的索引
+                for (int i = 0; i < allChains.size(); i++) {
+                    allChains.get(i).setChainIndex(i);
+                }
+                // 获取外键约束链
+                List<ConstraintChain> haveFkConstrainChains = allChains.stream().filter(ConstraintChain::hasFkNode).toList();
+                // 根据外键列的连接依赖性划外键列生成组
+                List<List<String>> fkGroups = classifyFkDependency(haveFkConstrainChains);
+                SortedMap<String, Long> allFk2TableSize = TableManager.getInstance().getFk2PkTableSize(schemaName);
+                FkGenerator[] fkGenerators = new FkGenerator[fkGroups.size()];
+                int[][] groupDependencies = getFkGroupDependencies(allChains, fkGroups);
+                int cpWorkersPerGroup = getCpWorkersPerGroup(groupDependencies);
+                setFkGroupPoolSize(cpWorkersPerGroup);
+                logger.debug("fk groups {}, dependencies {}, cp workers per group {}", fkGroups,
+                        Arrays.deepToString(groupDependencies), cpWorkersPerGroup);
+                CpSolverConfig cpSolverConfig = new CpSolverConfig(cpTimeLimit, cpWorkersPerGroup, cpSeed, cpDeterministic);
+                for (int i = 0; i < fkGenerators.length; i++) {
+                    fkGenerators[i] = new FkGenerator(allChains, fkGroups.get(i), tableSize, cpReuseTolerance, cpSolverConfig);
+                }
+                int[] pkStatusChainIndexes = getPkStatusChainIndexes(allChains);
+                // 开始生成
+                while (batchStart < tableSize) {
+                    int range = (int) (Math.min(batchStart + batchSize, tableSize) - batchStart);
+                    String generateFromTo = rb.getString("generateFromTo");
+                    logger.info(generateFromTo, batchStart, batchStart + range);
+                    long start1 = System.currentTimeMillis();
+                    ColumnManager.getInstance().prepareGeneration(batchStart, range);
+                    generateNonKeyTime += (System.currentTimeMillis() - start1);
+                    long startComputeStatusVector = System.currentTimeMillis();
+                    StatusMatrix statusMatrix = generateStatusViewOfEachRow(allChains, range);
+                    computeStatusVectorTime += System.currentTimeMillis() - startComputeStatusVector;
+                    Map<String, LongBuffer> fkCol2Values = generateFks(statusMatrix, fkGenerators, fkGroups, groupDependencies, batchStart);
+                    generateFksNoConstraints(fkCol2Values, allFk2TableSize, range);
+                    long startPopulatePK = System.currentTimeMillis();
+                    LongBuffer pkData = generatePks(statusMatrix, pkStatusChainIndexes, pkName);
+                    populateKeyTime += System.currentTimeMillis() - startPopulatePK;
+                    statusMatrix.release();
+                    dataWriter.addWriteTask(createDataBatch(schemaName, pkName, pkData, fkCol2Values, range));
+                    batchStart += range + stepRange;
+                }
+                freeMemory = Math.min(freeMemory, runtime.freeMemory());
+                computeStatusVectorTime += Arrays.stream(fkGenerators).mapToLong(FkGenerator::getConstructHistogram).sum();
+                populateKeyTime += Arrays.stream(fkGenerators).mapToLong(FkGenerator::getPopulateFKTime).sum();
+                solveCPTime += Arrays.stream(fkGenerators).mapToLong(FkGenerator::getSolveCPTime).sum();
             }
-            freeMemory = Math.min(freeMemory, runtime.freeMemory());
-            computeStatusVectorTime += Arrays.stream(fkGenerators).mapToLong(FkGenerator::getConstructHistogram).sum();
-            populateKeyTime += Arrays.stream(fkGenerators).mapToLong(FkGenerator::getPopulateFKTime).sum();
-            solveCPTime += Arrays.stream(fkGenerators).mapToLong(FkGenerator::getSolveCPTime).sum();
+        } finally {
+            fkGroupPool.shutdown();
         }
         logger.info("GN:{}", generateNonKeyTime);
         logger.info("CS:{}", computeStatusVectorTime);
@@ -326,6 +494,8 @@ public class DataGenerator implements Callable<Integer> {
         logger.info("PK:{}", populateKeyTime);
         logger.info("total time: {}", System.currentTimeMillis() - start);
         logger.info("used memory (MB): {}", (runtime.totalMemory() - freeMemory) / 1024 / 1024);
+        logger.info("batch arena (MB): {}, reused arrays: {}", BatchArena.getInstance().getPeakBytes() / 1024 / 1024,
+                BatchArena.getInstance().getReuseCount());
         if (dataWriter.waitWriteFinish()) {
             logger.info("Output table data completed");
         }
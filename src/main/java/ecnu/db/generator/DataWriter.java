@@ -1,49 +1,410 @@
 package ecnu.db.generator;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import ecnu.db.dbconnector.adapter.PgConnector;
+import ecnu.db.schema.TableManager;
+import ecnu.db.utils.DatabaseConnectorConfig;
+import ecnu.db.utils.exception.TouchstoneException;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 public class DataWriter {
 
+    /**
+     * 数据的输出方式
+     */
+    public enum SinkType {
+        /**
+         * 输出到文件，由importData脚本导入
+         */
+        FILE,
+        /**
+         * 通过COPY FROM STDIN直接导入PostgreSQL
+         */
+        COPY
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(DataWriter.class);
+
     String outputPath;
     int generatorId;
 
     private static final String FILE_PATH_PATTERN = "%s/%s-%d-%d";
 
+    private static final String COPY_SQL_PATTERN = "COPY %s (%s) FROM STDIN DELIMITER ',' NULL '\\N'";
+
+    private static final String BINARY_COPY_SQL_PATTERN = "COPY %s (%s) FROM STDIN WITH (FORMAT binary)";
+
+    /**
+     * 每个写线程复用的缓冲区大小，超过后刷写到文件
+     */
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * 每个压缩块包含的行数，不同的压缩块由压缩线程池并行编码和压缩
+     */
+    private static final int COMPRESSION_BLOCK_ROWS = 1 << 16;
+
+    private static final ThreadLocal<RowEncoder> ROW_ENCODER = ThreadLocal.withInitial(() -> new RowEncoder(CHUNK_SIZE + 64 * 1024));
+
+    /**
+     * 输出指标的打印间隔，单位为秒
+     */
+    private static final int METRICS_INTERVAL = 10;
+
     int writeFileCounter = 0;
 
-    ExecutorService executorService = Executors.newFixedThreadPool(6);
+    private final SinkType sinkType;
+
+    private final OutputFormat format;
+
+    private final OutputCodec codec;
+
+    private final ArrowBatchWriter arrowBatchWriter;
+
+    /**
+     * 压缩线程池，线程数与CPU核数一致，不受写线程数的限制
+     */
+    private final ExecutorService compressionService;
+
+    /**
+     * 每个写线程最多同时等待的压缩块数量
+     */
+    private final int compressionWindow = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 尚未写完的batch数量上限，达到上限后阻塞生成线程，避免待写数据堆积在堆内存中
+     */
+    private final int maxInFlightBatches;
 
-    public DataWriter(String outputPath, int generatorId) {
+    private final Semaphore inFlightBatches;
+
+    private final LongAdder writtenBytes = new LongAdder();
+
+    private final long startTime = System.nanoTime();
+
+    private final ScheduledExecutorService metricsReporter;
+
+    /**
+     * COPY模式下的数据库连接池，每个连接同一时刻只承载一个COPY数据流
+     */
+    private final BlockingQueue<PgConnector> copyConnectors;
+
+    /**
+     * 第一个写失败的异常，在waitWriteFinish中抛出
+     */
+    private final AtomicReference<Exception> writeFailure = new AtomicReference<>();
+
+    ExecutorService executorService;
+
+    /**
+     * 构建输出到文件的writer
+     *
+     * @param outputPath         输出目录
+     * @param generatorId        生成器的id
+     * @param writerThreads      写文件的线程数
+     * @param maxInFlightBatches 尚未写完的batch数量上限
+     * @param format             数据文件的格式
+     * @param codec              数据文件的压缩格式，Arrow文件在格式内部压缩
+     */
+    public DataWriter(String outputPath, int generatorId, int writerThreads, int maxInFlightBatches,
+                      OutputFormat format, OutputCodec codec) throws TouchstoneException {
         this.outputPath = outputPath;
         this.generatorId = generatorId;
+        this.sinkType = SinkType.FILE;
+        this.format = format;
+        this.codec = codec;
+        if (format == OutputFormat.ARROW) {
+            this.arrowBatchWriter = new ArrowBatchWriter(codec);
+            this.compressionService = null;
+        } else {
+            this.arrowBatchWriter = null;
+            this.compressionService = codec == OutputCodec.NONE ? null : Executors.newFixedThreadPool(compressionWindow);
+        }
+        this.copyConnectors = null;
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.inFlightBatches = new Semaphore(maxInFlightBatches);
+        this.executorService = Executors.newFixedThreadPool(writerThreads);
+        this.metricsReporter = startMetricsReporter();
+    }
+
+    /**
+     * 构建直接向数据库导入数据的writer
+     *
+     * @param config             数据库连接信息
+     * @param copyStreams        并行的COPY数据流数量
+     * @param maxInFlightBatches 尚未写完的batch数量上限
+     * @param format             COPY数据流的格式，CSV或PG_BINARY
+     */
+    public DataWriter(DatabaseConnectorConfig config, int copyStreams, int maxInFlightBatches, OutputFormat format) throws TouchstoneException, SQLException {
+        this.sinkType = SinkType.COPY;
+        this.format = format;
+        this.codec = OutputCodec.NONE;
+        this.arrowBatchWriter = null;
+        this.compressionService = null;
+        this.copyConnectors = new ArrayBlockingQueue<>(copyStreams);
+        for (int i = 0; i < copyStreams; i++) {
+            copyConnectors.add(new PgConnector(config));
+        }
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.inFlightBatches = new Semaphore(maxInFlightBatches);
+        this.executorService = Executors.newFixedThreadPool(copyStreams);
+        this.metricsReporter = startMetricsReporter();
+    }
+
+    private ScheduledExecutorService startMetricsReporter() {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "data-writer-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(new Runnable() {
+            private long lastBytes = 0;
+
+            @Override
+            public void run() {
+                long bytes = writtenBytes.sum();
+                logger.info("write queue depth: {}/{}, throughput(MB/s): {}", getQueueDepth(), maxInFlightBatches,
+                        (bytes - lastBytes) / METRICS_INTERVAL / 1024 / 1024);
+                lastBytes = bytes;
+            }
+        }, METRICS_INTERVAL, METRICS_INTERVAL, TimeUnit.SECONDS);
+        return reporter;
+    }
+
+    /**
+     * @return 已提交但尚未写完的batch数量
+     */
+    public int getQueueDepth() {
+        return maxInFlightBatches - inFlightBatches.availablePermits();
+    }
+
+    /**
+     * @return 已经写出的字节数
+     */
+    public long getWrittenBytes() {
+        return writtenBytes.sum();
     }
 
-    public void addWriteTask(String schemaName, StringBuilder[] keyData, String[] attData) {
-        String fileName = String.format(FILE_PATH_PATTERN, outputPath, schemaName, generatorId, writeFileCounter);
+    /**
+     * 提交一个batch的写任务，在途的batch达到上限时阻塞，直到有batch写完
+     *
+     * @param batch 需要输出的batch
+     * @throws InterruptedException 等待时被中断
+     */
+    public void addWriteTask(DataBatch batch) throws InterruptedException {
+        String fileName = String.format(FILE_PATH_PATTERN, outputPath, batch.schemaName(), generatorId, writeFileCounter) + getFileSuffix();
         writeFileCounter++;
+        inFlightBatches.acquire();
         executorService.submit(() -> {
             try {
-                BufferedWriter writer = new BufferedWriter(new FileWriter(fileName));
-                for (int i = 0; i < keyData.length; i++) {
-                    writer.write(keyData[i].toString());
-                    writer.write(attData[i]);
-                    writer.write(System.lineSeparator());
+                if (sinkType == SinkType.COPY) {
+                    PgConnector connector = copyConnectors.take();
+                    try (PGCopyOutputStream outputStream = connector.copyIn(getCopySql(batch))) {
+                        writeCopy(getBatchEncoder(batch), batch.size(), outputStream);
+                    } finally {
+                        copyConnectors.add(connector);
+                    }
+                } else if (format == OutputFormat.ARROW) {
+                    try (OutputStream outputStream = new FileOutputStream(fileName)) {
+                        writtenBytes.add(arrowBatchWriter.write(batch, outputStream));
+                    }
+                } else if (codec == OutputCodec.NONE) {
+                    try (OutputStream outputStream = new FileOutputStream(fileName)) {
+                        writeBatch(getBatchEncoder(batch), batch.size(), outputStream);
+                    }
+                } else {
+                    try (OutputStream outputStream = new FileOutputStream(fileName)) {
+                        writeCompressedBatch(getBatchEncoder(batch), batch.size(), outputStream);
+                    }
                 }
-                writer.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+            } catch (IOException | SQLException | TouchstoneException | RuntimeException e) {
+                // 写任务的Future不会被读取，异常需要记录下来在waitWriteFinish中抛出
+                logger.error("fail to output {}", fileName, e);
+                writeFailure.compareAndSet(null, e);
+            } catch (InterruptedException e) {
+                logger.error("interrupted while outputting {}", fileName, e);
+                writeFailure.compareAndSet(null, e);
+                Thread.currentThread().interrupt();
+            } finally {
+                batch.release();
+                inFlightBatches.release();
             }
         });
     }
 
-    public boolean waitWriteFinish() throws InterruptedException {
+    private String getFileSuffix() {
+        return format == OutputFormat.ARROW ? format.getSuffix() : format.getSuffix() + codec.getSuffix();
+    }
+
+    /**
+     * binary数据文件只包含行，多个文件由导入脚本合并为一个COPY数据流，文件头和文件尾只在数据流的首尾写一次
+     */
+    private BatchEncoder getBatchEncoder(DataBatch batch) throws TouchstoneException {
+        return format == OutputFormat.PG_BINARY ? new PgBinaryBatchEncoder(batch, sinkType == SinkType.COPY) : batch;
+    }
+
+    /**
+     * 写入失败时取消COPY，关闭数据流时不再提交已经写入的部分数据
+     */
+    private void writeCopy(BatchEncoder batchEncoder, int size, PGCopyOutputStream outputStream) throws IOException {
+        try {
+            writeBatch(batchEncoder, size, outputStream);
+        } catch (IOException | RuntimeException e) {
+            try {
+                outputStream.cancelCopy();
+            } catch (SQLException cancelException) {
+                e.addSuppressed(cancelException);
+            }
+            throw e;
+        }
+    }
+
+    void writeBatch(BatchEncoder batchEncoder, int size, OutputStream outputStream) throws IOException {
+        RowEncoder encoder = ROW_ENCODER.get();
+        encoder.reset();
+        batchEncoder.encodeHeader(encoder);
+        for (int rowId = 0; rowId < size; rowId++) {
+            batchEncoder.encodeRows(rowId, rowId + 1, encoder);
+            if (encoder.size() >= CHUNK_SIZE) {
+                writtenBytes.add(encoder.size());
+                encoder.writeTo(outputStream);
+            }
+        }
+        batchEncoder.encodeTrailer(encoder);
+        writtenBytes.add(encoder.size());
+        encoder.writeTo(outputStream);
+    }
+
+    /**
+     * 将batch切分为压缩块并行编码和压缩，按顺序写出各个块，文件头和文件尾分别编码在首尾两个块中
+     */
+    private void writeCompressedBatch(BatchEncoder batchEncoder, int size, OutputStream outputStream) throws IOException, InterruptedException {
+        Deque<Future<ByteArrayOutputStream>> blocks = new ArrayDeque<>();
+        for (int start = 0; start < size; start += COMPRESSION_BLOCK_ROWS) {
+            int blockStart = start;
+            int blockEnd = Math.min(start + COMPRESSION_BLOCK_ROWS, size);
+            boolean lastBlock = blockEnd == size;
+            blocks.add(compressionService.submit(() -> compressBlock(batchEncoder, blockStart, blockEnd, lastBlock)));
+            if (blocks.size() >= compressionWindow) {
+                writeBlock(blocks.poll(), outputStream);
+            }
+        }
+        while (!blocks.isEmpty()) {
+            writeBlock(blocks.poll(), outputStream);
+        }
+    }
+
+    private ByteArrayOutputStream compressBlock(BatchEncoder batchEncoder, int start, int end, boolean lastBlock) throws IOException {
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        try (OutputStream compressedStream = codec.wrap(block)) {
+            RowEncoder encoder = ROW_ENCODER.get();
+            encoder.reset();
+            if (start == 0) {
+                batchEncoder.encodeHeader(encoder);
+            }
+            for (int rowId = start; rowId < end; rowId++) {
+                batchEncoder.encodeRows(rowId, rowId + 1, encoder);
+                if (encoder.size() >= CHUNK_SIZE) {
+                    encoder.writeTo(compressedStream);
+                }
+            }
+            if (lastBlock) {
+                batchEncoder.encodeTrailer(encoder);
+            }
+            encoder.writeTo(compressedStream);
+        }
+        return block;
+    }
+
+    private void writeBlock(Future<ByteArrayOutputStream> block, OutputStream outputStream) throws IOException, InterruptedException {
+        try {
+            ByteArrayOutputStream compressedBlock = block.get();
+            writtenBytes.add(compressedBlock.size());
+            compressedBlock.writeTo(outputStream);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private String getCopySql(DataBatch batch) throws TouchstoneException {
+        List<String> columnNames = new ArrayList<>(Arrays.asList(batch.keyColumnNames()));
+        columnNames.addAll(TableManager.getInstance().getAttributeColumnNames(batch.schemaName()));
+        return getCopySql(batch.schemaName(), columnNames, format);
+    }
+
+    /**
+     * @param tableName   表名
+     * @param columnNames canonicalColumnName格式的列名，顺序与数据流中的列一致
+     * @param format      COPY数据流的格式
+     * @return COPY ... FROM STDIN语句
+     */
+    static String getCopySql(String tableName, List<String> columnNames, OutputFormat format) {
+        String columns = columnNames.stream()
+                .map(columnName -> "\"" + columnName.split("\\.")[2] + "\"")
+                .collect(Collectors.joining(","));
+        return String.format(format == OutputFormat.PG_BINARY ? BINARY_COPY_SQL_PATTERN : COPY_SQL_PATTERN,
+                tableName, columns);
+    }
+
+    /**
+     * 等待所有batch写完并释放资源
+     *
+     * @return 写线程是否全部结束
+     * @throws IOException 有batch写失败时抛出第一个失败的异常
+     */
+    public boolean waitWriteFinish() throws InterruptedException, IOException {
         executorService.shutdown();
-        return executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        boolean finished = executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        if (compressionService != null) {
+            compressionService.shutdown();
+        }
+        if (arrowBatchWriter != null) {
+            arrowBatchWriter.close();
+        }
+        if (copyConnectors != null) {
+            for (PgConnector connector : copyConnectors) {
+                try {
+                    connector.close();
+                } catch (SQLException e) {
+                    logger.warn("fail to close copy connection", e);
+                }
+            }
+        }
+        metricsReporter.shutdownNow();
+        double seconds = Math.max(System.nanoTime() - startTime, 1) / 1e9;
+        logger.info("written data(MB): {}, average throughput(MB/s): {}", getWrittenBytes() / 1024 / 1024,
+                String.format("%.2f", getWrittenBytes() / seconds / 1024 / 1024));
+        Exception failure = writeFailure.get();
+        if (failure instanceof IOException ioException) {
+            throw ioException;
+        } else if (failure != null) {
+            throw new IOException(failure);
+        }
+        return finished;
     }
 
 }
@@ -5,19 +5,22 @@ import ecnu.db.generator.constraintchain.ConstraintChainNode;
 import ecnu.db.generator.constraintchain.agg.ConstraintChainAggregateNode;
 import ecnu.db.generator.constraintchain.join.ConstraintChainFkJoinNode;
 import ecnu.db.generator.joininfo.JoinStatus;
+import ecnu.db.generator.joininfo.JoinStatusIndex;
 import ecnu.db.generator.joininfo.MergedRuleTable;
 import ecnu.db.generator.joininfo.RuleTableManager;
 import ecnu.db.schema.ColumnManager;
 import ecnu.db.schema.TableManager;
+import ecnu.db.utils.BatchArena;
+import ecnu.db.utils.CounterRandom;
 
 import java.math.BigDecimal;
+import java.nio.LongBuffer;
 import java.math.RoundingMode;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.IntStream;
 
 import static ecnu.db.utils.CommonUtils.DECIMAL_DIVIDE_SCALE;
@@ -33,8 +36,28 @@ public class FkGenerator {
 
     private final JoinStatus[] outputStatusForEachPk;
 
+    /**
+     * 联合主键状态在参与的链上所有不同的输出状态，由FK join节点的连接结果决定
+     */
+    private final JoinStatus[] involvedOutputStatuses;
+
+    /**
+     * 每个联合主键状态的输出状态在involvedOutputStatuses中的位置
+     */
+    private final int[] pkOutputIndexes;
+
     private final MergedRuleTable[] ruleTables;
 
+    /**
+     * 每个FK列上，每个联合主键状态在该列规则表中的规则编号
+     */
+    private final int[][] pkStatus2RuleIndexes;
+
+    /**
+     * 每个FK列随机选择主键时使用的随机数流
+     */
+    private final CounterRandom[] fkColRandoms;
+
     private static final int CORE_NUM = Runtime.getRuntime().availableProcessors();
 
     private static final ExecutorService THREAD_POOL = Executors.newFixedThreadPool(CORE_NUM);
@@ -45,6 +68,18 @@ public class FkGenerator {
 
     private long solveCPTime = 0;
 
+    /**
+     * 复用上一个batch的CP解时，两个batch的直方图之间允许的最大总变差距离，为0时总是重新求解
+     */
+    private final double cpReuseTolerance;
+
+    private final CpSolverConfig cpSolverConfig;
+
+    /**
+     * 上一个batch的CP解
+     */
+    private CpSolution lastSolution;
+
     public long getPopulateFKTime() {
         return populateFKTime;
     }
@@ -57,8 +92,11 @@ public class FkGenerator {
         return constructHistogram;
     }
 
-    FkGenerator(List<ConstraintChain> fkConstrainChains, List<String> fkGroup, long tableSize) {
+    FkGenerator(List<ConstraintChain> fkConstrainChains, List<String> fkGroup, long tableSize, double cpReuseTolerance,
+                CpSolverConfig cpSolverConfig) {
         this.tableSize = tableSize;
+        this.cpReuseTolerance = cpReuseTolerance;
+        this.cpSolverConfig = cpSolverConfig;
         List<Integer> involvedChainIndexesList = new ArrayList<>();
         for (ConstraintChain fkConstrainChain : fkConstrainChains) {
             var involvedNodes = fkConstrainChain.getInvolvedNodes(fkGroup);
@@ -74,20 +112,36 @@ public class FkGenerator {
         JoinStatus[][] pkCol2AllStatus = new JoinStatus[involvedFkCol2JoinTags.size()][];
         int i = 0;
         ruleTables = new MergedRuleTable[involvedFkCol2JoinTags.size()];
+        fkColRandoms = new CounterRandom[involvedFkCol2JoinTags.size()];
         for (Map.Entry<String, int[]> involvedFk2JoinTag : involvedFkCol2JoinTags.entrySet()) {
             String pkCol = TableManager.getInstance().getRefKey(involvedFk2JoinTag.getKey());
             ruleTables[i] = RuleTableManager.getInstance().getRuleTable(pkCol, involvedFk2JoinTag.getValue());
+            fkColRandoms[i] = CounterRandom.of(involvedFk2JoinTag.getKey());
             boolean withNull = ColumnManager.getInstance().getNullPercentage(involvedFk2JoinTag.getKey()).compareTo(BigDecimal.ZERO) > 0;
             pkCol2AllStatus[i] = ruleTables[i].getPkStatus(withNull);
             i++;
         }
         // 计算联合status
         jointPkStatus = getPkJointStatus(pkCol2AllStatus);
+        pkStatus2RuleIndexes = new int[ruleTables.length][];
+        for (int fkColIndex = 0; fkColIndex < ruleTables.length; fkColIndex++) {
+            int finalFkColIndex = fkColIndex;
+            JoinStatus[] fkColStatuses = Arrays.stream(jointPkStatus).map(status -> status[finalFkColIndex]).toArray(JoinStatus[]::new);
+            pkStatus2RuleIndexes[fkColIndex] = ruleTables[fkColIndex].getRuleIndexes(fkColStatuses);
+        }
         chainNodesList.stream().flatMap(Collection::stream)
                 .filter(ConstraintChainFkJoinNode.class::isInstance)
                 .map(ConstraintChainFkJoinNode.class::cast).forEach(node -> node.initJoinResultStatus(jointPkStatus));
         // 计算输出的status
         outputStatusForEachPk = computeOutputStatus(fkConstrainChains.size());
+        pkOutputIndexes = new int[jointPkStatus.length];
+        Map<JoinStatus, Integer> outputStatus2Index = new LinkedHashMap<>();
+        for (int pkStatusIndex = 0; pkStatusIndex < jointPkStatus.length; pkStatusIndex++) {
+            JoinStatus outputStatus = chooseCorrespondingStatus(outputStatusForEachPk[pkStatusIndex], involvedChainIndexes);
+            Integer outputIndex = outputStatus2Index.putIfAbsent(outputStatus, outputStatus2Index.size());
+            pkOutputIndexes[pkStatusIndex] = outputIndex == null ? outputStatus2Index.size() - 1 : outputIndex;
+        }
+        involvedOutputStatuses = outputStatus2Index.keySet().toArray(new JoinStatus[0]);
         for (Map.Entry<Integer, Long> fkIndex2Cardinality : distinctFkIndex2Cardinality.entrySet()) {
             long fkColCardinality = ColumnManager.getInstance().getNdv(fkGroup.get(fkIndex2Cardinality.getKey()));
             fkIndex2Cardinality.setValue(fkColCardinality);
@@ -116,8 +170,8 @@ public class FkGenerator {
     }
 
     private ConstructCpModel constructConstraintProblem(Map<JoinStatus, Long> statusHistogram, int range) {
-        ConstructCpModel constructCpModel = new ConstructCpModel();
-        constructCpModel.initModel(statusHistogram, jointPkStatus.length, range);
+        ConstructCpModel constructCpModel = new ConstructCpModel(cpSolverConfig);
+        constructCpModel.initModel(statusHistogram, involvedOutputStatuses, pkOutputIndexes, range);
         for (var distinctFkCol2Cardinality : distinctFkIndex2Cardinality.entrySet()) {
             constructCpModel.initDistinctModel(distinctFkCol2Cardinality.getKey(), distinctFkCol2Cardinality.getValue(), tableSize);
         }
@@ -126,7 +180,7 @@ public class FkGenerator {
             int i = 0;
             long filterSize = 0;
             for (var status2Size : statusHistogram.entrySet()) {
-                boolean filterStatus = status2Size.getKey().status()[chainIndex];
+                boolean filterStatus = status2Size.getKey().get(chainIndex);
                 filterSize += filterStatus ? status2Size.getValue() : 0;
                 Arrays.fill(canBeInput[i++], filterStatus);
             }
@@ -145,77 +199,142 @@ public class FkGenerator {
         return constructCpModel;
     }
 
-    static void staticsStatusHistogram(boolean[][] statusVectorOfEachRow, JoinStatus[] involvedStatuses,
-                                       int[] chainIndexes, Map<JoinStatus, Long> statusHistogram) {
-        int range = statusVectorOfEachRow.length;
-        int histogramStaticsRange = range / CORE_NUM + 1;
-        int rangeStart = 0;
-        List<Future<Map<JoinStatus, AtomicLong>>> allStatusHistograms = new ArrayList<>();
-        for (int i = 0; i < CORE_NUM; i++) {
-            int finalRangeStart = rangeStart;
-            allStatusHistograms.add(THREAD_POOL.submit(() -> {
-                Map<JoinStatus, AtomicLong> selfStatusHistogram = new HashMap<>();
-                int endRange = Math.min(finalRangeStart + histogramStaticsRange, range);
-                for (int rowId = finalRangeStart; rowId < endRange; rowId++) {
-                    JoinStatus chooseCorrespondingStatus = FkGenerator.chooseCorrespondingStatus(statusVectorOfEachRow[rowId], chainIndexes);
-                    selfStatusHistogram.computeIfAbsent(chooseCorrespondingStatus, v -> new AtomicLong(0));
-                    selfStatusHistogram.get(chooseCorrespondingStatus).incrementAndGet();
-                    involvedStatuses[rowId] = chooseCorrespondingStatus;
+    /**
+     * 统计每行数据在chainIndexes上的状态直方图
+     *
+     * @param statusMatrix  每一行数据的filter status
+     * @param chainIndexes  参与统计的链
+     * @param statusIndexes 输出每行数据的状态在statusIndex中的编号
+     * @param statusIndex   输出出现过的所有状态
+     * @return 每个编号的状态对应的行数
+     */
+    static long[] staticsStatusHistogram(StatusMatrix statusMatrix, int[] chainIndexes,
+                                         int[] statusIndexes, JoinStatusIndex statusIndex) {
+        int wordSize = statusMatrix.getWordSize();
+        int histogramStaticsWords = wordSize / CORE_NUM + 1;
+        List<Future<PartialHistogram>> allStatusHistograms = new ArrayList<>();
+        for (int wordStart = 0; wordStart < wordSize; wordStart += histogramStaticsWords) {
+            int finalWordStart = wordStart;
+            int wordEnd = Math.min(wordStart + histogramStaticsWords, wordSize);
+            allStatusHistograms.add(THREAD_POOL.submit(() ->
+                    staticsStatusHistogram(statusMatrix, chainIndexes, statusIndexes, finalWordStart, wordEnd)));
+        }
+        long[] statusSizes = new long[0];
+        List<Future<?>> remapTasks = new ArrayList<>();
+        try {
+            for (Future<PartialHistogram> allStatusHistogram : allStatusHistograms) {
+                PartialHistogram partialHistogram = allStatusHistogram.get();
+                // 各线程的局部编号映射为全局编号
+                int[] local2Global = new int[partialHistogram.statusIndex().size()];
+                boolean sameIndex = true;
+                for (int localIndex = 0; localIndex < local2Global.length; localIndex++) {
+                    int globalIndex = statusIndex.add(partialHistogram.statusIndex().get(localIndex));
+                    if (globalIndex >= statusSizes.length) {
+                        statusSizes = Arrays.copyOf(statusSizes, Math.max(globalIndex + 1, statusSizes.length * 2));
+                    }
+                    statusSizes[globalIndex] += partialHistogram.statusSizes()[localIndex];
+                    local2Global[localIndex] = globalIndex;
+                    sameIndex &= localIndex == globalIndex;
+                }
+                if (!sameIndex) {
+                    int rowStart = partialHistogram.wordStart() << 6;
+                    int rowEnd = Math.min(partialHistogram.wordEnd() << 6, statusMatrix.size());
+                    remapTasks.add(THREAD_POOL.submit(() -> {
+                        for (int rowId = rowStart; rowId < rowEnd; rowId++) {
+                            statusIndexes[rowId] = local2Global[statusIndexes[rowId]];
+                        }
+                    }));
                 }
-                return selfStatusHistogram;
-            }));
-            rangeStart += histogramStaticsRange;
-            if (rangeStart >= range) {
-                break;
             }
+            for (Future<?> remapTask : remapTasks) {
+                remapTask.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
         }
-        for (Future<Map<JoinStatus, AtomicLong>> allStatusHistogram : allStatusHistograms) {
-            try {
-                var tmp = allStatusHistogram.get();
-                for (Map.Entry<JoinStatus, AtomicLong> selfStatusHistogram : tmp.entrySet()) {
-                    statusHistogram.putIfAbsent(selfStatusHistogram.getKey(), 0L);
-                    long totalNum = selfStatusHistogram.getValue().get() + statusHistogram.get(selfStatusHistogram.getKey());
-                    statusHistogram.put(selfStatusHistogram.getKey(), totalNum);
+        return Arrays.copyOf(statusSizes, statusIndex.size());
+    }
+
+    private static PartialHistogram staticsStatusHistogram(StatusMatrix statusMatrix, int[] chainIndexes,
+                                                           int[] statusIndexes, int wordStart, int wordEnd) {
+        int range = statusMatrix.size();
+        JoinStatusIndex statusIndex = new JoinStatusIndex();
+        long[] statusSizes = new long[16];
+        if (chainIndexes.length > StatusMatrix.MAX_PROJECTED_CHAINS) {
+            for (int rowId = wordStart << 6; rowId < Math.min(wordEnd << 6, range); rowId++) {
+                int index = statusIndex.add(chooseCorrespondingStatus(statusMatrix, rowId, chainIndexes));
+                if (index == statusSizes.length) {
+                    statusSizes = Arrays.copyOf(statusSizes, index * 2);
                 }
-            } catch (InterruptedException | ExecutionException e) {
-                throw new RuntimeException(e);
+                statusSizes[index]++;
+                statusIndexes[rowId] = index;
+            }
+            return new PartialHistogram(statusIndex, statusSizes, wordStart, wordEnd);
+        }
+        long[] codes = new long[Long.SIZE];
+        long lastCode = 0;
+        int lastIndex = -1;
+        for (int wordIndex = wordStart; wordIndex < wordEnd; wordIndex++) {
+            statusMatrix.projectWord(chainIndexes, wordIndex, codes);
+            int start = wordIndex << 6;
+            int end = Math.min(start + Long.SIZE, range);
+            for (int rowId = start; rowId < end; rowId++) {
+                long code = codes[rowId - start];
+                // 相邻行的状态通常相同，避免每行查询哈希表
+                if (lastIndex < 0 || lastCode != code) {
+                    lastIndex = statusIndex.indexOf(code);
+                    if (lastIndex < 0) {
+                        lastIndex = statusIndex.add(JoinStatus.ofCode(code, chainIndexes.length));
+                        if (lastIndex == statusSizes.length) {
+                            statusSizes = Arrays.copyOf(statusSizes, lastIndex * 2);
+                        }
+                    }
+                    lastCode = code;
+                }
+                statusSizes[lastIndex]++;
+                statusIndexes[rowId] = lastIndex;
             }
         }
+        return new PartialHistogram(statusIndex, statusSizes, wordStart, wordEnd);
     }
 
-
+    /**
+     * 一个线程统计的[wordStart, wordEnd)范围内的直方图，状态编号为线程内的局部编号
+     */
+    private record PartialHistogram(JoinStatusIndex statusIndex, long[] statusSizes, int wordStart, int wordEnd) {
+    }
 
     /**
      * 计算CP问题的解
      *
-     * @param statusVectorOfEachRow 每一行数据的filter status
-     * @param pkStatuses            此行数据需要填充的pkStatus
-     * @param fkIndex2Range         每个FK列对应的JDC的解
-     * @param filterIndexes         记录每行数据对应的status
+     * @param statusMatrix  每一行数据的filter status
+     * @param pkStatuses    此行数据需要填充的pkStatus
+     * @param fkIndex2Range 每个FK列对应的JDC的解
+     * @param filterIndexes 记录每行数据对应的status在直方图中的位置
      */
-    private void solveCP(boolean[][] statusVectorOfEachRow, int[] pkStatuses, int[] filterIndexes,
+    private void solveCP(StatusMatrix statusMatrix, int[] pkStatuses, int[] filterIndexes,
                          Map<Integer, FkRange[][]> fkIndex2Range) {
         long startConstructHistogram = System.currentTimeMillis();
-        int range = statusVectorOfEachRow.length;
-        JoinStatus[] involvedStatuses = new JoinStatus[range];
-        // 根据右表状态计算统计直方图
+        int range = statusMatrix.size();
+        // 根据右表状态计算统计直方图，并为每一行数据记录位置
+        JoinStatusIndex statusIndex = new JoinStatusIndex();
+        long[] statusSizes = staticsStatusHistogram(statusMatrix, involvedChainIndexes, filterIndexes, statusIndex);
         Map<JoinStatus, Long> statusHistogram = new LinkedHashMap<>();
-        staticsStatusHistogram(statusVectorOfEachRow, involvedStatuses, involvedChainIndexes, statusHistogram);
-        // 标记直方图状态的位置
-        HashMap<JoinStatus, Integer> status2Index = new HashMap<>();
-        int i = 0;
-        for (JoinStatus joinStatus : statusHistogram.keySet()) {
-            status2Index.put(joinStatus, i++);
+        for (int i = 0; i < statusSizes.length; i++) {
+            statusHistogram.put(statusIndex.get(i), statusSizes[i]);
         }
-        // 为每一行数据记录位置
-        IntStream.range(0, range).parallel().forEach(rowId -> filterIndexes[rowId] = status2Index.get(involvedStatuses[rowId]));
         long endConstruction = System.currentTimeMillis();
         constructHistogram += endConstruction - startConstructHistogram;
         // 给定一个populateSolution，计算每一行数据需要填充的主键状态，以及剩余未填充的数据量
         int[] filterStatusPkPopulatedIndex = new int[statusHistogram.size()];
         // 构建并求解CP问题
         ConstructCpModel cpModel = constructConstraintProblem(statusHistogram, range);
+        // 相邻batch的直方图通常接近，优先复用上一个batch的解，否则以其作为初始解求解
+        if (cpReuseTolerance <= 0 || !cpModel.reuse(lastSolution, cpReuseTolerance)) {
+            cpModel.warmStart(lastSolution);
+        }
         long[][] populateSolution = cpModel.solve();
+        lastSolution = cpModel.getSolution();
         // 记录JDC的解
         for (Integer fkIndex : distinctFkIndex2Cardinality.keySet()) {
             fkIndex2Range.put(fkIndex, cpModel.getDistinctResult(fkIndex));
@@ -235,63 +354,115 @@ public class FkGenerator {
     }
 
 
-    private long[] populateFkForJDC(int fkColIndex, MergedRuleTable ruleTable, int[] pkStatuses,
-                                    int[] filterIndexes, FkRange[][] fkRangeForFk) {
+    /**
+     * 每个(filter status, 主键状态)的cell内，按行号顺序的第k行使用FK区间内第 range - 1 - k % range 个下标。
+     * 先分块统计每个cell的行数，前缀和得到每个块在各cell内的起始序号，各块再并行填充
+     */
+    private LongBuffer populateFkForJDC(int fkColIndex, MergedRuleTable ruleTable, int[] pkStatuses,
+                                    int[] filterIndexes, FkRange[][] fkRangeForFk, long batchStart) {
         ruleTable.refreshRuleCounter();
         int range = pkStatuses.length;
-        long[] fkCol = new long[range];
-        for (int rowId = 0; rowId < range; rowId++) {
-            int pkStatusIndex = pkStatuses[rowId];
-            JoinStatus populateStatus = jointPkStatus[pkStatusIndex][fkColIndex];
-            int filterIndex = filterIndexes[rowId];
-            FkRange fkRange = fkRangeForFk[filterIndex][pkStatusIndex];
-            int index = fkRange.start + fkRange.range - 1;
-            if (fkRange.range > 1) {
-                fkRange.range--;
-            } else if (fkRange.range != fkRange.totalRange) {
-                fkRange.range = fkRange.totalRange;
+        int pkStatusNum = jointPkStatus.length;
+        int cellSize = fkRangeForFk.length * pkStatusNum;
+        // 每个块需要cellSize个计数器，块数不超过行数与cell数量之比，计数器占用的空间不超过行数
+        int blockNum = Math.max(1, Math.min(CORE_NUM, range / Math.max(cellSize, 1)));
+        int blockRows = range / blockNum + 1;
+        int[][] blockOffsets = new int[blockNum][];
+        IntStream.range(0, blockNum).parallel().forEach(blockIndex -> {
+            int[] cellCounts = new int[cellSize];
+            for (int rowId = blockIndex * blockRows; rowId < Math.min((blockIndex + 1) * blockRows, range); rowId++) {
+                cellCounts[filterIndexes[rowId] * pkStatusNum + pkStatuses[rowId]]++;
+            }
+            blockOffsets[blockIndex] = cellCounts;
+        });
+        int[] cellCounts = new int[cellSize];
+        for (int[] offsets : blockOffsets) {
+            for (int cell = 0; cell < cellSize; cell++) {
+                int count = offsets[cell];
+                offsets[cell] = cellCounts[cell];
+                cellCounts[cell] += count;
             }
-            fkCol[rowId] = ruleTable.getKey(populateStatus, index);
         }
+        // 每个cell的第一行使用的下标最大
+        for (int cell = 0; cell < cellSize; cell++) {
+            if (cellCounts[cell] > 0) {
+                int pkStatusIndex = cell % pkStatusNum;
+                FkRange fkRange = fkRangeForFk[cell / pkStatusNum][pkStatusIndex];
+                ruleTable.updateAssignedIndex(jointPkStatus[pkStatusIndex][fkColIndex], getFkIndex(fkRange, 0));
+            }
+        }
+        LongBuffer fkCol = BatchArena.getInstance().allocateLongBuffer(range);
+        IntStream.range(0, blockNum).parallel().forEach(blockIndex -> {
+            int[] sequences = blockOffsets[blockIndex];
+            int rowStart = blockIndex * blockRows;
+            int rowEnd = Math.min(rowStart + blockRows, range);
+            for (int rowId = rowStart; rowId < rowEnd; rowId++) {
+                int pkStatusIndex = pkStatuses[rowId];
+                int filterIndex = filterIndexes[rowId];
+                int sequence = sequences[filterIndex * pkStatusNum + pkStatusIndex]++;
+                fkCol.put(rowId, getFkIndex(fkRangeForFk[filterIndex][pkStatusIndex], sequence));
+            }
+            ruleTable.getKeys(pkStatuses, pkStatus2RuleIndexes[fkColIndex], fkCol, rowStart, rowEnd,
+                    fkColRandoms[fkColIndex], batchStart);
+        });
         return fkCol;
     }
 
-    private long[] populateFkForJCC(int fkColIndex, MergedRuleTable ruleTable, int[] pkStatuses) {
+    /**
+     * @param sequence 行在cell内的序号
+     * @return 行使用的下标，没有分配FK区间时小于0，使用随机主键
+     */
+    private static long getFkIndex(FkRange fkRange, int sequence) {
+        if (fkRange.range <= 0) {
+            return fkRange.start + fkRange.range - 1L;
+        }
+        return fkRange.start + fkRange.range - 1L - sequence % fkRange.range;
+    }
+
+    private LongBuffer populateFkForJCC(int fkColIndex, MergedRuleTable ruleTable, int[] pkStatuses, long batchStart) {
         int range = pkStatuses.length;
-        long[] fkCol = new long[range];
-        IntStream.range(0, range).parallel().forEach(rowId -> {
-            int pkStatusIndex = pkStatuses[rowId];
-            JoinStatus populateStatus = jointPkStatus[pkStatusIndex][fkColIndex];
-            fkCol[rowId] = ruleTable.getKey(populateStatus, -1);
+        LongBuffer fkCol = BatchArena.getInstance().allocateLongBuffer(range);
+        int blockRows = range / CORE_NUM + 1;
+        IntStream.range(0, CORE_NUM).parallel().forEach(blockIndex -> {
+            int rowStart = Math.min(blockIndex * blockRows, range);
+            int rowEnd = Math.min(rowStart + blockRows, range);
+            for (int rowId = rowStart; rowId < rowEnd; rowId++) {
+                fkCol.put(rowId, -1);
+            }
+            ruleTable.getKeys(pkStatuses, pkStatus2RuleIndexes[fkColIndex], fkCol, rowStart, rowEnd,
+                    fkColRandoms[fkColIndex], batchStart);
         });
         return fkCol;
     }
 
-    public long[][] generateFK(boolean[][] statusVectorOfEachRow) {
+    /**
+     * @param batchStart 本批第一行在表中的位置，作为随机数的计数器
+     */
+    public LongBuffer[] generateFK(StatusMatrix statusMatrix, long batchStart) {
         // 统计每种状态的数据量
         if (involvedChainIndexes.length == 0) {
-            return new long[0][0];
+            return new LongBuffer[0];
         }
-        int range = statusVectorOfEachRow.length;
-        int[] pkStatuses = new int[range];
+        int range = statusMatrix.size();
+        int[] pkStatuses = BatchArena.getInstance().allocateInts(range);
         // 记录每行数据对应的status
-        int[] filterIndexes = new int[range];
+        int[] filterIndexes = BatchArena.getInstance().allocateInts(range);
         Map<Integer, FkRange[][]> fkIndex2Range = new HashMap<>();
 
-        solveCP(statusVectorOfEachRow, pkStatuses, filterIndexes, fkIndex2Range);
+        solveCP(statusMatrix, pkStatuses, filterIndexes, fkIndex2Range);
 
         long startPopulateFK = System.currentTimeMillis();
         int fkColNum = jointPkStatus[0].length;
-        long[][] fkColValues = new long[fkColNum][range];
-        List<Future<long[]>> futureFkCols = new ArrayList<>();
+        LongBuffer[] fkColValues = new LongBuffer[fkColNum];
+        List<Future<LongBuffer>> futureFkCols = new ArrayList<>();
         for (int fkColIndex = 0; fkColIndex < fkColNum; fkColIndex++) {
             MergedRuleTable ruleTable = ruleTables[fkColIndex];
             int finalFkColIndex = fkColIndex;
             if (fkIndex2Range.containsKey(fkColIndex)) {
                 futureFkCols.add(THREAD_POOL.submit(() ->
-                        populateFkForJDC(finalFkColIndex, ruleTable, pkStatuses, filterIndexes, fkIndex2Range.get(finalFkColIndex))));
+                        populateFkForJDC(finalFkColIndex, ruleTable, pkStatuses, filterIndexes, fkIndex2Range.get(finalFkColIndex), batchStart)));
             } else {
-                futureFkCols.add(THREAD_POOL.submit(() -> populateFkForJCC(finalFkColIndex, ruleTable, pkStatuses)));
+                futureFkCols.add(THREAD_POOL.submit(() -> populateFkForJCC(finalFkColIndex, ruleTable, pkStatuses, batchStart)));
             }
         }
         for (int fkColIndex = 0; fkColIndex < fkColValues.length; fkColIndex++) {
@@ -302,13 +473,16 @@ public class FkGenerator {
             }
         }
         // 计算每一行数据的输出状态
-        int chainSize = statusVectorOfEachRow[0].length;
-        IntStream.range(0, range).parallel().forEach(rowId -> {
-            boolean[] outputStatus = outputStatusForEachPk[pkStatuses[rowId]].status();
-            for (int fkColIndex = 0; fkColIndex < chainSize; fkColIndex++) {
-                statusVectorOfEachRow[rowId][fkColIndex] &= outputStatus[fkColIndex];
+        for (int chainIndex = 0; chainIndex < statusMatrix.getChainSize(); chainIndex++) {
+            int finalChainIndex = chainIndex;
+            // 所有主键状态的输出均为true的链不需要修改
+            if (Arrays.stream(outputStatusForEachPk).allMatch(status -> status.get(finalChainIndex))) {
+                continue;
             }
-        });
+            statusMatrix.retain(chainIndex, rowId -> outputStatusForEachPk[pkStatuses[rowId]].get(finalChainIndex));
+        }
+        BatchArena.getInstance().free(pkStatuses);
+        BatchArena.getInstance().free(filterIndexes);
         populateFKTime += System.currentTimeMillis() - startPopulateFK;
         return fkColValues;
     }
@@ -346,34 +520,41 @@ public class FkGenerator {
         return allDiffStatus;
     }
 
-    public static JoinStatus chooseCorrespondingStatus(boolean[] originStatus, int[] involvedChainIndexes) {
+    public static JoinStatus chooseCorrespondingStatus(JoinStatus originStatus, int[] involvedChainIndexes) {
         boolean[] ret = new boolean[involvedChainIndexes.length];
         int i = 0;
         for (int involvedChainIndex : involvedChainIndexes) {
-            ret[i++] = originStatus[involvedChainIndex];
+            ret[i++] = originStatus.get(involvedChainIndex);
+        }
+        return new JoinStatus(ret);
+    }
+
+    private static JoinStatus chooseCorrespondingStatus(StatusMatrix statusMatrix, int rowId, int[] involvedChainIndexes) {
+        boolean[] ret = new boolean[involvedChainIndexes.length];
+        int i = 0;
+        for (int involvedChainIndex : involvedChainIndexes) {
+            ret[i++] = statusMatrix.get(rowId, involvedChainIndex);
         }
         return new JoinStatus(ret);
     }
 
     private JoinStatus[] computeOutputStatus(int allChainSize) {
         JoinStatus[] outputStatus = new JoinStatus[jointPkStatus.length];
-        for (int j = 0; j < outputStatus.length; j++) {
-            boolean[] status = new boolean[allChainSize];
-            Arrays.fill(status, true);
-            outputStatus[j] = new JoinStatus(status);
-        }
         for (int pkStatusIndex = 0; pkStatusIndex < outputStatus.length; pkStatusIndex++) {
+            boolean[] outputStatusOfPk = new boolean[allChainSize];
+            Arrays.fill(outputStatusOfPk, true);
             for (int currentChainIndex = 0; currentChainIndex < involvedChainIndexes.length; currentChainIndex++) {
                 List<ConstraintChainFkJoinNode> chainFkJoinNodes = chainNodesList.get(currentChainIndex).stream()
                         .filter(ConstraintChainFkJoinNode.class::isInstance).map(ConstraintChainFkJoinNode.class::cast).toList();
                 JoinStatus[] pkStatusOfRow = jointPkStatus[pkStatusIndex];
                 boolean status = true;
                 for (ConstraintChainFkJoinNode chainFkJoinNode : chainFkJoinNodes) {
-                    status &= pkStatusOfRow[chainFkJoinNode.joinStatusIndex].status()[chainFkJoinNode.joinStatusLocation];
+                    status &= pkStatusOfRow[chainFkJoinNode.joinStatusIndex].get(chainFkJoinNode.joinStatusLocation);
                 }
                 int chainIndex = involvedChainIndexes[currentChainIndex];
-                outputStatus[pkStatusIndex].status()[chainIndex] = status;
+                outputStatusOfPk[chainIndex] = status;
             }
+            outputStatus[pkStatusIndex] = new JoinStatus(outputStatusOfPk);
         }
         return outputStatus;
     }
@@ -4,11 +4,8 @@ public class FkRange {
     public FkRange(int start, int range) {
         this.start = start;
         this.range = range;
-        this.totalRange = range;
     }
 
-    int start;
-    int range;
-
-    int totalRange;
+    final int start;
+    final int range;
 }
@@ -0,0 +1,279 @@
+package ecnu.db.generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CP求解超时或无解时的贪心分配。每个filter status填充各个主键状态的行数之和严格等于该status的行数，
+ * 连接基数约束尽量满足：每次选择违反最多的约束，在同一个filter status内移动行数使总违反量下降最多，
+ * 直到所有约束满足、没有能降低总违反量的移动，或者用完时间上限与评估移动的次数上限
+ */
+class GreedyPopulationSolver {
+    private final long[] rowSizes;
+
+    private final int columnSize;
+
+    private final boolean[] validCells;
+
+    private final List<int[]> constraintCells = new ArrayList<>();
+
+    private final List<long[]> constraintBounds = new ArrayList<>();
+
+    private long[] populations;
+
+    private long[] sums;
+
+    private int[][] cellConstraints;
+
+    private long[] changes;
+
+    /**
+     * 当前移动的约束包含的cell，每次移动后清空
+     */
+    private boolean[] inConstraint;
+
+    /**
+     * 剩余可以评估的候选移动次数，与机器速度无关，确定性求解时以它限制用时
+     */
+    private long remainingWork;
+
+    private long bestDelta;
+
+    private int bestSource;
+
+    private int bestTarget;
+
+    private long bestAmount;
+
+    /**
+     * @param rowSizes   每个filter status的行数
+     * @param columnSize 主键状态的数量
+     * @param validCells 可以分配行数的cell
+     */
+    GreedyPopulationSolver(long[] rowSizes, int columnSize, boolean[] validCells) {
+        this.rowSizes = rowSizes;
+        this.columnSize = columnSize;
+        this.validCells = validCells;
+    }
+
+    /**
+     * 加入约束 lower <= sum(populations[cells]) <= upper，cell的编号为 filter status的位置 * 主键状态数量 + 主键状态的位置
+     */
+    void addConstraint(int[] cells, long lower, long upper) {
+        constraintCells.add(cells);
+        constraintBounds.add(new long[]{lower, upper});
+    }
+
+    /**
+     * @param initial          初始解，某个filter status上存在小于0的值时，该status的所有行填充到所在约束最少的可用主键状态
+     * @param maxTimeInSeconds 移动行数的时间上限，不限制时为Double.POSITIVE_INFINITY，用完后返回当前的解
+     * @param maxWork          最多评估的候选移动次数，用完后执行已经找到的最好移动并返回当前的解
+     * @return 每个cell上的填充行数
+     */
+    long[] solve(long[] initial, double maxTimeInSeconds, long maxWork) {
+        long startTime = System.nanoTime();
+        long timeLimit = (long) (maxTimeInSeconds * 1e9);
+        remainingWork = maxWork;
+        int cellSize = rowSizes.length * columnSize;
+        cellConstraints = new int[cellSize][];
+        int[] cellConstraintNum = new int[cellSize];
+        constraintCells.forEach(cells -> Arrays.stream(cells).forEach(cell -> cellConstraintNum[cell]++));
+        for (int cell = 0; cell < cellSize; cell++) {
+            cellConstraints[cell] = new int[cellConstraintNum[cell]];
+        }
+        Arrays.fill(cellConstraintNum, 0);
+        for (int constraintIndex = 0; constraintIndex < constraintCells.size(); constraintIndex++) {
+            for (int cell : constraintCells.get(constraintIndex)) {
+                cellConstraints[cell][cellConstraintNum[cell]++] = constraintIndex;
+            }
+        }
+        populations = new long[cellSize];
+        inConstraint = new boolean[cellSize];
+        for (int row = 0; row < rowSizes.length; row++) {
+            int rowStart = row * columnSize;
+            if (initial != null && Arrays.stream(initial, rowStart, rowStart + columnSize).allMatch(value -> value >= 0)) {
+                System.arraycopy(initial, rowStart, populations, rowStart, columnSize);
+            } else {
+                int freeCell = -1;
+                for (int cell = rowStart; cell < rowStart + columnSize; cell++) {
+                    if (validCells[cell] && (freeCell < 0 || cellConstraints[cell].length < cellConstraints[freeCell].length)) {
+                        freeCell = cell;
+                    }
+                }
+                populations[freeCell] = rowSizes[row];
+            }
+        }
+        sums = new long[constraintCells.size()];
+        changes = new long[constraintCells.size()];
+        for (int constraintIndex = 0; constraintIndex < sums.length; constraintIndex++) {
+            for (int cell : constraintCells.get(constraintIndex)) {
+                sums[constraintIndex] += populations[cell];
+            }
+        }
+        // 每次移动都严格降低总违反量，移动次数与评估次数的上限只用于限制最坏情况下的用时
+        boolean[] stuck = new boolean[sums.length];
+        for (int step = 0, maxStep = 16 * cellSize; step < maxStep && remainingWork > 0
+                && System.nanoTime() - startTime < timeLimit; step++) {
+            int constraintIndex = getMostViolated(stuck);
+            if (constraintIndex < 0) {
+                break;
+            }
+            if (move(constraintIndex)) {
+                Arrays.fill(stuck, false);
+            } else {
+                stuck[constraintIndex] = true;
+            }
+        }
+        return populations;
+    }
+
+    private long getViolation(int constraintIndex, long sum) {
+        long[] bound = constraintBounds.get(constraintIndex);
+        if (sum < bound[0]) {
+            return bound[0] - sum;
+        }
+        return sum > bound[1] ? sum - bound[1] : 0;
+    }
+
+    private int getMostViolated(boolean[] stuck) {
+        int mostViolated = -1;
+        long maxViolation = 0;
+        for (int constraintIndex = 0; constraintIndex < sums.length; constraintIndex++) {
+            long violation = getViolation(constraintIndex, sums[constraintIndex]);
+            if (!stuck[constraintIndex] && violation > maxViolation) {
+                maxViolation = violation;
+                mostViolated = constraintIndex;
+            }
+        }
+        return mostViolated;
+    }
+
+    /**
+     * 在同一个filter status内，将行数从约束外的cell移入约束内的cell，或者反向移动，选择总违反量下降最多的一次移动。
+     * 移动量为当前约束的违反量，或者不使其他约束的违反量增加的最大移动量
+     *
+     * @return 是否找到了降低总违反量的移动
+     */
+    private boolean move(int constraintIndex) {
+        long sum = sums[constraintIndex];
+        long[] bound = constraintBounds.get(constraintIndex);
+        boolean increase = sum < bound[0];
+        long need = increase ? bound[0] - sum : sum - bound[1];
+        for (int cell : constraintCells.get(constraintIndex)) {
+            inConstraint[cell] = true;
+        }
+        bestDelta = 0;
+        bestSource = -1;
+        bestTarget = -1;
+        bestAmount = 0;
+        search:
+        for (int row = 0; row < rowSizes.length; row++) {
+            int rowStart = row * columnSize;
+            for (int source = rowStart; source < rowStart + columnSize; source++) {
+                if (populations[source] == 0 || inConstraint[source] == increase) {
+                    continue;
+                }
+                long amount = Math.min(need, populations[source]);
+                for (int target = rowStart; target < rowStart + columnSize; target++) {
+                    if (!validCells[target] || inConstraint[target] != increase) {
+                        continue;
+                    }
+                    if (--remainingWork < 0) {
+                        break search;
+                    }
+                    evaluate(source, target, amount);
+                    evaluate(source, target, getSafeAmount(source, target, amount));
+                }
+            }
+        }
+        for (int cell : constraintCells.get(constraintIndex)) {
+            inConstraint[cell] = false;
+        }
+        if (bestSource < 0) {
+            return false;
+        }
+        populations[bestSource] -= bestAmount;
+        populations[bestTarget] += bestAmount;
+        for (int index : cellConstraints[bestSource]) {
+            sums[index] -= bestAmount;
+        }
+        for (int index : cellConstraints[bestTarget]) {
+            sums[index] += bestAmount;
+        }
+        return true;
+    }
+
+    /**
+     * 计算从source向target移动amount行后总违反量的变化，比当前最好的移动更好时记录下来
+     */
+    private void evaluate(int source, int target, long amount) {
+        if (amount == 0) {
+            return;
+        }
+        long delta = getDelta(source, target, amount);
+        if (delta < bestDelta) {
+            bestDelta = delta;
+            bestSource = source;
+            bestTarget = target;
+            bestAmount = amount;
+        }
+    }
+
+    /**
+     * @return 不超过amount，且不使只包含source或者只包含target的约束的违反量增加的最大移动量
+     */
+    private long getSafeAmount(int source, int target, long amount) {
+        for (int index : cellConstraints[source]) {
+            if (!contains(cellConstraints[target], index)) {
+                // 行数不小于0，下界小于0时只受行数限制
+                amount = Math.min(amount, Math.max(sums[index] - Math.max(constraintBounds.get(index)[0], 0), 0));
+            }
+        }
+        for (int index : cellConstraints[target]) {
+            if (!contains(cellConstraints[source], index)) {
+                amount = Math.min(amount, Math.max(constraintBounds.get(index)[1] - sums[index], 0));
+            }
+        }
+        return amount;
+    }
+
+    private static boolean contains(int[] constraintIndexes, int constraintIndex) {
+        for (int index : constraintIndexes) {
+            if (index == constraintIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long getDelta(int source, int target, long amount) {
+        for (int index : cellConstraints[source]) {
+            changes[index] -= amount;
+        }
+        for (int index : cellConstraints[target]) {
+            changes[index] += amount;
+        }
+        long delta = 0;
+        for (int index : cellConstraints[source]) {
+            delta += applyChange(index);
+        }
+        for (int index : cellConstraints[target]) {
+            delta += applyChange(index);
+        }
+        return delta;
+    }
+
+    /**
+     * 计算约束在变化后违反量的增量，并清空变化。同时包含source与target的约束只计算一次
+     */
+    private long applyChange(int constraintIndex) {
+        long change = changes[constraintIndex];
+        if (change == 0) {
+            return 0;
+        }
+        changes[constraintIndex] = 0;
+        long sum = sums[constraintIndex];
+        return getViolation(constraintIndex, sum + change) - getViolation(constraintIndex, sum);
+    }
+}
@@ -0,0 +1,59 @@
+package ecnu.db.generator;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 数据文件的压缩格式，每个压缩块都是独立完整的帧，拼接后仍可被对应的命令行工具解压
+ */
+public enum OutputCodec {
+    NONE("", "cat"),
+    GZIP(".gz", "gzip -dc"),
+    ZSTD(".zst", "zstd -dc"),
+    LZ4(".lz4", "lz4 -dc");
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final String suffix;
+
+    private final String decompressCommand;
+
+    OutputCodec(String suffix, String decompressCommand) {
+        this.suffix = suffix;
+        this.decompressCommand = decompressCommand;
+    }
+
+    /**
+     * @return 数据文件的后缀名
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * @return 从标准输入读取压缩数据并输出原始数据的命令
+     */
+    public String getDecompressCommand() {
+        return decompressCommand;
+    }
+
+    /**
+     * 包装输出流，写入的数据压缩为一个独立的帧，关闭时写出帧尾
+     *
+     * @param outputStream 压缩后数据的输出流
+     * @return 写入原始数据的输出流
+     * @throws IOException 创建压缩流失败
+     */
+    public OutputStream wrap(OutputStream outputStream) throws IOException {
+        return switch (this) {
+            case NONE -> outputStream;
+            case GZIP -> new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE);
+            case ZSTD -> new ZstdOutputStream(outputStream);
+            case LZ4 -> new LZ4FrameOutputStream(outputStream);
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package ecnu.db.generator;
+
+/**
+ * 数据文件的格式
+ */
+public enum OutputFormat {
+    /**
+     * 以逗号分隔的文本，null输出为\N
+     */
+    CSV(""),
+    /**
+     * PostgreSQL的binary COPY格式，数值与日期以二进制表示写出
+     */
+    PG_BINARY(".bin"),
+    /**
+     * Arrow IPC文件，每个数据文件包含若干record batch
+     */
+    ARROW(".arrow");
+
+    private final String suffix;
+
+    OutputFormat(String suffix) {
+        this.suffix = suffix;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+}
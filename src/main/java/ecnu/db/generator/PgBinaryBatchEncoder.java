@@ -0,0 +1,293 @@
+package ecnu.db.generator;
+
+import ecnu.db.schema.Column;
+import ecnu.db.schema.ColumnManager;
+import ecnu.db.utils.CommonUtils;
+import ecnu.db.utils.exception.TouchstoneException;
+
+/**
+ * 将batch编码为PostgreSQL的binary COPY格式，各列按照原始类型直接写出二进制表示。
+ * 直接导入数据库时每个batch是一个完整的COPY数据流；写入文件时只写出行，导入脚本为合并后的数据流写一次文件头和文件尾
+ */
+public class PgBinaryBatchEncoder implements BatchEncoder {
+    /**
+     * 文件头由签名、flags与header扩展区长度组成
+     */
+    private static final byte[] HEADER = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0,
+            0, 0, 0, 0, 0, 0, 0, 0};
+
+    /**
+     * 文件尾为字段数-1
+     */
+    private static final byte[] TRAILER = {(byte) 0xff, (byte) 0xff};
+
+    /**
+     * PostgreSQL中date和timestamp的起点为2000-01-01
+     */
+    private static final long PG_EPOCH_DAY = 10957;
+
+    private static final long PG_EPOCH_SECOND = PG_EPOCH_DAY * 24 * 60 * 60;
+
+    private static final long MICROS_PER_SECOND = 1_000_000;
+
+    private static final int NUMERIC_POS = 0x0000;
+
+    private static final int NUMERIC_NEG = 0x4000;
+
+    private static final int NUMERIC_BASE = 10000;
+
+    /**
+     * long的整数部分与补齐后的小数部分各自最多占5个万进制位
+     */
+    private static final int NUMERIC_MAX_DIGITS = 10;
+
+    /**
+     * 小数部分补齐到4的倍数位后不超过long的范围，最多占NUMERIC_MAX_DIGITS / 2 - 1个万进制位
+     */
+    static final int NUMERIC_MAX_SCALE = (NUMERIC_MAX_DIGITS / 2 - 1) * 4;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * 同一个batch的不同块可能由多个压缩线程同时编码，临时数组按线程隔离
+     */
+    private static final ThreadLocal<short[]> NUMERIC_DIGITS = ThreadLocal.withInitial(() -> new short[NUMERIC_MAX_DIGITS]);
+
+    /**
+     * PostgreSQL的二进制类型
+     */
+    enum PgType {
+        BOOL, INT2, INT4, INT8, FLOAT4, FLOAT8, NUMERIC, DATE, TIMESTAMP, TIMESTAMPTZ, TEXT;
+
+        /**
+         * 根据列的类型与建表时的原始类型确定二进制表示
+         */
+        static PgType of(Column column) {
+            String originalType = column.getOriginalType() == null ? "" : column.getOriginalType().toUpperCase();
+            return switch (column.getColumnType()) {
+                case INTEGER, BOOL -> {
+                    if (originalType.startsWith("BOOL") || originalType.startsWith("BIT")) {
+                        yield BOOL;
+                    } else if (originalType.startsWith("SMALLINT") || originalType.startsWith("INT2")) {
+                        yield INT2;
+                    } else if (originalType.startsWith("BIGINT") || originalType.startsWith("INT8")) {
+                        yield INT8;
+                    } else {
+                        yield INT4;
+                    }
+                }
+                case DECIMAL -> {
+                    if (originalType.startsWith("REAL") || originalType.startsWith("FLOAT4")) {
+                        yield FLOAT4;
+                    } else if (originalType.startsWith("DOUBLE") || originalType.startsWith("FLOAT")) {
+                        yield FLOAT8;
+                    } else {
+                        yield NUMERIC;
+                    }
+                }
+                case DATE -> DATE;
+                case DATETIME -> originalType.contains("WITH TIME ZONE") ? TIMESTAMPTZ : TIMESTAMP;
+                case VARCHAR -> TEXT;
+            };
+        }
+    }
+
+    private final DataBatch batch;
+
+    private final PgType[] keyTypes;
+
+    private final PgType[] attTypes;
+
+    private final int[] decimalScales;
+
+    /**
+     * 是否写出文件头和文件尾
+     */
+    private final boolean framed;
+
+    public PgBinaryBatchEncoder(DataBatch batch) throws TouchstoneException {
+        this(batch, true);
+    }
+
+    /**
+     * @param framed 是否写出文件头和文件尾，输出到文件时为false
+     * @throws TouchstoneException DECIMAL列的小数位数小于0或者超过NUMERIC_MAX_SCALE
+     */
+    public PgBinaryBatchEncoder(DataBatch batch, boolean framed) throws TouchstoneException {
+        this.batch = batch;
+        this.framed = framed;
+        keyTypes = new PgType[batch.keyColumnNames().length];
+        for (int i = 0; i < keyTypes.length; i++) {
+            keyTypes[i] = PgType.of(ColumnManager.getInstance().getColumn(batch.keyColumnNames()[i]));
+        }
+        attTypes = new PgType[batch.attColumns().length];
+        decimalScales = new int[attTypes.length];
+        for (int i = 0; i < attTypes.length; i++) {
+            Column column = batch.attColumns()[i];
+            attTypes[i] = PgType.of(column);
+            if (attTypes[i] == PgType.NUMERIC) {
+                decimalScales[i] = column.getDecimalScale();
+                if (decimalScales[i] < 0 || decimalScales[i] > NUMERIC_MAX_SCALE) {
+                    throw new TouchstoneException(String.format("numeric列的小数位数需要在0到%d之间，specialValue为%d",
+                            NUMERIC_MAX_SCALE, column.getSpecialValue()));
+                }
+            }
+        }
+    }
+
+    public static byte[] getHeader() {
+        return HEADER.clone();
+    }
+
+    public static byte[] getTrailer() {
+        return TRAILER.clone();
+    }
+
+    @Override
+    public void encodeHeader(RowEncoder encoder) {
+        if (framed) {
+            encoder.appendBytes(HEADER);
+        }
+    }
+
+    @Override
+    public void encodeRows(int start, int end, RowEncoder encoder) {
+        int fieldCount = keyTypes.length + attTypes.length;
+        short[] numericDigits = NUMERIC_DIGITS.get();
+        for (int rowId = start; rowId < end; rowId++) {
+            encoder.appendInt16(fieldCount);
+            for (int i = 0; i < keyTypes.length; i++) {
+                long key = batch.keyData()[i].get(rowId);
+                if (key == Long.MIN_VALUE) {
+                    encoder.appendInt32(-1);
+                } else {
+                    appendInteger(encoder, keyTypes[i], key);
+                }
+            }
+            for (int i = 0; i < attTypes.length; i++) {
+                appendAttribute(encoder, i, batch.attData()[i].get(rowId), numericDigits);
+            }
+        }
+    }
+
+    @Override
+    public void encodeTrailer(RowEncoder encoder) {
+        if (framed) {
+            encoder.appendBytes(TRAILER);
+        }
+    }
+
+    private void appendAttribute(RowEncoder encoder, int attIndex, long data, short[] numericDigits) {
+        if (data == Long.MIN_VALUE) {
+            encoder.appendInt32(-1);
+            return;
+        }
+        Column column = batch.attColumns()[attIndex];
+        long value = data + column.getMin();
+        switch (attTypes[attIndex]) {
+            case BOOL, INT2, INT4, INT8 ->
+                    appendInteger(encoder, attTypes[attIndex], column.getSpecialValue() * data + column.getMin());
+            case NUMERIC -> appendNumeric(encoder, value, decimalScales[attIndex], numericDigits);
+            case FLOAT4 -> {
+                encoder.appendInt32(4);
+                encoder.appendInt32(Float.floatToIntBits((float) ((double) value / column.getSpecialValue())));
+            }
+            case FLOAT8 -> {
+                encoder.appendInt32(8);
+                encoder.appendInt64(Double.doubleToLongBits((double) value / column.getSpecialValue()));
+            }
+            case DATE -> {
+                encoder.appendInt32(4);
+                encoder.appendInt32((int) (Math.floorDiv(CommonUtils.toLocalEpochSecond(value * 24 * 60 * 60), 24 * 60 * 60) - PG_EPOCH_DAY));
+            }
+            case TIMESTAMP -> {
+                encoder.appendInt32(8);
+                encoder.appendInt64((CommonUtils.toLocalEpochSecond(value) - PG_EPOCH_SECOND) * MICROS_PER_SECOND);
+            }
+            case TIMESTAMPTZ -> {
+                encoder.appendInt32(8);
+                encoder.appendInt64((value - PG_EPOCH_SECOND) * MICROS_PER_SECOND);
+            }
+            case TEXT -> {
+                int lengthOffset = encoder.reserveInt32();
+                int textStart = encoder.size();
+                column.output(data, encoder);
+                encoder.setInt32(lengthOffset, encoder.size() - textStart);
+            }
+        }
+    }
+
+    private static void appendInteger(RowEncoder encoder, PgType pgType, long value) {
+        switch (pgType) {
+            case BOOL -> {
+                encoder.appendInt32(1);
+                encoder.appendByte((byte) (value == 0 ? 0 : 1));
+            }
+            case INT2 -> {
+                encoder.appendInt32(2);
+                encoder.appendInt16((int) value);
+            }
+            case INT4 -> {
+                encoder.appendInt32(4);
+                encoder.appendInt32((int) value);
+            }
+            default -> {
+                encoder.appendInt32(8);
+                encoder.appendInt64(value);
+            }
+        }
+    }
+
+    /**
+     * 将unscaled value按照numeric的二进制格式写出，每个digit为一个万进制位，weight为首个digit的万进制指数
+     *
+     * @param unscaledValue 去掉小数点后的整数值
+     * @param scale         小数位数，不超过NUMERIC_MAX_SCALE
+     * @param digits        存放万进制位的临时数组
+     */
+    static void appendNumeric(RowEncoder encoder, long unscaledValue, int scale, short[] digits) {
+        int sign = unscaledValue < 0 ? NUMERIC_NEG : NUMERIC_POS;
+        long absValue = Math.abs(unscaledValue);
+        long integerPart = absValue / POWERS_OF_TEN[scale];
+        // 小数部分补齐到4的倍数位
+        int fractionDigits = (scale + 3) / 4;
+        long fractionPart = absValue % POWERS_OF_TEN[scale] * POWERS_OF_TEN[fractionDigits * 4 - scale];
+        int integerDigits = 0;
+        for (long remain = integerPart; remain > 0; remain /= NUMERIC_BASE) {
+            integerDigits++;
+        }
+        for (int i = integerDigits - 1; i >= 0; i--) {
+            digits[i] = (short) (integerPart % NUMERIC_BASE);
+            integerPart /= NUMERIC_BASE;
+        }
+        for (int i = integerDigits + fractionDigits - 1; i >= integerDigits; i--) {
+            digits[i] = (short) (fractionPart % NUMERIC_BASE);
+            fractionPart /= NUMERIC_BASE;
+        }
+        int first = 0;
+        int last = integerDigits + fractionDigits;
+        while (first < last && digits[first] == 0) {
+            first++;
+        }
+        while (last > first && digits[last - 1] == 0) {
+            last--;
+        }
+        int digitCount = last - first;
+        int weight = digitCount == 0 ? 0 : integerDigits - 1 - first;
+        encoder.appendInt32(8 + 2 * digitCount);
+        encoder.appendInt16(digitCount);
+        encoder.appendInt16(weight);
+        encoder.appendInt16(digitCount == 0 ? NUMERIC_POS : sign);
+        encoder.appendInt16(scale);
+        for (int i = first; i < last; i++) {
+            encoder.appendInt16(digits[i]);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package ecnu.db.generator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * 将数据直接编码为字节的可复用缓冲区，避免为每一行数据创建对象
+ */
+public class RowEncoder {
+    private static final byte[] NULL_VALUE = "\\N".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    public static final byte DELIMITER = ',';
+    public static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private static final long DAYS_PER_CYCLE = 146097;
+    private static final long DAYS_0000_TO_1970 = (DAYS_PER_CYCLE * 5) - (30 * 365 + 7);
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private byte[] buffer;
+    private int position = 0;
+
+    public RowEncoder(int initialCapacity) {
+        buffer = new byte[initialCapacity];
+    }
+
+    private void ensureCapacity(int length) {
+        if (position + length > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(buffer.length * 2, position + length)];
+            System.arraycopy(buffer, 0, newBuffer, 0, position);
+            buffer = newBuffer;
+        }
+    }
+
+    public void appendByte(byte value) {
+        ensureCapacity(1);
+        buffer[position++] = value;
+    }
+
+    public void appendBytes(byte[] values) {
+        appendBytes(values, 0, values.length);
+    }
+
+    public void appendBytes(byte[] values, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(values, offset, buffer, position, length);
+        position += length;
+    }
+
+    /**
+     * 写入仅包含ASCII字符的字符串
+     */
+    public void appendAscii(CharSequence value) {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[position++] = (byte) value.charAt(i);
+        }
+    }
+
+    /**
+     * 写入任意字符串，非ASCII字符按UTF-8编码
+     */
+    public void appendString(String value) {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                position -= i;
+                appendBytes(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buffer[position++] = (byte) c;
+        }
+    }
+
+    public void appendNull() {
+        appendBytes(NULL_VALUE);
+    }
+
+    public void appendDelimiter() {
+        appendByte(DELIMITER);
+    }
+
+    public void appendLineSeparator() {
+        appendBytes(LINE_SEPARATOR);
+    }
+
+    /**
+     * 按十进制写入long，不创建中间字符串
+     */
+    public void appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            appendBytes(MIN_LONG);
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int length = stringSize(value);
+        int index = position + length;
+        do {
+            buffer[--index] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        position += length;
+    }
+
+    /**
+     * 按网络字节序写入2字节整数
+     */
+    public void appendInt16(int value) {
+        ensureCapacity(2);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * 按网络字节序写入4字节整数
+     */
+    public void appendInt32(int value) {
+        ensureCapacity(4);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * 按网络字节序写入8字节整数
+     */
+    public void appendInt64(long value) {
+        appendInt32((int) (value >>> 32));
+        appendInt32((int) value);
+    }
+
+    /**
+     * 预留4字节，待后续内容写完后由{@link #setInt32(int, int)}回填
+     *
+     * @return 预留位置的偏移
+     */
+    public int reserveInt32() {
+        ensureCapacity(4);
+        position += 4;
+        return position - 4;
+    }
+
+    public void setInt32(int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /**
+     * 按照unscaled value与小数位数写入定点小数，小数部分不足位数时补0
+     *
+     * @param unscaledValue 去掉小数点后的整数值
+     * @param scale         小数位数，不超过18
+     */
+    public void appendFixedPoint(long unscaledValue, int scale) {
+        if (unscaledValue == Long.MIN_VALUE) {
+            appendAscii(BigDecimal.valueOf(unscaledValue, scale).toPlainString());
+            return;
+        }
+        if (unscaledValue < 0) {
+            appendByte((byte) '-');
+            unscaledValue = -unscaledValue;
+        }
+        long pow = POWERS_OF_TEN[scale];
+        appendLong(unscaledValue / pow);
+        if (scale > 0) {
+            appendByte((byte) '.');
+            appendDigits(unscaledValue % pow, scale);
+        }
+    }
+
+    /**
+     * 按ISO_LOCAL_DATE格式写入日期，年份超出[0, 9999]时退化为LocalDate的格式化
+     *
+     * @param epochDay 距1970-01-01的天数
+     */
+    public void appendDate(long epochDay) {
+        // 以03-01为一年的起点计算公历日期，见java.time.LocalDate#ofEpochDay
+        long zeroDay = epochDay + DAYS_0000_TO_1970 - 60;
+        long adjust = 0;
+        if (zeroDay < 0) {
+            long adjustCycles = (zeroDay + 1) / DAYS_PER_CYCLE - 1;
+            adjust = adjustCycles * 400;
+            zeroDay += -adjustCycles * DAYS_PER_CYCLE;
+        }
+        long yearEst = (400 * zeroDay + 591) / DAYS_PER_CYCLE;
+        long doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+        if (doyEst < 0) {
+            yearEst--;
+            doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+        }
+        yearEst += adjust;
+        int marchDoy0 = (int) doyEst;
+        int marchMonth0 = (marchDoy0 * 5 + 2) / 153;
+        int month = (marchMonth0 + 2) % 12 + 1;
+        int dom = marchDoy0 - (marchMonth0 * 306 + 5) / 10 + 1;
+        long year = yearEst + marchMonth0 / 10;
+        if (year < 0 || year > 9999) {
+            appendAscii(LocalDate.ofEpochDay(epochDay).toString());
+            return;
+        }
+        appendDigits(year, 4);
+        appendByte((byte) '-');
+        appendDigits(month, 2);
+        appendByte((byte) '-');
+        appendDigits(dom, 2);
+    }
+
+    /**
+     * 按ISO_LOCAL_DATE_TIME格式写入精确到秒的时间
+     *
+     * @param localEpochSecond 按本地时区换算后距1970-01-01T00:00:00的秒数
+     */
+    public void appendDateTime(long localEpochSecond) {
+        long epochDay = Math.floorDiv(localEpochSecond, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(localEpochSecond, SECONDS_PER_DAY);
+        appendDate(epochDay);
+        appendByte((byte) 'T');
+        appendDigits(secondOfDay / 3600, 2);
+        appendByte((byte) ':');
+        appendDigits(secondOfDay / 60 % 60, 2);
+        appendByte((byte) ':');
+        appendDigits(secondOfDay % 60, 2);
+    }
+
+    /**
+     * 写入定长的非负十进制数，高位补0
+     */
+    private void appendDigits(long value, int width) {
+        ensureCapacity(width);
+        for (int index = position + width - 1; index >= position; index--) {
+            buffer[index] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += width;
+    }
+
+    private static int stringSize(long value) {
+        long p = 10;
+        for (int i = 1; i < 19; i++) {
+            if (value < p) {
+                return i;
+            }
+            p = 10 * p;
+        }
+        return 19;
+    }
+
+    public int size() {
+        return position;
+    }
+
+    public void reset() {
+        position = 0;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(buffer, 0, position);
+        position = 0;
+    }
+}
@@ -0,0 +1,109 @@
+package ecnu.db.generator;
+
+import ecnu.db.utils.BatchArena;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * 一个batch内每行数据在各约束链上的filter status，每条链的状态按行压缩为一个bitmap
+ */
+public class StatusMatrix {
+    /**
+     * 状态编码为long，最多支持64条链的投影
+     */
+    public static final int MAX_PROJECTED_CHAINS = Long.SIZE;
+
+    private final int range;
+
+    private final long[][] chainBitmaps;
+
+    /**
+     * 每条链的状态需要通过setChainStatus写入后才能使用
+     */
+    public StatusMatrix(int range, int chainSize) {
+        this.range = range;
+        chainBitmaps = new long[chainSize][];
+    }
+
+    public int size() {
+        return range;
+    }
+
+    public int getChainSize() {
+        return chainBitmaps.length;
+    }
+
+    public int getWordSize() {
+        return (range + Long.SIZE - 1) >>> 6;
+    }
+
+    /**
+     * 写入一条链的filter status，不同的链可以并发写入
+     *
+     * @param bitmap 按行压缩的filter status，超出range的位必须为0，由release归还给BatchArena
+     */
+    public void setChainStatus(int chainIndex, long[] bitmap) {
+        if (bitmap.length != getWordSize()) {
+            throw new IllegalArgumentException("bitmap的长度与行数不一致");
+        }
+        chainBitmaps[chainIndex] = bitmap;
+    }
+
+    public boolean get(int rowId, int chainIndex) {
+        return (chainBitmaps[chainIndex][rowId >>> 6] & (1L << rowId)) != 0;
+    }
+
+    /**
+     * 将一个字内64行数据在chainIndexes上的状态投影为编码，第i条链的状态对应编码的第i位
+     *
+     * @param chainIndexes 投影的链，数量不超过MAX_PROJECTED_CHAINS
+     * @param wordIndex    字的位置，对应第wordIndex * 64行开始的64行
+     * @param codes        输出每行的编码，长度至少为64
+     */
+    public void projectWord(int[] chainIndexes, int wordIndex, long[] codes) {
+        Arrays.fill(codes, 0, Long.SIZE, 0L);
+        for (int i = 0; i < chainIndexes.length; i++) {
+            long word = chainBitmaps[chainIndexes[i]][wordIndex];
+            while (word != 0) {
+                int row = Long.numberOfTrailingZeros(word);
+                codes[row] |= 1L << i;
+                word &= word - 1;
+            }
+        }
+    }
+
+    /**
+     * 只保留一条链上满足条件的行的状态，其余行的状态置为false
+     *
+     * @param chainIndex 链的位置
+     * @param keepRow    判断行是否保留当前状态
+     */
+    public void retain(int chainIndex, IntPredicate keepRow) {
+        long[] bitmap = chainBitmaps[chainIndex];
+        IntStream.range(0, bitmap.length).parallel().forEach(wordIndex -> {
+            long word = bitmap[wordIndex];
+            long mask = 0;
+            int start = wordIndex << 6;
+            for (long remain = word; remain != 0; remain &= remain - 1) {
+                int row = Long.numberOfTrailingZeros(remain);
+                if (keepRow.test(start + row)) {
+                    mask |= 1L << row;
+                }
+            }
+            bitmap[wordIndex] = word & mask;
+        });
+    }
+
+    /**
+     * batch生成完成后将所有链的bitmap归还给BatchArena
+     */
+    public void release() {
+        for (long[] bitmap : chainBitmaps) {
+            if (bitmap != null) {
+                BatchArena.getInstance().freeBitmap(bitmap);
+            }
+        }
+    }
+}
@@ -3,9 +3,11 @@ package ecnu.db.generator.constraintchain;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import ecnu.db.generator.constraintchain.agg.ConstraintChainAggregateNode;
 import ecnu.db.generator.constraintchain.filter.ConstraintChainFilterNode;
+import ecnu.db.generator.constraintchain.filter.FilterCache;
 import ecnu.db.generator.constraintchain.filter.Parameter;
 import ecnu.db.generator.constraintchain.join.ConstraintChainFkJoinNode;
 import ecnu.db.generator.constraintchain.join.ConstraintChainPkJoinNode;
+import ecnu.db.utils.BatchArena;
 
 import java.util.*;
 
@@ -82,16 +84,19 @@ public class ConstraintChain {
      * 给定range空间 计算filter的状态
      *
      * @param range 批大小
-     * @return filter状态
+     * @param cache 当前batch各约束链共享的filter计算结果
+     * @return 按行压缩为bitmap的filter状态，从BatchArena中取出
      */
-    public boolean[] evaluateFilterStatus(int range) {
+    public long[] evaluateFilterStatus(int range, FilterCache cache) {
         if (nodes.get(0) instanceof ConstraintChainFilterNode filterNode) {
-            return filterNode.evaluate();
-        } else {
-            boolean[] result = new boolean[range];
-            Arrays.fill(result, true);
-            return result;
+            return filterNode.evaluate(range, cache);
         }
+        long[] result = BatchArena.getInstance().allocateBitmap(range);
+        Arrays.fill(result, -1L);
+        if (range % Long.SIZE != 0) {
+            result[result.length - 1] = (1L << range) - 1;
+        }
+        return result;
     }
 
     public boolean hasFkNode() {
@@ -0,0 +1,16 @@
+package ecnu.db.generator.constraintchain.filter;
+
+/**
+ * 编译后的布尔表达式，每次计算一个block内各行的布尔值
+ */
+@FunctionalInterface
+public interface BlockFilter {
+    /**
+     * 计算[start, end)行表达式的布尔值，end - start不超过编译时指定的blockSize
+     *
+     * @param start 起始行
+     * @param end   结束行，不包含
+     * @param words 按行写入的计算结果，第start行对应words[0]的最低位
+     */
+    void evaluate(int start, int end, long[] words);
+}
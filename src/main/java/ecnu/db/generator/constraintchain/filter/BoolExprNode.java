@@ -2,6 +2,9 @@ package ecnu.db.generator.constraintchain.filter;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import ecnu.db.generator.constraintchain.filter.operation.AbstractFilterOperation;
+import ecnu.db.schema.ColumnManager;
+import ecnu.db.schema.FilterKernel;
+import ecnu.db.utils.BatchArena;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -38,11 +41,54 @@ public abstract class BoolExprNode {
     public abstract BoolExprType getType();
 
     /**
-     * 获取生成好column以后，evaluate表达式的布尔值
+     * 将表达式编译为按block计算的BlockFilter，cache中已有计算结果时直接读取，
+     * 此时每个block的起始行需要为64的倍数
+     *
+     * @param blockSize 每次计算的最大行数
+     * @param cache     当前batch共享的计算结果
+     * @return 编译后的表达式，持有中间结果的缓冲区，不能被多个线程同时使用
+     */
+    public BlockFilter compile(int blockSize, FilterCache cache) {
+        long[] bitmap = cache.getBitmap(this);
+        if (bitmap != null) {
+            return (start, end, words) ->
+                    System.arraycopy(bitmap, start >>> 6, words, 0, FilterKernel.getWordSize(start, end));
+        }
+        return compileExpression(blockSize, cache);
+    }
+
+    /**
+     * 将表达式编译为按block计算的BlockFilter，编译时绑定所需的列和参数
+     *
+     * @param blockSize 每次计算的最大行数
+     * @param cache     当前batch共享的计算结果，用于编译子节点
+     * @return 编译后的表达式
+     */
+    protected abstract BlockFilter compileExpression(int blockSize, FilterCache cache);
+
+    /**
+     * 获取谓词的规范化表示，计算结果相同的谓词具有相同的表示
+     *
+     * @return 谓词的规范化表示
+     */
+    @JsonIgnore
+    public abstract String getPredicateKey();
+
+    /**
+     * 获取生成好column以后，evaluate当前batch所有行表达式的布尔值
      *
      * @return evaluate表达式的布尔值
      */
-    protected abstract boolean[] evaluate();
+    public boolean[] evaluate() {
+        int size = ColumnManager.getInstance().getBatchSize();
+        long[] words = FilterCompiler.evaluate(this, size, FilterCache.EMPTY);
+        boolean[] ret = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            ret[i] = (words[i >>> 6] & (1L << i)) != 0;
+        }
+        BatchArena.getInstance().freeBitmap(words);
+        return ret;
+    }
 
     /**
      * 获取该filter条件中的所有参数
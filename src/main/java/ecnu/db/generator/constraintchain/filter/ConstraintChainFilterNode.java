@@ -78,7 +78,14 @@ public class ConstraintChainFilterNode extends ConstraintChainNode {
         return root.toString();
     }
 
-    public boolean[] evaluate() {
-        return root.evaluate();
+    /**
+     * 计算[0, range)行的filter状态
+     *
+     * @param range 批大小
+     * @param cache 当前batch共享的计算结果
+     * @return 按行压缩为bitmap的filter状态
+     */
+    public long[] evaluate(int range, FilterCache cache) {
+        return FilterCompiler.evaluate(root, range, cache);
     }
 }
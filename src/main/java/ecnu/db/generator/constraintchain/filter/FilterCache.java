@@ -0,0 +1,120 @@
+package ecnu.db.generator.constraintchain.filter;
+
+import ecnu.db.generator.constraintchain.filter.arithmetic.ArithmeticNode;
+import ecnu.db.generator.constraintchain.filter.arithmetic.MathNode;
+import ecnu.db.generator.constraintchain.filter.operation.MultiVarFilterOperation;
+import ecnu.db.utils.BatchArena;
+
+import java.util.*;
+
+/**
+ * 一个batch内多个filter共享的计算结果，以谓词的规范化表示为键。
+ * 在多个filter中重复出现的谓词和算术子树只计算一次，编译时直接读取计算结果。
+ * 构建完成后只读，可以被多个线程同时使用
+ */
+public class FilterCache {
+    public static final FilterCache EMPTY = new FilterCache();
+
+    private final Map<String, long[]> key2Bitmap = new HashMap<>();
+
+    private final Map<String, double[]> key2Values = new HashMap<>();
+
+    private FilterCache() {
+    }
+
+    /**
+     * 统计roots中重复出现的谓词与算术子树，并按照子节点先于父节点的顺序计算它们在[0, range)行上的结果。
+     * 同一个谓词的多次出现只统计一次其子树，因此只有出现在不同父节点下的子树才会被缓存
+     *
+     * @param roots 当前batch需要计算的所有filter
+     * @param range 批大小
+     * @return 共享的计算结果
+     */
+    public static FilterCache build(List<? extends BoolExprNode> roots, int range) {
+        Map<String, Integer> key2Count = new HashMap<>();
+        Map<String, Object> key2Node = new LinkedHashMap<>();
+        for (BoolExprNode root : roots) {
+            countBoolExpr(root, key2Count, key2Node);
+        }
+        FilterCache cache = new FilterCache();
+        for (Map.Entry<String, Object> entry : key2Node.entrySet()) {
+            if (key2Count.get(entry.getKey()) < 2) {
+                continue;
+            }
+            if (entry.getValue() instanceof BoolExprNode node) {
+                cache.key2Bitmap.put(entry.getKey(), FilterCompiler.evaluate(node, range, cache));
+            } else {
+                cache.key2Values.put(entry.getKey(), FilterCompiler.calculate((ArithmeticNode) entry.getValue(), range, cache));
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 后序遍历，key2Node中子节点先于父节点出现。
+     * 只有一个子节点的LogicNode与子节点的键相同，直接统计子节点，否则子节点会被当作重复出现而跳过
+     */
+    private static void countBoolExpr(BoolExprNode node, Map<String, Integer> key2Count, Map<String, Object> key2Node) {
+        if (node instanceof LogicNode logicNode && logicNode.getChildren().size() == 1) {
+            countBoolExpr(logicNode.getChildren().get(0), key2Count, key2Node);
+            return;
+        }
+        String key = node.getPredicateKey();
+        if (key2Count.merge(key, 1, Integer::sum) > 1) {
+            return;
+        }
+        if (node instanceof LogicNode logicNode) {
+            for (BoolExprNode child : logicNode.getChildren()) {
+                countBoolExpr(child, key2Count, key2Node);
+            }
+        } else if (node instanceof MultiVarFilterOperation multiVarFilterOperation) {
+            countArithmetic(multiVarFilterOperation.getArithmeticTree(), key2Count, key2Node);
+        }
+        key2Node.put(key, node);
+    }
+
+    /**
+     * 只缓存MathNode，列和常数的计算代价低于读取缓存
+     */
+    private static void countArithmetic(ArithmeticNode node, Map<String, Integer> key2Count, Map<String, Object> key2Node) {
+        if (!(node instanceof MathNode)) {
+            return;
+        }
+        String key = node.getExpressionKey();
+        if (key2Count.merge(key, 1, Integer::sum) > 1) {
+            return;
+        }
+        countArithmetic(node.getLeftNode(), key2Count, key2Node);
+        countArithmetic(node.getRightNode(), key2Count, key2Node);
+        key2Node.put(key, node);
+    }
+
+    /**
+     * @return 谓词在[0, range)行上的结果，未缓存时返回null
+     */
+    public long[] getBitmap(BoolExprNode node) {
+        return key2Bitmap.isEmpty() ? null : key2Bitmap.get(node.getPredicateKey());
+    }
+
+    /**
+     * @return 算术表达式在[0, range)行上的结果，未缓存时返回null
+     */
+    public double[] getValues(ArithmeticNode node) {
+        return key2Values.isEmpty() ? null : key2Values.get(node.getExpressionKey());
+    }
+
+    /**
+     * batch的filter计算完成后将缓存的bitmap归还给BatchArena，之后不能再读取
+     */
+    public void release() {
+        key2Bitmap.values().forEach(BatchArena.getInstance()::freeBitmap);
+        key2Bitmap.clear();
+    }
+
+    /**
+     * @return 缓存的谓词与算术表达式数量
+     */
+    public int size() {
+        return key2Bitmap.size() + key2Values.size();
+    }
+}
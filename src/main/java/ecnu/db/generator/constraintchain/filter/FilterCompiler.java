@@ -0,0 +1,91 @@
+package ecnu.db.generator.constraintchain.filter;
+
+import ecnu.db.generator.constraintchain.filter.arithmetic.ArithmeticNode;
+import ecnu.db.generator.constraintchain.filter.arithmetic.BlockCalculator;
+import ecnu.db.schema.FilterKernel;
+import ecnu.db.utils.BatchArena;
+
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * 将布尔表达式树编译为BlockFilter，按block计算整个batch的布尔值。
+ * 同一个block内所有子表达式依次读取各列的同一段数据，中间结果只占用block大小的缓冲区
+ */
+public final class FilterCompiler {
+    /**
+     * 每个block的行数，需要为64的倍数
+     */
+    public static final int BLOCK_SIZE = 4096;
+
+    private FilterCompiler() {
+    }
+
+    /**
+     * 计算[0, range)行表达式的布尔值。batch被划分为若干段并行计算，
+     * BlockFilter持有中间结果的缓冲区，因此每段单独编译一份
+     *
+     * @param root  布尔表达式树
+     * @param range 批大小
+     * @param cache 当前batch共享的计算结果
+     * @return 按行压缩为bitmap的计算结果，从BatchArena中取出，使用完成后通过freeBitmap归还
+     */
+    public static long[] evaluate(BoolExprNode root, int range, FilterCache cache) {
+        long[] result = BatchArena.getInstance().allocateBitmap(range);
+        long[] cachedBitmap = cache.getBitmap(root);
+        if (cachedBitmap != null) {
+            System.arraycopy(cachedBitmap, 0, result, 0, result.length);
+            return result;
+        }
+        forEachSegment(range, () -> {
+            BlockFilter filter = root.compile(BLOCK_SIZE, cache);
+            long[] words = new long[FilterKernel.getWordSize(0, BLOCK_SIZE)];
+            return start -> {
+                int end = Math.min(range, start + BLOCK_SIZE);
+                filter.evaluate(start, end, words);
+                System.arraycopy(words, 0, result, start >>> 6, FilterKernel.getWordSize(start, end));
+            };
+        });
+        return result;
+    }
+
+    /**
+     * 计算[0, range)行算术表达式的值
+     *
+     * @param root  算术表达式树
+     * @param range 批大小
+     * @param cache 当前batch共享的计算结果
+     * @return 每行的计算结果
+     */
+    public static double[] calculate(ArithmeticNode root, int range, FilterCache cache) {
+        double[] result = new double[range];
+        forEachSegment(range, () -> {
+            BlockCalculator calculator = root.compile(BLOCK_SIZE, cache);
+            double[] values = new double[BLOCK_SIZE];
+            return start -> {
+                int end = Math.min(range, start + BLOCK_SIZE);
+                calculator.calculate(start, end, values);
+                System.arraycopy(values, 0, result, start, end - start);
+            };
+        });
+        return result;
+    }
+
+    /**
+     * 将[0, range)行的block划分为若干连续的段并行处理
+     *
+     * @param blockTaskSupplier 为每段创建处理block的任务，任务的参数为block的起始行
+     */
+    private static void forEachSegment(int range, Supplier<IntConsumer> blockTaskSupplier) {
+        int blockNum = (range + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int segmentNum = Math.min(blockNum, Runtime.getRuntime().availableProcessors());
+        IntStream.range(0, segmentNum).parallel().forEach(segment -> {
+            IntConsumer blockTask = blockTaskSupplier.get();
+            int blockEnd = (int) ((long) blockNum * (segment + 1) / segmentNum);
+            for (int block = (int) ((long) blockNum * segment / segmentNum); block < blockEnd; block++) {
+                blockTask.accept(block * BLOCK_SIZE);
+            }
+        });
+    }
+}
@@ -3,6 +3,7 @@ package ecnu.db.generator.constraintchain.filter;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import ecnu.db.generator.constraintchain.filter.operation.AbstractFilterOperation;
 import ecnu.db.generator.constraintchain.filter.operation.UniVarFilterOperation;
+import ecnu.db.schema.FilterKernel;
 
 import java.math.BigDecimal;
 import java.util.*;
@@ -94,27 +95,69 @@ public class LogicNode extends BoolExprNode {
         this.type = type;
     }
 
+    /**
+     * 各子节点共用一个缓冲区，AND的结果全为false或OR的结果全为true时跳过剩余子节点
+     */
     @Override
-    public boolean[] evaluate() {
-        boolean[][] computeVectors = new boolean[children.size()][];
-        for (int i = 0; i < children.size(); i++) {
-            computeVectors[i] = children.get(i).evaluate();
-        }
-        boolean[] resultVector = computeVectors[0];
-        if (getRealType() == AND) {
-            for (int i = 0; i < resultVector.length; i++) {
-                for (int j = 1; j < computeVectors.length; j++) {
-                    resultVector[i] &= computeVectors[j][i];
+    protected BlockFilter compileExpression(int blockSize, FilterCache cache) {
+        BlockFilter[] filters = children.stream().map(child -> child.compile(blockSize, cache)).toArray(BlockFilter[]::new);
+        if (filters.length == 1) {
+            return filters[0];
+        }
+        long[] childWords = new long[FilterKernel.getWordSize(0, blockSize)];
+        boolean isAnd = switch (getRealType()) {
+            case AND -> true;
+            case OR -> false;
+            default -> throw new UnsupportedOperationException();
+        };
+        return (start, end, words) -> {
+            int wordSize = FilterKernel.getWordSize(start, end);
+            filters[0].evaluate(start, end, words);
+            for (int i = 1; i < filters.length && !isDetermined(isAnd, start, end, words); i++) {
+                filters[i].evaluate(start, end, childWords);
+                if (isAnd) {
+                    for (int j = 0; j < wordSize; j++) {
+                        words[j] &= childWords[j];
+                    }
+                } else {
+                    for (int j = 0; j < wordSize; j++) {
+                        words[j] |= childWords[j];
+                    }
                 }
             }
-        } else if (getRealType() == OR) {
-            for (int i = 0; i < resultVector.length; i++) {
-                for (int j = 1; j < computeVectors.length; j++) {
-                    resultVector[i] |= computeVectors[j][i];
+        };
+    }
+
+    /**
+     * AND与OR满足交换律，子节点的表示排序后拼接
+     */
+    @Override
+    public String getPredicateKey() {
+        if (children.size() == 1) {
+            return children.get(0).getPredicateKey();
+        }
+        return getRealType() + children.stream().map(BoolExprNode::getPredicateKey).sorted()
+                .collect(Collectors.joining(", ", "(", ")"));
+    }
+
+    private static boolean isDetermined(boolean isAnd, int start, int end, long[] words) {
+        int wordSize = FilterKernel.getWordSize(start, end);
+        if (isAnd) {
+            for (int i = 0; i < wordSize; i++) {
+                if (words[i] != 0) {
+                    return false;
                 }
             }
+            return true;
+        }
+        for (int i = 0; i < wordSize - 1; i++) {
+            if (words[i] != -1L) {
+                return false;
+            }
         }
-        return resultVector;
+        int tailSize = end - start - ((wordSize - 1) << 6);
+        long tailMask = tailSize == Long.SIZE ? -1L : (1L << tailSize) - 1;
+        return words[wordSize - 1] == tailMask;
     }
 
     @JsonIgnore
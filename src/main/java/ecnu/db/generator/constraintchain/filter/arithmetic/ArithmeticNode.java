@@ -1,6 +1,7 @@
 package ecnu.db.generator.constraintchain.filter.arithmetic;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import ecnu.db.generator.constraintchain.filter.FilterCache;
 
 import java.util.List;
 
@@ -52,6 +53,38 @@ public abstract class ArithmeticNode {
      */
     public abstract double[] calculate();
 
+    /**
+     * 将表达式编译为按block计算的BlockCalculator，cache中已有计算结果时直接读取
+     *
+     * @param blockSize 每次计算的最大行数
+     * @param cache     当前batch共享的计算结果
+     * @return 编译后的表达式，持有中间结果的缓冲区，不能被多个线程同时使用
+     */
+    public BlockCalculator compile(int blockSize, FilterCache cache) {
+        double[] cachedValues = cache.getValues(this);
+        if (cachedValues != null) {
+            return (start, end, values) -> System.arraycopy(cachedValues, start, values, 0, end - start);
+        }
+        return compileExpression(blockSize, cache);
+    }
+
+    /**
+     * 将表达式编译为按block计算的BlockCalculator，编译时绑定所需的列
+     *
+     * @param blockSize 每次计算的最大行数
+     * @param cache     当前batch共享的计算结果，用于编译子节点
+     * @return 编译后的表达式
+     */
+    protected abstract BlockCalculator compileExpression(int blockSize, FilterCache cache);
+
+    /**
+     * 获取表达式的规范化表示，计算结果相同的表达式具有相同的表示
+     *
+     * @return 表达式的规范化表示
+     */
+    @JsonIgnore
+    public abstract String getExpressionKey();
+
     /**
      * 判定子树是否包含其他的表
      *
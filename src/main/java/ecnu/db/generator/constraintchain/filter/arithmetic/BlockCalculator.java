@@ -0,0 +1,16 @@
+package ecnu.db.generator.constraintchain.filter.arithmetic;
+
+/**
+ * 编译后的算术表达式，每次计算一个block内各行的值
+ */
+@FunctionalInterface
+public interface BlockCalculator {
+    /**
+     * 计算[start, end)行表达式的值，end - start不超过编译时指定的blockSize
+     *
+     * @param start  起始行
+     * @param end    结束行，不包含
+     * @param values 计算结果，第start行对应values[0]
+     */
+    void calculate(int start, int end, double[] values);
+}
@@ -1,6 +1,7 @@
 package ecnu.db.generator.constraintchain.filter.arithmetic;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import ecnu.db.generator.constraintchain.filter.FilterCache;
 import ecnu.db.schema.ColumnManager;
 import ecnu.db.utils.CommonUtils;
 import ecnu.db.utils.exception.analyze.IllegalQueryColumnNameException;
@@ -34,6 +35,16 @@ public class ColumnNode extends ArithmeticNode {
         return ColumnManager.getInstance().calculate(canonicalColumnName);
     }
 
+    @Override
+    protected BlockCalculator compileExpression(int blockSize, FilterCache cache) {
+        return ColumnManager.getInstance().getColumn(canonicalColumnName)::calculate;
+    }
+
+    @Override
+    public String getExpressionKey() {
+        return canonicalColumnName;
+    }
+
     @JsonIgnore
     @Override
     public boolean isDifferentTable(String tableName) {
@@ -1,6 +1,7 @@
 package ecnu.db.generator.constraintchain.filter.arithmetic;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import ecnu.db.generator.constraintchain.filter.FilterCache;
 
 import java.util.List;
 
@@ -44,6 +45,60 @@ public class MathNode extends ArithmeticNode {
         return leftValue;
     }
 
+    /**
+     * 左子树的结果直接写入输出缓冲区，右子树使用单独的缓冲区
+     */
+    @Override
+    protected BlockCalculator compileExpression(int blockSize, FilterCache cache) {
+        BlockCalculator left = leftNode.compile(blockSize, cache);
+        BlockCalculator right = rightNode.compile(blockSize, cache);
+        double[] rightValues = new double[blockSize];
+        return switch (type) {
+            case MUL -> (start, end, values) -> {
+                left.calculate(start, end, values);
+                right.calculate(start, end, rightValues);
+                for (int i = 0; i < end - start; i++) {
+                    values[i] *= rightValues[i];
+                }
+            };
+            case DIV -> (start, end, values) -> {
+                left.calculate(start, end, values);
+                right.calculate(start, end, rightValues);
+                for (int i = 0; i < end - start; i++) {
+                    values[i] /= rightValues[i] == 0 ? Double.MIN_NORMAL : rightValues[i];
+                }
+            };
+            case PLUS -> (start, end, values) -> {
+                left.calculate(start, end, values);
+                right.calculate(start, end, rightValues);
+                for (int i = 0; i < end - start; i++) {
+                    values[i] += rightValues[i];
+                }
+            };
+            case MINUS -> (start, end, values) -> {
+                left.calculate(start, end, values);
+                right.calculate(start, end, rightValues);
+                for (int i = 0; i < end - start; i++) {
+                    values[i] -= rightValues[i];
+                }
+            };
+            default -> throw new UnsupportedOperationException();
+        };
+    }
+
+    /**
+     * 加法与乘法满足交换律，左右子树的表示排序后拼接
+     */
+    @Override
+    public String getExpressionKey() {
+        String leftKey = leftNode.getExpressionKey();
+        String rightKey = rightNode.getExpressionKey();
+        if ((type == ArithmeticNodeType.PLUS || type == ArithmeticNodeType.MUL) && leftKey.compareTo(rightKey) > 0) {
+            return "(" + rightKey + " " + type + " " + leftKey + ")";
+        }
+        return "(" + leftKey + " " + type + " " + rightKey + ")";
+    }
+
     @JsonIgnore
     @Override
     public boolean isDifferentTable(String tableName) {
@@ -2,6 +2,7 @@ package ecnu.db.generator.constraintchain.filter.arithmetic;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonSetter;
+import ecnu.db.generator.constraintchain.filter.FilterCache;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -45,6 +46,17 @@ public class NumericNode extends ArithmeticNode {
         return value;
     }
 
+    @Override
+    public String getExpressionKey() {
+        return Float.toString(constant);
+    }
+
+    @Override
+    protected BlockCalculator compileExpression(int blockSize, FilterCache cache) {
+        double value = constant;
+        return (start, end, values) -> Arrays.fill(values, 0, end - start, value);
+    }
+
     @JsonIgnore
     @Override
     public boolean isDifferentTable(String tableName) {
@@ -2,7 +2,10 @@ package ecnu.db.generator.constraintchain.filter.operation;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import ecnu.db.generator.constraintchain.filter.BlockFilter;
 import ecnu.db.generator.constraintchain.filter.BoolExprType;
+import ecnu.db.generator.constraintchain.filter.FilterCache;
+import ecnu.db.schema.Column;
 import ecnu.db.schema.ColumnManager;
 import ecnu.db.schema.TableManager;
 import ecnu.db.utils.CommonUtils;
@@ -82,8 +85,14 @@ public class IsNullFilterOperation extends AbstractFilterOperation {
     }
 
     @Override
-    public boolean[] evaluate() {
-        return ColumnManager.getInstance().evaluate(canonicalColumnName, CompareOperator.ISNULL, null);
+    protected BlockFilter compileExpression(int blockSize, FilterCache cache) {
+        Column column = ColumnManager.getInstance().getColumn(canonicalColumnName);
+        return (start, end, words) -> column.evaluate(CompareOperator.ISNULL, Long.MIN_VALUE, start, end, words);
+    }
+
+    @Override
+    public String getPredicateKey() {
+        return canonicalColumnName + " " + CompareOperator.ISNULL + " []";
     }
 
     @Override
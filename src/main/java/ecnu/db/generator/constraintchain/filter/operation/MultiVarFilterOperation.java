@@ -2,12 +2,16 @@ package ecnu.db.generator.constraintchain.filter.operation;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import ecnu.db.generator.constraintchain.filter.BlockFilter;
 import ecnu.db.generator.constraintchain.filter.BoolExprType;
+import ecnu.db.generator.constraintchain.filter.FilterCache;
 import ecnu.db.generator.constraintchain.filter.Parameter;
 import ecnu.db.generator.constraintchain.filter.arithmetic.ArithmeticNode;
 import ecnu.db.generator.constraintchain.filter.arithmetic.ArithmeticNodeType;
+import ecnu.db.generator.constraintchain.filter.arithmetic.BlockCalculator;
 import ecnu.db.generator.constraintchain.filter.arithmetic.ColumnNode;
 import ecnu.db.schema.ColumnManager;
+import ecnu.db.schema.FilterKernel;
 import ecnu.db.schema.TableManager;
 import ecnu.db.utils.CommonUtils;
 
@@ -81,38 +85,58 @@ public class MultiVarFilterOperation extends AbstractFilterOperation {
 
     /**
      * todo 暂时不考虑NULL
-     *
-     * @return 多值表达式的计算结果
      */
     @Override
-    public boolean[] evaluate() {
-        double[] data = arithmeticTree.calculate();
-        boolean[] ret = new boolean[data.length];
+    protected BlockFilter compileExpression(int blockSize, FilterCache cache) {
+        BlockCalculator calculator = arithmeticTree.compile(blockSize, cache);
+        double[] values = new double[blockSize];
         double parameterValue = (double) parameters.getFirst().getData() / CommonUtils.SAMPLE_DOUBLE_PRECISION;
-        switch (operator) {
-            case LT -> {
-                for (int i = 0; i < ret.length; i++) {
-                    ret[i] = data[i] < parameterValue;
+        CompareOperator compareOperator = operator;
+        return (start, end, words) -> {
+            calculator.calculate(start, end, values);
+            compare(compareOperator, values, end - start, parameterValue, words);
+        };
+    }
+
+    @Override
+    public String getPredicateKey() {
+        return arithmeticTree.getExpressionKey() + " " + operator + " [" + parameters.getFirst().getData() + "]";
+    }
+
+    /**
+     * 比较前size个值与parameterValue，每64行在寄存器中拼出一个long后写入words
+     */
+    private static void compare(CompareOperator operator, double[] values, int size, double parameterValue, long[] words) {
+        int wordSize = FilterKernel.getWordSize(0, size);
+        for (int wordIndex = 0; wordIndex < wordSize; wordIndex++) {
+            int base = wordIndex << 6;
+            int bitSize = Math.min(Long.SIZE, size - base);
+            long word = 0;
+            switch (operator) {
+                case LT -> {
+                    for (int bit = 0; bit < bitSize; bit++) {
+                        word |= (values[base + bit] < parameterValue ? 1L : 0L) << bit;
+                    }
                 }
-            }
-            case LE -> {
-                for (int i = 0; i < ret.length; i++) {
-                    ret[i] = data[i] <= parameterValue;
+                case LE -> {
+                    for (int bit = 0; bit < bitSize; bit++) {
+                        word |= (values[base + bit] <= parameterValue ? 1L : 0L) << bit;
+                    }
                 }
-            }
-            case GT -> {
-                for (int i = 0; i < ret.length; i++) {
-                    ret[i] = data[i] > parameterValue;
+                case GT -> {
+                    for (int bit = 0; bit < bitSize; bit++) {
+                        word |= (values[base + bit] > parameterValue ? 1L : 0L) << bit;
+                    }
                 }
-            }
-            case GE -> {
-                for (int i = 0; i < ret.length; i++) {
-                    ret[i] = data[i] >= parameterValue;
+                case GE -> {
+                    for (int bit = 0; bit < bitSize; bit++) {
+                        word |= (values[base + bit] >= parameterValue ? 1L : 0L) << bit;
+                    }
                 }
+                default -> throw new UnsupportedOperationException();
             }
-            default -> throw new UnsupportedOperationException();
+            words[wordIndex] = word;
         }
-        return ret;
     }
 
     @Override
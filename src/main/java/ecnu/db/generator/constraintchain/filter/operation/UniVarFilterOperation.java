@@ -2,17 +2,22 @@ package ecnu.db.generator.constraintchain.filter.operation;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import ecnu.db.generator.constraintchain.filter.BlockFilter;
 import ecnu.db.generator.constraintchain.filter.BoolExprType;
+import ecnu.db.generator.constraintchain.filter.FilterCache;
 import ecnu.db.generator.constraintchain.filter.Parameter;
+import ecnu.db.schema.Column;
 import ecnu.db.schema.ColumnManager;
 import ecnu.db.schema.TableManager;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static ecnu.db.generator.constraintchain.filter.operation.CompareOperator.*;
 
@@ -114,8 +119,37 @@ public class UniVarFilterOperation extends AbstractFilterOperation {
     }
 
     @Override
-    public boolean[] evaluate() {
-        return ColumnManager.getInstance().evaluate(canonicalColumnName, operator, parameters);
+    protected BlockFilter compileExpression(int blockSize, FilterCache cache) {
+        Column column = ColumnManager.getInstance().getColumn(canonicalColumnName);
+        CompareOperator compareOperator = operator;
+        return switch (compareOperator) {
+            case ISNULL, IS_NOT_NULL -> (start, end, words) ->
+                    column.evaluate(compareOperator, Long.MIN_VALUE, start, end, words);
+            case IN, NOT_IN -> {
+                long[] values = column.retainFitting(
+                        parameters.stream().mapToLong(Parameter::getData).sorted().distinct().toArray());
+                boolean negate = compareOperator == NOT_IN;
+                yield (start, end, words) -> column.evaluate(values, negate, start, end, words);
+            }
+            default -> {
+                long value = parameters.get(0).getData();
+                yield (start, end, words) -> column.evaluate(compareOperator, value, start, end, words);
+            }
+        };
+    }
+
+    /**
+     * IN与NOT IN的参数排序去重后拼接
+     */
+    @Override
+    public String getPredicateKey() {
+        LongStream parameterData = parameters.stream().mapToLong(Parameter::getData);
+        if (operator == IN || operator == NOT_IN) {
+            parameterData = parameterData.sorted().distinct();
+        } else if (operator == ISNULL || operator == IS_NOT_NULL) {
+            parameterData = LongStream.empty();
+        }
+        return canonicalColumnName + " " + operator + " " + Arrays.toString(parameterData.toArray());
     }
 
     @Override
@@ -175,7 +175,7 @@ public class ConstraintChainFkJoinNode extends ConstraintChainNode {
         joinResultStatus = new boolean[pkJointStatus.length];
         boolean status = !type.isAnti();
         for (int i = 0; i < pkJointStatus.length; i++) {
-            joinResultStatus[i] = pkJointStatus[i][joinStatusIndex].status()[joinStatusLocation] == status;
+            joinResultStatus[i] = pkJointStatus[i][joinStatusIndex].get(joinStatusLocation) == status;
         }
     }
 }
@@ -2,11 +2,93 @@ package ecnu.db.generator.joininfo;
 
 import java.util.Arrays;
 
-public record JoinStatus(boolean[] status) {
+/**
+ * 一行数据在若干约束链上的状态，第i条链的状态对应编码的第i位，超过64条链时使用多个long编码
+ */
+public final class JoinStatus {
+    private final long[] words;
+
+    private final int size;
+
+    private final int hashCode;
+
+    public JoinStatus(boolean[] status) {
+        this(encode(status), status.length);
+    }
+
+    private JoinStatus(long[] words, int size) {
+        this.words = words;
+        this.size = size;
+        this.hashCode = 31 * Arrays.hashCode(words) + size;
+    }
+
+    /**
+     * @param code 不超过64条链的状态编码
+     * @param size 状态包含的链数
+     */
+    public static JoinStatus ofCode(long code, int size) {
+        if (size > Long.SIZE) {
+            throw new IllegalArgumentException("状态编码只能表示64条链");
+        }
+        return new JoinStatus(new long[]{code}, size);
+    }
+
+    private static long[] encode(boolean[] status) {
+        long[] words = new long[Math.max(1, (status.length + Long.SIZE - 1) >>> 6)];
+        for (int i = 0; i < status.length; i++) {
+            if (status[i]) {
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+        return words;
+    }
+
+    public boolean get(int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 状态不超过64条链时为其编码
+     */
+    public boolean isNarrow() {
+        return size <= Long.SIZE;
+    }
+
+    /**
+     * @return 前64条链的状态编码，isNarrow为true时即为完整的编码
+     */
+    public long code() {
+        return words[0];
+    }
+
+    /**
+     * @param other 链数相同的状态
+     * @return 两个状态在每条链上同时为true的状态
+     */
+    public JoinStatus and(JoinStatus other) {
+        long[] result = new long[words.length];
+        for (int i = 0; i < words.length; i++) {
+            result[i] = words[i] & other.words[i];
+        }
+        return new JoinStatus(result, size);
+    }
+
+    public boolean[] status() {
+        boolean[] status = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            status[i] = get(i);
+        }
+        return status;
+    }
+
     @Override
     public String toString() {
         return "JoinStatus{" +
-                "status=" + Arrays.toString(status) +
+                "status=" + Arrays.toString(status()) +
                 '}';
     }
 
@@ -15,11 +97,11 @@ public record JoinStatus(boolean[] status) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         JoinStatus that = (JoinStatus) o;
-        return Arrays.equals(status, that.status);
+        return size == that.size && Arrays.equals(words, that.words);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(status);
+        return hashCode;
     }
 }
@@ -0,0 +1,115 @@
+package ecnu.db.generator.joininfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 为JoinStatus分配从0开始的连续编号，不超过64条链的状态以编码为键存放在开放寻址哈希表中
+ */
+public class JoinStatusIndex {
+    private static final int EMPTY = -1;
+
+    private static final int INIT_CAPACITY = 16;
+
+    private final List<JoinStatus> statuses = new ArrayList<>();
+
+    private final Map<JoinStatus, Integer> wideStatus2Index = new HashMap<>();
+
+    private long[] codes = new long[INIT_CAPACITY];
+
+    private int[] indexes = newIndexes(INIT_CAPACITY);
+
+    private static int[] newIndexes(int capacity) {
+        int[] indexes = new int[capacity];
+        Arrays.fill(indexes, EMPTY);
+        return indexes;
+    }
+
+    private static int slot(long code, int mask) {
+        long hash = code * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    public int size() {
+        return statuses.size();
+    }
+
+    public JoinStatus get(int index) {
+        return statuses.get(index);
+    }
+
+    public List<JoinStatus> getStatuses() {
+        return statuses;
+    }
+
+    /**
+     * @return 编码对应的编号，不存在时返回-1
+     */
+    public int indexOf(long code) {
+        int mask = codes.length - 1;
+        for (int slot = slot(code, mask); ; slot = (slot + 1) & mask) {
+            int index = indexes[slot];
+            if (index == EMPTY || codes[slot] == code) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * @return 状态对应的编号，不存在时返回-1
+     */
+    public int indexOf(JoinStatus status) {
+        if (status.isNarrow()) {
+            return indexOf(status.code());
+        }
+        return wideStatus2Index.getOrDefault(status, EMPTY);
+    }
+
+    /**
+     * 加入一个状态
+     *
+     * @return 状态的编号，已存在时返回原有编号
+     */
+    public int add(JoinStatus status) {
+        int index = indexOf(status);
+        if (index != EMPTY) {
+            return index;
+        }
+        index = statuses.size();
+        statuses.add(status);
+        if (status.isNarrow()) {
+            if ((index + 1) * 2 > codes.length) {
+                resize();
+            }
+            put(status.code(), index);
+        } else {
+            wideStatus2Index.put(status, index);
+        }
+        return index;
+    }
+
+    private void put(long code, int index) {
+        int mask = codes.length - 1;
+        int slot = slot(code, mask);
+        while (indexes[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        codes[slot] = code;
+        indexes[slot] = index;
+    }
+
+    private void resize() {
+        long[] oldCodes = codes;
+        int[] oldIndexes = indexes;
+        codes = new long[oldCodes.length * 2];
+        indexes = newIndexes(oldIndexes.length * 2);
+        for (int slot = 0; slot < oldCodes.length; slot++) {
+            if (oldIndexes[slot] != EMPTY) {
+                put(oldCodes[slot], oldIndexes[slot]);
+            }
+        }
+    }
+}
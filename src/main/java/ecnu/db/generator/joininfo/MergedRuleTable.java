@@ -1,73 +1,78 @@
 package ecnu.db.generator.joininfo;
 
+import ecnu.db.utils.CounterRandom;
+
+import java.nio.LongBuffer;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * 每种主键状态到主键区间的映射，所有规则的区间连续存放在基本类型数组中。
+ * 状态内第index个主键位于最后一个beforeNum不大于index的区间，其值为index加上该区间的delta
+ */
 public class MergedRuleTable {
-    Map<JoinStatus, Rule> status2Rule = new HashMap<>();
-
-    private static class Rule {
-        long[] beforeNums;
-        long[] delta;
-        int totalSize;
-        long assignCounter;
-        long assignMaxIndexForTheBatchCounter;
-
-        public Rule(long[] beforeNums, long[] delta, int totalSize, long assignCounter, long assignMaxIndexForTheBatchCounter) {
-            this.beforeNums = beforeNums;
-            this.delta = delta;
-            this.totalSize = totalSize;
-            this.assignCounter = assignCounter;
-            this.assignMaxIndexForTheBatchCounter = assignMaxIndexForTheBatchCounter;
-        }
+    /**
+     * 状态的编号即为其规则的编号
+     */
+    private final JoinStatusIndex statusIndex = new JoinStatusIndex();
 
-        public long findDelta(long fkIndex) {
-            int left = 0;
-            int right = beforeNums.length - 1;
-            int index = 0; // 初始值为-1，表示没有找到小于等于a的元素
+    /**
+     * 第i条规则的区间位于[ruleStarts[i], ruleStarts[i + 1])
+     */
+    private final int[] ruleStarts;
 
-            while (left <= right) {
-                int mid = left + (right - left) / 2;
+    /**
+     * 每个区间之前的主键数量，同一条规则内递增
+     */
+    private final long[] beforeNums;
 
-                if (beforeNums[mid] <= fkIndex) {
-                    index = mid; // 更新结果
-                    left = mid + 1; // 继续在右侧查找更大的元素
-                } else {
-                    right = mid - 1; // 在左侧查找
-                }
-            }
+    private final long[] deltas;
 
-            return delta[index];
-        }
-    }
+    private final int[] totalSizes;
 
+    private final long[] assignCounters;
+
+    private final long[] assignMaxIndexForTheBatchCounters;
+
+    /**
+     * 首尾相接的区间合并为一个区间，展开规则时生成的大量小区间不会增加查找的代价
+     */
     public MergedRuleTable(Map<JoinStatus, List<PkRange>> mergedRules) {
+        int ruleSize = mergedRules.size();
+        int rangeSize = mergedRules.values().stream().mapToInt(List::size).sum();
+        ruleStarts = new int[ruleSize + 1];
+        long[] allBeforeNums = new long[rangeSize];
+        long[] allDeltas = new long[rangeSize];
+        totalSizes = new int[ruleSize];
+        int i = 0;
         for (Map.Entry<JoinStatus, List<PkRange>> status2PkRanges : mergedRules.entrySet()) {
+            int ruleIndex = statusIndex.add(status2PkRanges.getKey());
             int totalNum = 0;
-            long[] beforeNums = new long[status2PkRanges.getValue().size()];
-            long[] delta = new long[status2PkRanges.getValue().size()];
-            int i = 0;
+            long lastEnd = Long.MIN_VALUE;
             for (PkRange pkRange : status2PkRanges.getValue()) {
-                beforeNums[i] = totalNum;
-                delta[i] = pkRange.start() - totalNum;
+                if (i == ruleStarts[ruleIndex] || pkRange.start() != lastEnd) {
+                    allBeforeNums[i] = totalNum;
+                    allDeltas[i] = pkRange.start() - totalNum;
+                    i++;
+                }
                 totalNum += (int) (pkRange.end() - pkRange.start());
-                i++;
+                lastEnd = pkRange.end();
             }
-            status2Rule.put(status2PkRanges.getKey(), new Rule(beforeNums, delta, totalNum, 0L, 0L));
+            totalSizes[ruleIndex] = totalNum;
+            ruleStarts[ruleIndex + 1] = i;
         }
+        beforeNums = Arrays.copyOf(allBeforeNums, i);
+        deltas = Arrays.copyOf(allDeltas, i);
+        assignCounters = new long[ruleSize];
+        assignMaxIndexForTheBatchCounters = new long[ruleSize];
     }
 
     public JoinStatus[] getPkStatus(boolean withNull) {
-        JoinStatus[] pkStatuses = new JoinStatus[status2Rule.size()];
-        int i = 0;
-        for (JoinStatus joinStatus : status2Rule.keySet()) {
-            pkStatuses[i++] = joinStatus;
-        }
+        JoinStatus[] pkStatuses = statusIndex.getStatuses().toArray(new JoinStatus[0]);
         // deal with null
         if (withNull) {
-            int statusLength = new ArrayList<>(status2Rule.keySet()).getFirst().status().length;
+            int statusLength = statusIndex.get(0).size();
             JoinStatus allFalseStatus = new JoinStatus(new boolean[statusLength]);
-            if (!status2Rule.containsKey(allFalseStatus)) {
+            if (statusIndex.indexOf(allFalseStatus) < 0) {
                 JoinStatus[] copy = new JoinStatus[pkStatuses.length + 1];
                 System.arraycopy(pkStatuses, 0, copy, 0, pkStatuses.length);
                 copy[copy.length - 1] = allFalseStatus;
@@ -78,31 +83,74 @@ public class MergedRuleTable {
     }
 
     public long getStatusSize(JoinStatus status) {
-        return status2Rule.get(status).totalSize;
+        return totalSizes[statusIndex.indexOf(status)];
+    }
+
+    /**
+     * @return 每个状态对应的规则编号，不存在的状态为-1
+     */
+    public int[] getRuleIndexes(JoinStatus[] statuses) {
+        return Arrays.stream(statuses).mapToInt(statusIndex::indexOf).toArray();
     }
 
     public void refreshRuleCounter() {
-        status2Rule.values().forEach(rule -> {
-            rule.assignCounter += rule.assignMaxIndexForTheBatchCounter;
-            rule.assignMaxIndexForTheBatchCounter = 0;
-        });
+        for (int ruleIndex = 0; ruleIndex < assignCounters.length; ruleIndex++) {
+            assignCounters[ruleIndex] += assignMaxIndexForTheBatchCounters[ruleIndex];
+            assignMaxIndexForTheBatchCounters[ruleIndex] = 0;
+        }
     }
 
-    public long getKey(JoinStatus joinStatus, long index) {
-        Rule rule = status2Rule.get(joinStatus);
-        if (rule == null) {
-            return Long.MIN_VALUE;
+    /**
+     * 记录本batch分配给joinStatus的最大下标，下一个batch刷新计数器后从该下标之后继续分配。
+     * 不同状态的记录互不影响，同一个状态不能并发记录
+     */
+    public void updateAssignedIndex(JoinStatus joinStatus, long index) {
+        int ruleIndex = statusIndex.indexOf(joinStatus);
+        if (ruleIndex < 0 || index < 0) {
+            return;
         }
-        if (index < 0) {
-            index = ThreadLocalRandom.current().nextInt(rule.totalSize);
-        } else {
-            if (rule.assignMaxIndexForTheBatchCounter < index) {
-                rule.assignMaxIndexForTheBatchCounter = index;
-            }
-            index += rule.assignCounter;
+        if (assignMaxIndexForTheBatchCounters[ruleIndex] < index) {
+            assignMaxIndexForTheBatchCounters[ruleIndex] = index;
         }
-        return index + rule.findDelta(index);
     }
 
+    /**
+     * 批量计算[start, end)行的主键，可以被多个线程同时调用。下标不小于0时需要通过updateAssignedIndex记录
+     *
+     * @param pkStatuses   每行的主键状态
+     * @param ruleIndexes  每个主键状态对应的规则编号，由getRuleIndexes得到
+     * @param indexesToKey 输入每行在本batch内分配的下标，小于0时随机选择主键，输出每行的主键
+     * @param random       随机选择主键时，第rowId行使用random的第counterStart + rowId个随机数
+     */
+    public void getKeys(int[] pkStatuses, int[] ruleIndexes, LongBuffer indexesToKey, int start, int end,
+                        CounterRandom random, long counterStart) {
+        for (int rowId = start; rowId < end; rowId++) {
+            int ruleIndex = ruleIndexes[pkStatuses[rowId]];
+            if (ruleIndex < 0) {
+                indexesToKey.put(rowId, Long.MIN_VALUE);
+                continue;
+            }
+            long index = indexesToKey.get(rowId);
+            if (index < 0) {
+                index = random.nextInt(counterStart + rowId, totalSizes[ruleIndex]);
+            } else {
+                index += assignCounters[ruleIndex];
+            }
+            indexesToKey.put(rowId, index + findDelta(ruleIndex, index));
+        }
+    }
 
+    /**
+     * 无分支的二分查找，找到最后一个beforeNum不大于index的区间，不存在时使用第一个区间
+     */
+    private long findDelta(int ruleIndex, long index) {
+        int base = ruleStarts[ruleIndex];
+        int size = ruleStarts[ruleIndex + 1] - base;
+        while (size > 1) {
+            int half = size >>> 1;
+            base = beforeNums[base + half] <= index ? base + half : base;
+            size -= half;
+        }
+        return deltas[base];
+    }
 }
@@ -35,8 +35,7 @@ public class RuleTable {
     public MergedRuleTable mergeRules(int[] location) {
         Map<JoinStatus, List<PkRange>> mergedRules = new HashMap<>();
         for (Map.Entry<JoinStatus, List<PkRange>> joinStatusListEntry : rules.entrySet()) {
-            boolean[] joinStatus = joinStatusListEntry.getKey().status();
-            JoinStatus pkStatus = FkGenerator.chooseCorrespondingStatus(joinStatus, location);
+            JoinStatus pkStatus = FkGenerator.chooseCorrespondingStatus(joinStatusListEntry.getKey(), location);
             mergedRules.computeIfAbsent(pkStatus, v -> new ArrayList<>());
             mergedRules.get(pkStatus).addAll(joinStatusListEntry.getValue());
         }
@@ -1,8 +1,8 @@
 package ecnu.db.generator.joininfo;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class RuleTableManager {
     private static final RuleTableManager INSTANCE = new RuleTableManager();
@@ -19,17 +19,25 @@ public class RuleTableManager {
         return ruleTableMap.get(colName).mergeRules(location);
     }
 
-    public Map<JoinStatus, AtomicLong> addRuleTable(String tableName, Map<JoinStatus, Long> pkHistogram, long indexStart) {
-        ruleTableMap.computeIfAbsent(tableName, v -> new RuleTable());
-        Map<JoinStatus, AtomicLong> pkStatus2Index = new HashMap<>();
+    /**
+     * 按照状态的顺序为每种状态分配连续的主键区间
+     *
+     * @param tableName   表名
+     * @param statuses    主键的所有状态
+     * @param statusSizes 每种状态的主键数量
+     * @param indexStart  第一个主键的值
+     * @return 每种状态的第一个主键
+     */
+    public long[] addRuleTable(String tableName, List<JoinStatus> statuses, long[] statusSizes, long indexStart) {
+        RuleTable ruleTable = ruleTableMap.computeIfAbsent(tableName, v -> new RuleTable());
+        long[] statusStarts = new long[statuses.size()];
         long accumulativeIndex = indexStart;
-        for (Map.Entry<JoinStatus, Long> pk2Size : pkHistogram.entrySet()) {
-            long size = pk2Size.getValue();
-            ruleTableMap.get(tableName).addRule(pk2Size.getKey(), accumulativeIndex, accumulativeIndex + size);
-            pkStatus2Index.put(pk2Size.getKey(), new AtomicLong(accumulativeIndex));
-            accumulativeIndex += size;
+        for (int i = 0; i < statusStarts.length; i++) {
+            ruleTable.addRule(statuses.get(i), accumulativeIndex, accumulativeIndex + statusSizes[i]);
+            statusStarts[i] = accumulativeIndex;
+            accumulativeIndex += statusSizes[i];
         }
-        return pkStatus2Index;
+        return statusStarts;
     }
 
 }
@@ -2,15 +2,15 @@ package ecnu.db.schema;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
-import ecnu.db.generator.constraintchain.filter.Parameter;
+import ecnu.db.generator.RowEncoder;
 import ecnu.db.generator.constraintchain.filter.operation.CompareOperator;
 import ecnu.db.utils.CommonUtils;
+import ecnu.db.utils.CounterRandom;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.HashSet;
-import java.util.List;
 
 import static ecnu.db.utils.CommonUtils.DECIMAL_DIVIDE_SCALE;
 
@@ -19,6 +19,10 @@ import static ecnu.db.utils.CommonUtils.DECIMAL_DIVIDE_SCALE;
  */
 @JsonPropertyOrder({"columnType", "nullPercentage", "specialValue", "min", "range", "minLength", "rangeLength", "originalType"})
 public class Column {
+    /**
+     * 预先格式化的日期数量上限，超出时直接按天数计算
+     */
+    private static final int DATE_CACHE_LIMIT = 1 << 16;
     private ColumnType columnType;
     private long min;
     private String originalType;
@@ -29,10 +33,25 @@ public class Column {
     private int maxLength;
     @JsonIgnore
     private BigDecimal decimalPre;
+    /**
+     * decimalPre的unscaled value，其scale为DECIMAL_DIVIDE_SCALE
+     */
+    @JsonIgnore
+    private long decimalPreUnscaled;
+    /**
+     * DECIMAL列的小数位数，specialValue不是10的幂时为-1
+     */
+    @JsonIgnore
+    private int decimalScale;
+    /**
+     * DATE列[min, min+range]内每一天格式化后的字节
+     */
+    @JsonIgnore
+    private byte[][] dateCache;
     @JsonIgnore
     private StringTemplate stringTemplate;
     @JsonIgnore
-    private long[] columnData;
+    private ColumnBuffer columnData;
     @JsonIgnore
     private Distribution distribution;
 
@@ -60,6 +79,11 @@ public class Column {
         distribution = new Distribution(nullPercentage, range);
         if (columnType == ColumnType.VARCHAR) {
             stringTemplate = new StringTemplate(avgLength, maxLength, specialValue, range + 20);
+        } else if (columnType == ColumnType.DATE && range <= DATE_CACHE_LIMIT) {
+            dateCache = new byte[(int) range + 1][];
+            for (int i = 0; i < dateCache.length; i++) {
+                dateCache[i] = transferDataToValue(i).getBytes(StandardCharsets.US_ASCII);
+            }
         }
     }
 
@@ -84,115 +108,83 @@ public class Column {
     }
 
 
-    public void prepareTupleData(int size) {
-        columnData = distribution.prepareTupleData(size);
+    /**
+     * @param rowPermutation 所有属性列共用的行排列，为null时按照CDF的顺序排列
+     * @param random         列的随机数流
+     * @param batchStart     本批第一行在表中的位置
+     */
+    public void prepareTupleData(int size, int[] rowPermutation, CounterRandom random, long batchStart) {
+        columnData = distribution.prepareTupleData(size, rowPermutation, random, batchStart);
     }
 
 
     /**
-     * 无运算比较，针对传入的参数，对于单操作符进行比较
+     * 比较[start, end)行的数据与value
      *
-     * @param operator   运算操作符
-     * @param parameters 待比较的参数
-     * @return 运算结果
+     * @param operator 运算操作符，ISNULL与IS_NOT_NULL忽略value
+     * @param value    待比较的参数
+     * @param start    起始行
+     * @param end      结束行，不包含
+     * @param words    运算结果，第start行对应words[0]的最低位
      */
-    public boolean[] evaluate(CompareOperator operator, List<Parameter> parameters) {
-        long value;
-        if (operator == CompareOperator.ISNULL) {
-            value = Long.MIN_VALUE;
-        } else {
-            value = parameters.get(0).getData();
-        }
-        boolean[] ret = new boolean[columnData.length];
-        switch (operator) {
-            case ISNULL -> {
-                for (int i = 0; i < columnData.length; i++) {
-                    ret[i] = columnData[i] == Long.MIN_VALUE;
-                }
-            }
-            case IS_NOT_NULL -> {
-                for (int i = 0; i < columnData.length; i++) {
-                    ret[i] = columnData[i] != Long.MIN_VALUE;
-                }
-            }
-            case EQ, LIKE -> {
-                for (int i = 0; i < columnData.length; i++) {
-                    ret[i] = columnData[i] != Long.MIN_VALUE && columnData[i] == value;
-                }
-            }
-            case NE, NOT_LIKE -> {
-                for (int i = 0; i < columnData.length; i++) {
-                    ret[i] = columnData[i] != Long.MIN_VALUE && columnData[i] != value;
-                }
-            }
-            case LT -> {
-                for (int i = 0; i < columnData.length; i++) {
-                    ret[i] = columnData[i] != Long.MIN_VALUE && columnData[i] < value;
-                }
-            }
-            case LE -> {
-                for (int i = 0; i < columnData.length; i++) {
-                    ret[i] = columnData[i] != Long.MIN_VALUE && columnData[i] <= value;
-                }
-            }
-            case GT -> {
-                for (int i = 0; i < columnData.length; i++) {
-                    ret[i] = columnData[i] != Long.MIN_VALUE && columnData[i] > value;
-                }
-            }
-            case GE -> {
-                for (int i = 0; i < columnData.length; i++) {
-                    ret[i] = columnData[i] != Long.MIN_VALUE && columnData[i] >= value;
-                }
-            }
-            case IN -> {
-                HashSet<Long> parameterData = new HashSet<>();
-                for (Parameter parameter : parameters) {
-                    parameterData.add(parameter.getData());
-                }
-                for (int i = 0; i < columnData.length; i++) {
-                    ret[i] = columnData[i] != Long.MIN_VALUE && parameterData.contains(columnData[i]);
-                }
-            }
-            case NOT_IN -> {
-                HashSet<Long> parameterData = new HashSet<>();
-                for (Parameter parameter : parameters) {
-                    parameterData.add(parameter.getData());
-                }
-                for (int i = 0; i < columnData.length; i++) {
-                    ret[i] = columnData[i] != Long.MIN_VALUE && !parameterData.contains(columnData[i]);
-                }
-            }
-            default -> throw new UnsupportedOperationException();
-        }
-        return ret;
+    public void evaluate(CompareOperator operator, long value, int start, int end, long[] words) {
+        FilterKernel.compare(operator, columnData, start, end, value, words);
+    }
+
+    /**
+     * 判断[start, end)行的数据是否在values中
+     *
+     * @param values 排好序且去重的参数，只包含retainFitting保留的值
+     * @param negate 为true时计算NOT IN
+     * @param start  起始行
+     * @param end    结束行，不包含
+     * @param words  运算结果，第start行对应words[0]的最低位
+     */
+    public void evaluate(long[] values, boolean negate, int start, int end, long[] words) {
+        FilterKernel.in(columnData, start, end, values, negate, words);
+    }
+
+    /**
+     * @param values IN的参数
+     * @return 可以存放在当前batch的列数据类型中的参数，其余参数不会与任何行相等
+     */
+    public long[] retainFitting(long[] values) {
+        return FilterKernel.retainFitting(columnData, values);
     }
 
     /**
      * @return 返回用于multi-var计算的一个double数组
      */
     public double[] calculate() {
-        //lazy生成computeData
-        double[] ret = new double[columnData.length];
+        double[] ret = new double[columnData.size()];
+        calculate(0, columnData.size(), ret);
+        return ret;
+    }
+
+    /**
+     * 计算[start, end)行用于multi-var计算的值，null值按照Long.MIN_VALUE计算
+     *
+     * @param values 计算结果，第start行对应values[0]
+     */
+    public void calculate(int start, int end, double[] values) {
         switch (columnType) {
             case DATE, DATETIME -> {
-                for (int i = 0; i < columnData.length; i++) {
-                    ret[i] = (columnData[i] + min);
+                for (int i = start; i < end; i++) {
+                    values[i - start] = (columnData.get(i) + min);
                 }
             }
             case DECIMAL -> {
-                for (int i = 0; i < columnData.length; i++) {
-                    ret[i] = ((double) (columnData[i] + min)) / specialValue;
+                for (int i = start; i < end; i++) {
+                    values[i - start] = ((double) (columnData.get(i) + min)) / specialValue;
                 }
             }
             case INTEGER -> {
-                for (int i = 0; i < columnData.length; i++) {
-                    ret[i] = (double) (specialValue * columnData[i]) + min;
+                for (int i = start; i < end; i++) {
+                    values[i - start] = (double) (specialValue * columnData.get(i)) + min;
                 }
             }
             default -> throw new IllegalStateException("Unexpected value: " + columnType);
         }
-        return ret;
     }
 
     public int getAvgLength() {
@@ -225,16 +217,66 @@ public class Column {
         };
     }
 
+    /**
+     * 将属性值直接写入字节缓冲区
+     *
+     * @param data    属性值在列内部的表示
+     * @param encoder 输出的缓冲区
+     */
+    public void output(long data, RowEncoder encoder) {
+        if (data == Long.MIN_VALUE) {
+            encoder.appendNull();
+            return;
+        }
+        switch (columnType) {
+            case INTEGER -> encoder.appendLong((specialValue * data) + min);
+            case VARCHAR -> stringTemplate.writeParameterValue(data, encoder);
+            case DECIMAL -> outputDecimal(data + min, encoder);
+            case DATE -> {
+                if (dateCache != null && data >= 0 && data < dateCache.length) {
+                    encoder.appendBytes(dateCache[(int) data]);
+                } else {
+                    long epochSecond = (data + min) * 24 * 60 * 60;
+                    encoder.appendDate(Math.floorDiv(CommonUtils.toLocalEpochSecond(epochSecond), 24 * 60 * 60));
+                }
+            }
+            case DATETIME -> encoder.appendDateTime(CommonUtils.toLocalEpochSecond(data + min));
+            default -> encoder.appendAscii(transferDataToValue(data));
+        }
+    }
+
+    /**
+     * 与transferDataToValue一致，输出value * decimalPre，保留DECIMAL_DIVIDE_SCALE位小数
+     */
+    private void outputDecimal(long value, RowEncoder encoder) {
+        long high = Math.multiplyHigh(value, decimalPreUnscaled);
+        long unscaledValue = value * decimalPreUnscaled;
+        if ((high == 0 && unscaledValue >= 0) || (high == -1 && unscaledValue < 0)) {
+            encoder.appendFixedPoint(unscaledValue, DECIMAL_DIVIDE_SCALE);
+        } else {
+            encoder.appendAscii(BigDecimal.valueOf(value).multiply(decimalPre).toPlainString());
+        }
+    }
+
+    /**
+     * VARCHAR列根据NDV准备取值的字典或缓存
+     */
+    public void prepareValueCache(int dictionaryThreshold, int cacheSize) {
+        if (columnType == ColumnType.VARCHAR) {
+            stringTemplate.prepareValueCache(range + 20, dictionaryThreshold, cacheSize);
+        }
+    }
+
     public void addSubStringIndex(long dataId) {
         stringTemplate.addSubStringIndex(dataId);
     }
 
-    public void setColumnData(long[] columnData) {
+    public void setColumnData(ColumnBuffer columnData) {
         this.columnData = columnData;
     }
 
-    public String output(int index) {
-        return transferDataToValue(columnData[index]);
+    public ColumnBuffer getColumnData() {
+        return columnData;
     }
 
     public long getMin() {
@@ -252,10 +294,27 @@ public class Column {
     public void setSpecialValue(long specialValue) {
         if (columnType == ColumnType.DECIMAL) {
             decimalPre = BigDecimal.ONE.divide(BigDecimal.valueOf(specialValue), DECIMAL_DIVIDE_SCALE, RoundingMode.HALF_UP);
+            decimalPreUnscaled = decimalPre.unscaledValue().longValueExact();
+            decimalScale = 0;
+            long remain = specialValue;
+            while (remain > 1 && remain % 10 == 0) {
+                remain /= 10;
+                decimalScale++;
+            }
+            if (remain != 1) {
+                decimalScale = -1;
+            }
         }
         this.specialValue = specialValue;
     }
 
+    /**
+     * @return DECIMAL列的小数位数，specialValue为10的小数位数次方，不是10的幂时返回-1
+     */
+    public int getDecimalScale() {
+        return decimalScale;
+    }
+
 
     public StringTemplate getStringTemplate() {
         return stringTemplate;
@@ -0,0 +1,296 @@
+package ecnu.db.schema;
+
+import ecnu.db.utils.BatchArena;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * 一个batch内一列属性值的存储。按照列的取值范围选择byte、short、int或long的堆外缓冲区，
+ * null值记录在单独的堆外bitmap中，按行读取时null值返回Long.MIN_VALUE。
+ * 输出完成后通过release将缓冲区归还给BatchArena，之后的batch复用
+ */
+public final class ColumnBuffer {
+    enum Width {
+        BYTE(Byte.MIN_VALUE, Byte.MAX_VALUE),
+        SHORT(Short.MIN_VALUE, Short.MAX_VALUE),
+        INT(Integer.MIN_VALUE, Integer.MAX_VALUE),
+        LONG(Long.MIN_VALUE, Long.MAX_VALUE);
+
+        private final long minValue;
+
+        private final long maxValue;
+
+        Width(long minValue, long maxValue) {
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+        }
+
+        /**
+         * @return 可以存放[minValue, maxValue]的最窄的类型
+         */
+        static Width of(long minValue, long maxValue) {
+            for (Width width : values()) {
+                if (width.fits(minValue) && width.fits(maxValue)) {
+                    return width;
+                }
+            }
+            return LONG;
+        }
+
+        boolean fits(long value) {
+            return value >= minValue && value <= maxValue;
+        }
+    }
+
+    private final Width width;
+
+    private final int size;
+
+    private final ByteBuffer bytes;
+
+    private final ShortBuffer shorts;
+
+    private final IntBuffer ints;
+
+    private final LongBuffer longs;
+
+    /**
+     * 第i行为null时第i位为1
+     */
+    private final LongBuffer nullWords;
+
+    private boolean hasNull;
+
+    /**
+     * 数据缓冲区从BatchArena中取出，内容未清零，所有行都不为null
+     *
+     * @param width 数据的类型
+     * @param size  batch的行数
+     */
+    ColumnBuffer(Width width, int size) {
+        this.width = width;
+        this.size = size;
+        BatchArena arena = BatchArena.getInstance();
+        bytes = width == Width.BYTE ? arena.allocateByteBuffer(size) : null;
+        shorts = width == Width.SHORT ? arena.allocateShortBuffer(size) : null;
+        ints = width == Width.INT ? arena.allocateIntBuffer(size) : null;
+        longs = width == Width.LONG ? arena.allocateLongBuffer(size) : null;
+        nullWords = arena.allocateBitmapBuffer(size);
+        for (int wordIndex = 0; wordIndex < nullWords.capacity(); wordIndex++) {
+            nullWords.put(wordIndex, 0L);
+        }
+    }
+
+    /**
+     * @param data 列内部表示的值，Long.MIN_VALUE表示null
+     */
+    public static ColumnBuffer of(long[] data) {
+        long minValue = 0;
+        long maxValue = 0;
+        for (long value : data) {
+            if (value != Long.MIN_VALUE) {
+                minValue = Math.min(minValue, value);
+                maxValue = Math.max(maxValue, value);
+            }
+        }
+        ColumnBuffer buffer = new ColumnBuffer(Width.of(minValue, maxValue), data.length);
+        for (int rowId = 0; rowId < data.length; rowId++) {
+            if (data[rowId] == Long.MIN_VALUE) {
+                buffer.setNull(rowId);
+            } else {
+                buffer.set(rowId, data[rowId]);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * 将缓冲区归还给BatchArena，调用后不能再读取
+     */
+    public void release() {
+        BatchArena arena = BatchArena.getInstance();
+        switch (width) {
+            case BYTE -> arena.free(bytes);
+            case SHORT -> arena.free(shorts);
+            case INT -> arena.free(ints);
+            case LONG -> arena.free(longs);
+        }
+        arena.freeBitmapBuffer(nullWords);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 缓冲区占用的字节数
+     */
+    public long getMemorySize() {
+        return (long) size * switch (width) {
+            case BYTE -> Byte.BYTES;
+            case SHORT -> Short.BYTES;
+            case INT -> Integer.BYTES;
+            case LONG -> Long.BYTES;
+        } + (long) nullWords.capacity() * Long.BYTES;
+    }
+
+    /**
+     * @return 第rowId行在列内部表示的值，null值返回Long.MIN_VALUE
+     */
+    public long get(int rowId) {
+        return isNull(rowId) ? Long.MIN_VALUE : getRaw(rowId);
+    }
+
+    public boolean isNull(int rowId) {
+        return (nullWords.get(rowId >>> 6) & (1L << rowId)) != 0;
+    }
+
+    /**
+     * 读取第rowId行存放的值，不检查null
+     */
+    long getRaw(int rowId) {
+        return switch (width) {
+            case BYTE -> bytes.get(rowId);
+            case SHORT -> shorts.get(rowId);
+            case INT -> ints.get(rowId);
+            case LONG -> longs.get(rowId);
+        };
+    }
+
+    void set(int rowId, long value) {
+        switch (width) {
+            case BYTE -> bytes.put(rowId, (byte) value);
+            case SHORT -> shorts.put(rowId, (short) value);
+            case INT -> ints.put(rowId, (int) value);
+            case LONG -> longs.put(rowId, value);
+        }
+    }
+
+    /**
+     * 将[start, end)行设置为value
+     */
+    void fill(int start, int end, long value) {
+        switch (width) {
+            case BYTE -> {
+                for (int rowId = start; rowId < end; rowId++) {
+                    bytes.put(rowId, (byte) value);
+                }
+            }
+            case SHORT -> {
+                for (int rowId = start; rowId < end; rowId++) {
+                    shorts.put(rowId, (short) value);
+                }
+            }
+            case INT -> {
+                for (int rowId = start; rowId < end; rowId++) {
+                    ints.put(rowId, (int) value);
+                }
+            }
+            case LONG -> {
+                for (int rowId = start; rowId < end; rowId++) {
+                    longs.put(rowId, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * null行存放的值为0，filter的比较结果在之后与null bitmap合并
+     */
+    void setNull(int rowId) {
+        set(rowId, 0);
+        nullWords.put(rowId >>> 6, nullWords.get(rowId >>> 6) | 1L << rowId);
+        hasNull = true;
+    }
+
+    void fillNull(int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        fill(start, end, 0);
+        int startWord = start >>> 6;
+        int endWord = (end - 1) >>> 6;
+        long startMask = -1L << start;
+        long endMask = -1L >>> -end;
+        if (startWord == endWord) {
+            nullWords.put(startWord, nullWords.get(startWord) | startMask & endMask);
+        } else {
+            nullWords.put(startWord, nullWords.get(startWord) | startMask);
+            for (int wordIndex = startWord + 1; wordIndex < endWord; wordIndex++) {
+                nullWords.put(wordIndex, -1L);
+            }
+            nullWords.put(endWord, nullWords.get(endWord) | endMask);
+        }
+        hasNull = true;
+    }
+
+    Width getWidth() {
+        return width;
+    }
+
+    /**
+     * 将[start, end)行存放的值复制到dst的开头，供SIMD kernel在堆内读取，不检查null
+     */
+    void copyBytes(int start, int end, byte[] dst) {
+        bytes.get(start, dst, 0, end - start);
+    }
+
+    void copyShorts(int start, int end, short[] dst) {
+        shorts.get(start, dst, 0, end - start);
+    }
+
+    void copyInts(int start, int end, int[] dst) {
+        ints.get(start, dst, 0, end - start);
+    }
+
+    void copyLongs(int start, int end, long[] dst) {
+        longs.get(start, dst, 0, end - start);
+    }
+
+    boolean hasNull() {
+        return hasNull;
+    }
+
+    /**
+     * 将[start, end)行的null bitmap写入words，第start行对应words[0]的最低位
+     *
+     * @param negate 为true时写入非null的bitmap
+     */
+    void getNullWords(int start, int end, boolean negate, long[] words) {
+        int wordSize = FilterKernel.getWordSize(start, end);
+        int firstWord = start >>> 6;
+        int shift = start & 63;
+        for (int wordIndex = 0; wordIndex < wordSize; wordIndex++) {
+            long word = nullWords.get(firstWord + wordIndex) >>> shift;
+            if (shift != 0 && firstWord + wordIndex + 1 < nullWords.capacity()) {
+                word |= nullWords.get(firstWord + wordIndex + 1) << -shift;
+            }
+            words[wordIndex] = negate ? ~word : word;
+        }
+        if (wordSize > 0) {
+            words[wordSize - 1] &= -1L >>> -(end - start);
+        }
+    }
+
+    /**
+     * 清除words中null行的结果，第start行对应words[0]的最低位
+     */
+    void clearNulls(int start, int end, long[] words) {
+        if (!hasNull) {
+            return;
+        }
+        int wordSize = FilterKernel.getWordSize(start, end);
+        int firstWord = start >>> 6;
+        int shift = start & 63;
+        for (int wordIndex = 0; wordIndex < wordSize; wordIndex++) {
+            long word = nullWords.get(firstWord + wordIndex) >>> shift;
+            if (shift != 0 && firstWord + wordIndex + 1 < nullWords.capacity()) {
+                word |= nullWords.get(firstWord + wordIndex + 1) << -shift;
+            }
+            words[wordIndex] &= ~word;
+        }
+    }
+}
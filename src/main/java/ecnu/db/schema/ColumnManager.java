@@ -6,7 +6,9 @@ import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import ecnu.db.LanguageManager;
 import ecnu.db.generator.constraintchain.filter.Parameter;
 import ecnu.db.generator.constraintchain.filter.operation.CompareOperator;
+import ecnu.db.utils.BatchArena;
 import ecnu.db.utils.CommonUtils;
+import ecnu.db.utils.CounterRandom;
 import ecnu.db.utils.exception.TouchstoneException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,7 +35,30 @@ public class ColumnManager {
 
     private final List<Column> attributeColumns = new LinkedList<>();
 
+    /**
+     * 每个属性列的随机数流，与attributeColumns一一对应
+     */
+    private final List<CounterRandom> attributeRandoms = new ArrayList<>();
+
+    /**
+     * NDV不超过该值的VARCHAR列预先生成所有取值
+     */
+    private int varcharDictionaryThreshold = 4096;
+
+    /**
+     * 中等基数VARCHAR列的缓存槽位数
+     */
+    private int varcharCacheSize = 16384;
+
+    /**
+     * 不为null时每个batch内的所有属性列按照同一个随机的行排列写入，列之间逐行的对应关系不变，
+     * 属性值不再按照CDF的顺序聚集在batch内的固定位置。排列的密钥为该流以batch起始行为计数器的随机数
+     */
+    private CounterRandom rowPermutationRandom;
+
     private File distributionInfoPath;
+
+    private int batchSize;
     private final Logger logger = LoggerFactory.getLogger(ColumnManager.class);
     private final ResourceBundle rb = LanguageManager.getInstance().getRb();
 
@@ -77,16 +102,17 @@ public class ColumnManager {
         }
     }
 
-    public String[] generateAttRows(int range) {
-        String[] result = new String[range];
-        IntStream.range(0, range).parallel().forEach(rowId -> {
-            String[] buffers = new String[attributeColumns.size()];
-            for (int i = 0; i < attributeColumns.size(); i++) {
-                buffers[i] = attributeColumns.get(i).output(rowId);
-            }
-            result[rowId] = String.join(",", buffers);
-        });
-        return result;
+    public Column[] getAttributeColumns() {
+        return attributeColumns.toArray(new Column[0]);
+    }
+
+    /**
+     * 获取当前batch所有属性列的数据，数组在调用release之前不会被之后的batch复用，因此可以异步输出
+     *
+     * @return 属性列的数据，顺序与cacheAttributeColumn传入的列一致
+     */
+    public ColumnBuffer[] getAttributeColumnData() {
+        return attributeColumns.stream().map(Column::getColumnData).toArray(ColumnBuffer[]::new);
     }
 
     public long getMin(String columnName) {
@@ -96,8 +122,11 @@ public class ColumnManager {
         return columns.get(columnName).getMin();
     }
 
-    public boolean[] evaluate(String columnName, CompareOperator operator, List<Parameter> parameters) {
-        return columns.get(columnName).evaluate(operator, parameters);
+    /**
+     * @return 最近一次prepareGeneration生成的行数
+     */
+    public int getBatchSize() {
+        return batchSize;
     }
 
     public BigDecimal getNullPercentage(String columnName) {
@@ -296,12 +325,41 @@ public class ColumnManager {
         }
     }
 
+    public void setVarcharValueCache(int dictionaryThreshold, int cacheSize) {
+        this.varcharDictionaryThreshold = dictionaryThreshold;
+        this.varcharCacheSize = cacheSize;
+    }
+
     public void cacheAttributeColumn(Collection<String> columnNames) {
         attributeColumns.clear();
         attributeColumns.addAll(columnNames.stream().map(this::getColumn).toList());
+        attributeRandoms.clear();
+        attributeRandoms.addAll(columnNames.stream().map(CounterRandom::of).toList());
+        attributeColumns.forEach(column -> column.prepareValueCache(varcharDictionaryThreshold, varcharCacheSize));
     }
 
-    public void prepareGeneration(int size) {
-        attributeColumns.stream().parallel().forEach(column -> column.prepareTupleData(size));
+    /**
+     * @param rowPermutationRandom 行排列的随机数流，为null时不打乱行的顺序
+     */
+    public void setRowPermutationRandom(CounterRandom rowPermutationRandom) {
+        this.rowPermutationRandom = rowPermutationRandom;
+    }
+
+    /**
+     * 生成所有属性列的一个batch
+     *
+     * @param batchStart 本批第一行在表中的位置，作为随机数的计数器，相同的位置总是生成相同的数据
+     * @param size       本批的行数
+     */
+    public void prepareGeneration(long batchStart, int size) {
+        batchSize = size;
+        int[] rowPermutation = rowPermutationRandom == null ? null :
+                RowPermutation.generate(size, rowPermutationRandom.nextLong(batchStart));
+        Column[] columns = attributeColumns.toArray(new Column[0]);
+        IntStream.range(0, columns.length).parallel().forEach(columnIndex ->
+                columns[columnIndex].prepareTupleData(size, rowPermutation, attributeRandoms.get(columnIndex), batchStart));
+        if (rowPermutation != null) {
+            BatchArena.getInstance().free(rowPermutation);
+        }
     }
 }
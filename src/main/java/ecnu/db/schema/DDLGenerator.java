@@ -1,6 +1,11 @@
 package ecnu.db.schema;
 
+import ecnu.db.generator.OutputCodec;
+import ecnu.db.generator.OutputFormat;
+import ecnu.db.generator.PgBinaryBatchEncoder;
 import ecnu.db.utils.CommonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
 import java.io.IOException;
@@ -11,12 +16,17 @@ import java.util.concurrent.Callable;
 
 @CommandLine.Command(name = "create", description = "generate the ddl sql for the new database")
 public class DDLGenerator implements Callable<Integer> {
+    private static final Logger logger = LoggerFactory.getLogger(DDLGenerator.class);
     @CommandLine.Option(names = {"-c", "--config_path"}, required = true, description = "the config path for creating ddl")
     private String configPath;
     @CommandLine.Option(names = {"-d", "--database"}, defaultValue = "demo", description = "the database name")
     private String dataBase;
     @CommandLine.Option(names = {"-o", "--output"}, defaultValue = "./ddl", description = "the output path for dll")
     private String outputPath;
+    @CommandLine.Option(names = {"--format"}, defaultValue = "CSV", description = "format of the data files: ${COMPLETION-CANDIDATES}, default value: '${DEFAULT-VALUE}'")
+    private OutputFormat format;
+    @CommandLine.Option(names = {"--codec"}, defaultValue = "NONE", description = "compression of the data files: ${COMPLETION-CANDIDATES}, default value: '${DEFAULT-VALUE}'")
+    private OutputCodec codec;
 
     public void init() throws IOException {
         TableManager.getInstance().setResultDir(configPath);
@@ -56,15 +66,49 @@ public class DDLGenerator implements Callable<Integer> {
     }
 
     public void importData() throws IOException {
+        if (format == OutputFormat.ARROW) {
+            logger.warn("Arrow files cannot be imported by psql, skip generating {}", this.importData);
+            return;
+        }
         StringBuilder importData = new StringBuilder("\\c " + dataBase + ";\n");
         for (Map.Entry<String, Table> tableName2Schema : TableManager.getInstance().getSchemas().entrySet()) {
             String tableName = tableName2Schema.getKey();
-            String inData = "\\Copy " + tableName.split("\\.")[1] + " FROM PROGRAM" + "'" + "cat ./data/public." + tableName.split("\\.")[1] + "-0-*" + "' DELIMITER ',' " + "NULL '\\N';\n";
+            String dataFiles = "./data/public." + tableName.split("\\.")[1] + "-0-*" + format.getSuffix() + codec.getSuffix();
+            String loadCommand = codec == OutputCodec.NONE ? "cat " + dataFiles : "cat " + dataFiles + " | " + codec.getDecompressCommand();
+            String copyOptions;
+            if (format == OutputFormat.PG_BINARY) {
+                loadCommand = getBinaryLoadCommand(loadCommand);
+                copyOptions = "WITH (FORMAT binary)";
+            } else {
+                copyOptions = "DELIMITER ',' " + "NULL '\\N'";
+            }
+            String inData = "\\Copy " + tableName.split("\\.")[1] + " FROM PROGRAM" + "'" + loadCommand + "' " + copyOptions + ";\n";
             importData.append(inData);
         }
         CommonUtils.writeFile(this.importData, importData.toString());
     }
 
+    /**
+     * binary数据文件只包含行，合并为一个COPY数据流时由printf在首尾各写一次文件头和文件尾
+     *
+     * @param loadData 按顺序输出所有数据文件的命令
+     */
+    static String getBinaryLoadCommand(String loadData) {
+        return "printf \"" + toOctalEscapes(PgBinaryBatchEncoder.getHeader()) + "\"; " + loadData
+                + "; printf \"" + toOctalEscapes(PgBinaryBatchEncoder.getTrailer()) + "\"";
+    }
+
+    /**
+     * @return printf中表示bytes的八进制转义序列，只使用POSIX printf支持的转义
+     */
+    private static String toOctalEscapes(byte[] bytes) {
+        StringBuilder escapes = new StringBuilder();
+        for (byte b : bytes) {
+            escapes.append(String.format("\\%03o", b & 0xff));
+        }
+        return escapes.toString();
+    }
+
     public void createIndex() throws IOException {
         List<String> addFks = new ArrayList<>();
         StringBuilder createIndex = new StringBuilder("\\c " + dataBase + "\n");
@@ -3,6 +3,7 @@ package ecnu.db.schema;
 import ecnu.db.LanguageManager;
 import ecnu.db.generator.constraintchain.filter.Parameter;
 import ecnu.db.generator.constraintchain.filter.operation.CompareOperator;
+import ecnu.db.utils.CounterRandom;
 import ecnu.db.utils.exception.TouchstoneException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,7 +11,6 @@ import org.slf4j.LoggerFactory;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
 
 import static ecnu.db.utils.CommonUtils.DECIMAL_DIVIDE_SCALE;
 
@@ -32,7 +32,15 @@ public class Distribution {
 
     private List<List<Integer>> idList = new ArrayList<>();
 
-    private BigDecimal cumulativeError = BigDecimal.ZERO;
+    /**
+     * 之前所有批的舍入误差之和，以定点数表示
+     */
+    private long cumulativeError = 0;
+
+    /**
+     * 最近一次使用的生成计划，批大小或者分布变化时重新编译
+     */
+    private TupleDataPlan tupleDataPlan;
 
     public Distribution(BigDecimal nullPercentage, long range) {
         this.range = range;
@@ -282,6 +290,7 @@ public class Distribution {
      */
     public long initAllParameters() {
         offset2Pv.clear();
+        tupleDataPlan = null;
         long addCardinality = 0;
         if (range <= 0) {
             return addCardinality;
@@ -336,100 +345,23 @@ public class Distribution {
         }
     }
 
-    private long[] generateAttributeData(BigDecimal bSize) {
-        // 如果全列数据为空，则不需要填充属性值
-        if (paraData2Probability.size() == 1 && paraData2Probability.lastKey() == -1) {
-            return new long[0];
-        }
-        // 生成为左闭右开，因此lastParaData始终比上一右边界大
-        long lastParaData = 1;
-        List<Long> allBoundPvs = offset2Pv.values().stream().toList();
-        List<long[]> rangeValues = new ArrayList<>();
-        for (Map.Entry<Long, BigDecimal> data2Probability : paraData2Probability.entrySet()) {
-            long currentParaData = data2Probability.getKey();
-            if (!allBoundPvs.contains(currentParaData)) {
-                BigDecimal bGenerateSize = bSize.multiply(data2Probability.getValue());
-                int generateSize = computeGenerateSize(bGenerateSize);
-                long[] rangeValue = new long[generateSize];
-                if (currentParaData == lastParaData) {
-                    Arrays.fill(rangeValue, currentParaData);
-                } else {
-                    for (int i = 0; i < rangeValue.length; i++) {
-                        rangeValue[i] = ThreadLocalRandom.current().nextLong(lastParaData, currentParaData + 1);
-                    }
-                }
-                rangeValues.add(rangeValue);
-            }
-            // 移动到右边界+1
-            lastParaData = currentParaData + 1;
-        }
-        // 存储符合CDF的属性值
-        if (rangeValues.size() > 1) {
-            int allValueLength = rangeValues.stream().mapToInt(v -> v.length).sum();
-            long[] attributeData = new long[allValueLength];
-            int rangeIndex = 0;
-            for (long[] rangeValue : rangeValues) {
-                System.arraycopy(rangeValue, 0, attributeData, rangeIndex, rangeValue.length);
-                rangeIndex += rangeValue.length;
-            }
-            return attributeData;
-        } else {
-            return rangeValues.get(0);
-        }
-    }
-
-
-    private int computeGenerateSize(BigDecimal generateSize) {
-        BigDecimal roundOffset = generateSize.setScale(0, RoundingMode.HALF_UP);
-        cumulativeError = cumulativeError.add(roundOffset.subtract(generateSize));
-        int offset = roundOffset.intValue();
-        if (cumulativeError.compareTo(BigDecimal.ONE) >= 0) {
-            cumulativeError = cumulativeError.subtract(BigDecimal.ONE);
-            offset--;
-        } else if (cumulativeError.compareTo(BigDecimal.valueOf(-1)) <= 0) {
-            cumulativeError = cumulativeError.add(BigDecimal.ONE);
-            offset++;
-        }
-        return offset;
-    }
-
     /**
      * 在column中维护数据
      * todo 列内随机生成，且有NULL的部分不要随机
      *
-     * @param size column内部需要维护的数据大小
+     * @param size           column内部需要维护的数据大小
+     * @param rowPermutation 第i行写入的位置，为null时按照CDF的顺序排列
+     * @param random         列的随机数流
+     * @param batchStart     本批第一行在表中的位置，作为随机数的计数器
      */
-    public long[] prepareTupleData(int size) {
-        BigDecimal bSize = BigDecimal.valueOf(size);
-        long[] attributeData = generateAttributeData(bSize);
-        // 将属性值与bound值组合
-        int currentIndex = 0;
-        int attributeIndex = 0;
-        long[] columnData = new long[size];
-        for (Map.Entry<BigDecimal, Long> pv2Offset : offset2Pv.entrySet()) {
-            // 确定bound的开始offset
-            int bOffset = bSize.multiply(pv2Offset.getKey()).intValue();
-            while (currentIndex < bOffset) {
-                columnData[currentIndex++] = attributeData[attributeIndex++];
-            }
-            // 确定bound的大小
-            BigDecimal rangeProbability = paraData2Probability.get(pv2Offset.getValue());
-            BigDecimal bPvSize = bSize.multiply(rangeProbability);
-            int generateSize = computeGenerateSize(bPvSize);
-            Arrays.fill(columnData, currentIndex, currentIndex + generateSize, pv2Offset.getValue());
-            currentIndex += generateSize;
-        }
-        // 复制最后部分
-        int attributeRemain = attributeData.length - attributeIndex;
-        int localRemain = size - currentIndex;
-        attributeRemain = Math.min(attributeRemain, localRemain);
-        for (int i = 0; i < attributeRemain; i++) {
-            columnData[currentIndex++] = attributeData[attributeIndex++];
-        }
-        // 使用Long.MIN_VALUE标记结尾的null值
-        if (currentIndex < size) {
-            Arrays.fill(columnData, currentIndex, size, Long.MIN_VALUE);
+    public ColumnBuffer prepareTupleData(int size, int[] rowPermutation, CounterRandom random, long batchStart) {
+        TupleDataPlan plan = tupleDataPlan;
+        if (plan == null || plan.size() != size) {
+            plan = new TupleDataPlan(size, paraData2Probability, offset2Pv);
+            tupleDataPlan = plan;
         }
+        ColumnBuffer columnData = new ColumnBuffer(plan.getWidth(), size);
+        cumulativeError = plan.fill(columnData, rowPermutation, random, batchStart, cumulativeError);
         return columnData;
     }
 
@@ -439,6 +371,7 @@ public class Distribution {
 
     public void setOffset2Pv(SortedMap<BigDecimal, Long> offset2Pv) {
         this.offset2Pv = offset2Pv;
+        tupleDataPlan = null;
     }
 
     public SortedMap<Long, BigDecimal> getParaData2Probability() {
@@ -447,6 +380,7 @@ public class Distribution {
 
     public void setParaData2Probability(SortedMap<Long, BigDecimal> paraData2Probability) {
         this.paraData2Probability = paraData2Probability;
+        tupleDataPlan = null;
     }
 
 
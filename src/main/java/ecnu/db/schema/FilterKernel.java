@@ -0,0 +1,126 @@
+package ecnu.db.schema;
+
+import ecnu.db.generator.constraintchain.filter.operation.CompareOperator;
+
+import java.util.Arrays;
+
+/**
+ * 列数据的比较计算，结果按行写入bitmap，第start行对应words[0]的最低位。
+ * JVM加载了jdk.incubator.vector模块时使用SIMD实现，否则使用标量实现。
+ * 比较只读取列的原始类型的数组，null行的结果最后通过null bitmap清除
+ */
+public final class FilterKernel {
+    private static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /**
+     * IN列表不超过该长度时逐个比较，否则二分查找
+     */
+    private static final int LINEAR_PROBE_SIZE = 8;
+
+    private FilterKernel() {
+    }
+
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * @return [start, end)行的结果需要的long个数
+     */
+    public static int getWordSize(int start, int end) {
+        return (end - start + Long.SIZE - 1) >>> 6;
+    }
+
+    /**
+     * 比较[start, end)行的数据与value，null值的比较结果为false，ISNULL与IS_NOT_NULL忽略value
+     */
+    public static void compare(CompareOperator operator, ColumnBuffer data, int start, int end, long value, long[] words) {
+        if (operator == CompareOperator.ISNULL || operator == CompareOperator.IS_NOT_NULL) {
+            data.getNullWords(start, end, operator == CompareOperator.IS_NOT_NULL, words);
+            return;
+        }
+        // 超出列类型范围的参数无法广播为向量
+        if (VECTORIZED && data.getWidth().fits(value)) {
+            VectorFilterKernel.compare(operator, data, start, end, value, words);
+        } else {
+            compareScalar(operator, data, start, end, value, words);
+        }
+        data.clearNulls(start, end, words);
+    }
+
+    /**
+     * 判断[start, end)行的数据是否在values中，null值的结果为false
+     *
+     * @param values 排好序的参数，超出列类型范围的值需要先通过retainFitting去掉
+     * @param negate 为true时计算NOT IN
+     */
+    public static void in(ColumnBuffer data, int start, int end, long[] values, boolean negate, long[] words) {
+        if (VECTORIZED && values.length <= LINEAR_PROBE_SIZE) {
+            VectorFilterKernel.in(data, start, end, values, negate, words);
+        } else {
+            inScalar(data, start, end, values, negate, words);
+        }
+        data.clearNulls(start, end, words);
+    }
+
+    /**
+     * 超出列类型范围的参数不会与任何行相等，也无法广播为向量，在编译filter时去掉一次
+     *
+     * @return values中可以存放在列的类型中的值
+     */
+    public static long[] retainFitting(ColumnBuffer data, long[] values) {
+        return Arrays.stream(values).filter(data.getWidth()::fits).toArray();
+    }
+
+    /**
+     * 每64行在寄存器中拼出一个long后写入words，不处理null与ISNULL、IS_NOT_NULL。
+     * 比较运算符表示为Long.compare结果的mask，所有运算符共用一个循环
+     */
+    static void compareScalar(CompareOperator operator, ColumnBuffer data, int start, int end, long value, long[] words) {
+        // 第0、1、2位分别表示小于、等于、大于时结果为true
+        long mask = switch (operator) {
+            case EQ, LIKE -> 0b010;
+            case NE, NOT_LIKE -> 0b101;
+            case LT -> 0b001;
+            case LE -> 0b011;
+            case GT -> 0b100;
+            case GE -> 0b110;
+            default -> throw new UnsupportedOperationException();
+        };
+        int wordSize = getWordSize(start, end);
+        for (int wordIndex = 0; wordIndex < wordSize; wordIndex++) {
+            int base = start + (wordIndex << 6);
+            int size = Math.min(Long.SIZE, end - base);
+            long word = 0;
+            for (int bit = 0; bit < size; bit++) {
+                long d = data.getRaw(base + bit);
+                word |= (mask >>> (Long.compare(d, value) + 1) & 1L) << bit;
+            }
+            words[wordIndex] = word;
+        }
+    }
+
+    static void inScalar(ColumnBuffer data, int start, int end, long[] values, boolean negate, long[] words) {
+        int wordSize = getWordSize(start, end);
+        boolean linearProbe = values.length <= LINEAR_PROBE_SIZE;
+        for (int wordIndex = 0; wordIndex < wordSize; wordIndex++) {
+            int base = start + (wordIndex << 6);
+            int size = Math.min(Long.SIZE, end - base);
+            long word = 0;
+            for (int bit = 0; bit < size; bit++) {
+                long d = data.getRaw(base + bit);
+                boolean contains;
+                if (linearProbe) {
+                    contains = false;
+                    for (long value : values) {
+                        contains |= d == value;
+                    }
+                } else {
+                    contains = Arrays.binarySearch(values, d) >= 0;
+                }
+                word |= (contains != negate ? 1L : 0L) << bit;
+            }
+            words[wordIndex] = word;
+        }
+    }
+}
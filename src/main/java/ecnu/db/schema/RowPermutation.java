@@ -0,0 +1,54 @@
+package ecnu.db.schema;
+
+import ecnu.db.utils.BatchArena;
+
+import java.util.stream.IntStream;
+
+import static ecnu.db.utils.CounterRandom.mix;
+
+/**
+ * 基于Feistel网络的行排列。在不小于size的2^2k的定义域上做4轮Feistel变换，
+ * 结果不小于size时继续变换直到落入[0, size)，得到[0, size)上的一个双射
+ */
+final class RowPermutation {
+    private static final int ROUNDS = 4;
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private RowPermutation() {
+    }
+
+    /**
+     * @param size 行数
+     * @param key  排列的密钥，相同的密钥得到相同的排列
+     * @return 第i行移动到的位置，数组从BatchArena中取出
+     */
+    static int[] generate(int size, long key) {
+        int halfBits = Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(Math.max(size - 1L, 1L)) + 1) / 2);
+        long[] roundKeys = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            roundKeys[round] = mix(key + (round + 1) * GOLDEN_GAMMA);
+        }
+        int[] permutation = BatchArena.getInstance().allocateInts(size);
+        IntStream.range(0, size).parallel().forEach(rowId -> {
+            long index = rowId;
+            do {
+                index = encrypt(index, halfBits, roundKeys);
+            } while (index >= size);
+            permutation[rowId] = (int) index;
+        });
+        return permutation;
+    }
+
+    private static long encrypt(long index, int halfBits, long[] roundKeys) {
+        long mask = (1L << halfBits) - 1;
+        long left = index >>> halfBits;
+        long right = index & mask;
+        for (long roundKey : roundKeys) {
+            long next = left ^ (mix(right ^ roundKey) & mask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+}
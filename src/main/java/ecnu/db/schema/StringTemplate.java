@@ -1,14 +1,29 @@
 package ecnu.db.schema;
 
-import java.util.Random;
+import ecnu.db.generator.RowEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Set;
 import java.util.TreeSet;
 
 class StringTemplate {
-    private static final char[] randomCharSet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
-    private static final char[] likeRandomCharSet = "0123456789".toCharArray();
+    private static final byte[] randomCharSet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] likeRandomCharSet = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte NO_EXIST_TAIL_CHAR = '-';
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * 每个线程复用的字符缓冲区，避免为每个值创建数组
+     */
+    private static final ThreadLocal<byte[]> VALUE_BUFFER = ThreadLocal.withInitial(() -> new byte[64]);
 
-    private static final char NO_EXIST_TAIL_CHAR = '-';
+    /**
+     * NDV不超过缓存槽位数的该倍数时视为中等基数，使用有界缓存
+     */
+    private static final int MID_CARDINALITY_RATIO = 16;
 
     int avgLength;
     int maxLength;
@@ -17,6 +32,27 @@ class StringTemplate {
 
     TreeSet<Long> subStringIndex = new TreeSet<>();
 
+    /**
+     * subStringIndex排序后的数组，数组下标即为dataId在subStringIndex中的排名，修改subStringIndex后重建
+     */
+    private volatile long[] subStringRanks;
+
+    /**
+     * 低基数列[0, ndv)内所有取值的字节
+     */
+    private byte[][] dictionary;
+
+    /**
+     * 中等基数列按dataId直接映射的有界缓存
+     */
+    private CachedValue[] valueCache;
+
+    /**
+     * 缓存的取值，字段均为final，可以在写线程间无锁共享
+     */
+    private record CachedValue(long dataId, byte[] value) {
+    }
+
     public StringTemplate(int avgLength, int maxLength, long specialValue, long range) {
         this.avgLength = avgLength;
         this.maxLength = maxLength;
@@ -35,33 +71,120 @@ class StringTemplate {
     }
 
     public String getParameterValue(long dataId) {
-        Random random = new Random(specialValue * dataId);
-        char[] values = new char[avgLength];
+        byte[] values = new byte[avgLength];
+        fillValue(dataId, values);
+        return new String(values, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 将dataId对应的字符串直接写入输出缓冲区，结果与getParameterValue一致
+     */
+    public void writeParameterValue(long dataId, RowEncoder encoder) {
+        if (dictionary != null && dataId >= 0 && dataId < dictionary.length) {
+            encoder.appendBytes(dictionary[(int) dataId]);
+            return;
+        }
+        if (valueCache != null) {
+            int slot = (int) (dataId & (valueCache.length - 1));
+            CachedValue cachedValue = valueCache[slot];
+            if (cachedValue == null || cachedValue.dataId() != dataId) {
+                byte[] value = new byte[avgLength];
+                fillValue(dataId, value);
+                cachedValue = new CachedValue(dataId, value);
+                valueCache[slot] = cachedValue;
+            }
+            encoder.appendBytes(cachedValue.value());
+            return;
+        }
+        byte[] values = VALUE_BUFFER.get();
+        if (values.length < avgLength) {
+            values = new byte[avgLength];
+            VALUE_BUFFER.set(values);
+        }
+        fillValue(dataId, values);
+        encoder.appendBytes(values, 0, avgLength);
+    }
+
+    /**
+     * 根据列的NDV选择取值的缓存方式，NDV较低时预先生成所有取值，中等基数时使用有界缓存
+     *
+     * @param ndv                 列的取值个数
+     * @param dictionaryThreshold 预先生成所有取值的NDV上限
+     * @param cacheSize           有界缓存的槽位数，0表示不使用缓存
+     */
+    public void prepareValueCache(long ndv, int dictionaryThreshold, int cacheSize) {
+        if (ndv <= dictionaryThreshold) {
+            if (dictionary == null) {
+                byte[][] values = new byte[(int) ndv][];
+                for (int dataId = 0; dataId < values.length; dataId++) {
+                    values[dataId] = new byte[avgLength];
+                    fillValue(dataId, values[dataId]);
+                }
+                dictionary = values;
+            }
+        } else if (cacheSize > 0 && ndv <= (long) cacheSize * MID_CARDINALITY_RATIO) {
+            if (valueCache == null) {
+                valueCache = new CachedValue[Integer.highestOneBit(cacheSize)];
+            }
+        }
+    }
+
+    /**
+     * 前tag位由dataId唯一确定，其余位由specialValue与dataId为种子的SplitMix64序列生成
+     */
+    private void fillValue(long dataId, byte[] values) {
+        long state = specialValue * dataId;
         if (dataId < 0) {
             values[0] = NO_EXIST_TAIL_CHAR;
-            for (int i = 1; i < values.length; i++) {
-                values[i] = randomCharSet[random.nextInt(randomCharSet.length)];
+            for (int i = 1; i < avgLength; i++) {
+                state += GOLDEN_GAMMA;
+                values[i] = randomChar(state);
             }
         } else {
             int startId = 0;
-            if (subStringIndex.contains(dataId)) {
+            int rank = getSubStringRank(dataId);
+            if (rank >= 0) {
                 // todo : mod may be error
-                values[0] = likeRandomCharSet[subStringIndex.headSet(dataId).size() % likeRandomCharSet.length];
+                values[0] = likeRandomCharSet[rank % likeRandomCharSet.length];
                 startId++;
             }
             for (int i = tag - 1; i >= startId; i--) {
                 values[i] = randomCharSet[(int) (dataId % randomCharSet.length)];
                 dataId /= randomCharSet.length;
             }
-            for (int i = tag; i < values.length; i++) {
-                values[i] = randomCharSet[random.nextInt(randomCharSet.length)];
+            for (int i = tag; i < avgLength; i++) {
+                state += GOLDEN_GAMMA;
+                values[i] = randomChar(state);
             }
         }
-        return new String(values);
+    }
+
+    private static byte randomChar(long state) {
+        long z = state;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        z = z ^ (z >>> 31);
+        return randomCharSet[(int) (((z >>> 32) * randomCharSet.length) >>> 32)];
+    }
+
+    /**
+     * @return dataId在subStringIndex中的排名，不存在时返回负数
+     */
+    private int getSubStringRank(long dataId) {
+        long[] ranks = subStringRanks;
+        if (ranks == null) {
+            ranks = subStringIndex.stream().mapToLong(Long::longValue).toArray();
+            subStringRanks = ranks;
+        }
+        if (ranks.length == 0) {
+            return -1;
+        }
+        return Arrays.binarySearch(ranks, dataId);
     }
 
     public void addSubStringIndex(long dataId) {
         subStringIndex.add(dataId);
+        clearCache();
     }
 
     public Set<Long> getLikeIndex2Status() {
@@ -70,5 +193,15 @@ class StringTemplate {
 
     public void setLikeIndex2Status(TreeSet<Long> likeIndex) {
         this.subStringIndex = likeIndex;
+        clearCache();
+    }
+
+    /**
+     * LIKE索引改变后所有已生成的取值失效
+     */
+    private void clearCache() {
+        subStringRanks = null;
+        dictionary = null;
+        valueCache = null;
     }
-}
\ No newline at end of file
+}
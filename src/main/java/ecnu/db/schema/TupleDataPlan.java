@@ -0,0 +1,196 @@
+package ecnu.db.schema;
+
+import ecnu.db.utils.CounterRandom;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * 一个批大小下列数据的生成计划。每个区间的期望行数与bound的起始行在编译时计算，
+ * 期望行数以定点数表示，生成时只进行整数运算，并在一次遍历中填充整个批
+ */
+final class TupleDataPlan {
+    /**
+     * 定点数的小数部分为18位十进制数
+     */
+    static final long ONE = 1_000_000_000_000_000_000L;
+
+    private static final long HALF = ONE / 2;
+
+    private final int size;
+
+    /**
+     * 非bound区间的取值范围为[lowers[i], uppers[i]]
+     */
+    private final long[] lowers;
+
+    private final long[] uppers;
+
+    /**
+     * 期望行数的整数部分与小数部分，先存放非bound区间，再按照偏移的顺序存放bound区间
+     */
+    private final long[] rows;
+
+    private final long[] fractions;
+
+    private final long[] boundValues;
+
+    private final int[] boundOffsets;
+
+    /**
+     * 所有可能生成的值都可以存放的最窄的类型
+     */
+    private final ColumnBuffer.Width width;
+
+    TupleDataPlan(int size, SortedMap<Long, BigDecimal> paraData2Probability, SortedMap<BigDecimal, Long> offset2Pv) {
+        this.size = size;
+        BigDecimal bSize = BigDecimal.valueOf(size);
+        List<BigDecimal> probabilities = new ArrayList<>();
+        List<long[]> ranges = new ArrayList<>();
+        // 如果全列数据为空，则不需要填充属性值
+        if (paraData2Probability.size() != 1 || paraData2Probability.lastKey() != -1) {
+            Set<Long> allBoundPvs = new HashSet<>(offset2Pv.values());
+            // 生成为左闭右开，因此lastParaData始终比上一右边界大
+            long lastParaData = 1;
+            for (Map.Entry<Long, BigDecimal> data2Probability : paraData2Probability.entrySet()) {
+                long currentParaData = data2Probability.getKey();
+                if (!allBoundPvs.contains(currentParaData)) {
+                    probabilities.add(data2Probability.getValue());
+                    ranges.add(new long[]{lastParaData, currentParaData});
+                }
+                lastParaData = currentParaData + 1;
+            }
+        }
+        lowers = ranges.stream().mapToLong(range -> range[0]).toArray();
+        uppers = ranges.stream().mapToLong(range -> range[1]).toArray();
+        boundValues = new long[offset2Pv.size()];
+        boundOffsets = new int[offset2Pv.size()];
+        int boundIndex = 0;
+        for (Map.Entry<BigDecimal, Long> pv2Offset : offset2Pv.entrySet()) {
+            boundOffsets[boundIndex] = bSize.multiply(pv2Offset.getKey()).intValue();
+            boundValues[boundIndex++] = pv2Offset.getValue();
+            probabilities.add(paraData2Probability.get(pv2Offset.getValue()));
+        }
+        long minValue = 0;
+        long maxValue = 0;
+        for (long[] range : ranges) {
+            minValue = Math.min(minValue, range[0]);
+            maxValue = Math.max(maxValue, range[1]);
+        }
+        for (long boundValue : boundValues) {
+            minValue = Math.min(minValue, boundValue);
+            maxValue = Math.max(maxValue, boundValue);
+        }
+        width = ColumnBuffer.Width.of(minValue, maxValue);
+        rows = new long[probabilities.size()];
+        fractions = new long[probabilities.size()];
+        for (int i = 0; i < rows.length; i++) {
+            BigDecimal generateSize = bSize.multiply(probabilities.get(i));
+            BigDecimal integerPart = generateSize.setScale(0, RoundingMode.FLOOR);
+            rows[i] = integerPart.longValue();
+            fractions[i] = generateSize.subtract(integerPart).movePointRight(18).setScale(0, RoundingMode.HALF_UP).longValue();
+            if (fractions[i] == ONE) {
+                rows[i]++;
+                fractions[i] = 0;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    ColumnBuffer.Width getWidth() {
+        return width;
+    }
+
+    /**
+     * 依次计算所有区间的行数，再将属性值与bound值组合写入columnData，剩余的行为null
+     *
+     * @param columnData      行数为size且类型为getWidth()的输出
+     * @param rowPermutation  第i行写入columnData的第rowPermutation[i]行，为null时按顺序写入
+     * @param random          第i行使用random的第counterStart + i个随机数
+     * @param counterStart    本批第一行的计数器
+     * @param cumulativeError 之前所有批的舍入误差之和，以定点数表示
+     * @return 本批之后的舍入误差之和
+     */
+    long fill(ColumnBuffer columnData, int[] rowPermutation, CounterRandom random, long counterStart, long cumulativeError) {
+        int[] generateSizes = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            long rounded = rows[i];
+            if (fractions[i] >= HALF) {
+                rounded++;
+                cumulativeError += ONE - fractions[i];
+            } else {
+                cumulativeError -= fractions[i];
+            }
+            if (cumulativeError >= ONE) {
+                cumulativeError -= ONE;
+                rounded--;
+            } else if (cumulativeError <= -ONE) {
+                cumulativeError += ONE;
+                rounded++;
+            }
+            generateSizes[i] = (int) rounded;
+        }
+        int currentIndex = 0;
+        int rangeIndex = 0;
+        int rangeRemain = lowers.length > 0 ? generateSizes[0] : 0;
+        int attributeRemain = 0;
+        for (int i = 0; i < lowers.length; i++) {
+            attributeRemain += generateSizes[i];
+        }
+        for (int boundIndex = 0; boundIndex <= boundValues.length; boundIndex++) {
+            // 确定bound的开始offset，最后复制剩余的属性值。属性值不足时bound紧接在已有的属性值之后
+            int attributeEnd = currentIndex + Math.min(attributeRemain,
+                    (boundIndex < boundValues.length ? boundOffsets[boundIndex] : size) - currentIndex);
+            while (currentIndex < attributeEnd) {
+                while (rangeRemain == 0) {
+                    rangeRemain = generateSizes[++rangeIndex];
+                }
+                int length = Math.min(rangeRemain, attributeEnd - currentIndex);
+                long lower = lowers[rangeIndex];
+                long upper = uppers[rangeIndex];
+                if (lower == upper) {
+                    fill(columnData, rowPermutation, currentIndex, currentIndex + length, lower);
+                } else if (rowPermutation == null) {
+                    for (int rowId = currentIndex; rowId < currentIndex + length; rowId++) {
+                        columnData.set(rowId, random.nextLong(counterStart + rowId, lower, upper + 1));
+                    }
+                } else {
+                    for (int rowId = currentIndex; rowId < currentIndex + length; rowId++) {
+                        columnData.set(rowPermutation[rowId], random.nextLong(counterStart + rowId, lower, upper + 1));
+                    }
+                }
+                currentIndex += length;
+                rangeRemain -= length;
+                attributeRemain -= length;
+            }
+            if (boundIndex < boundValues.length) {
+                int generateSize = generateSizes[lowers.length + boundIndex];
+                fill(columnData, rowPermutation, currentIndex, currentIndex + generateSize, boundValues[boundIndex]);
+                currentIndex += generateSize;
+            }
+        }
+        // 结尾的行为null值
+        if (rowPermutation == null) {
+            columnData.fillNull(currentIndex, size);
+        } else {
+            for (int rowId = currentIndex; rowId < size; rowId++) {
+                columnData.setNull(rowPermutation[rowId]);
+            }
+        }
+        return cumulativeError;
+    }
+
+    private static void fill(ColumnBuffer columnData, int[] rowPermutation, int start, int end, long value) {
+        if (rowPermutation == null) {
+            columnData.fill(start, end, value);
+        } else {
+            for (int rowId = start; rowId < end; rowId++) {
+                columnData.set(rowPermutation[rowId], value);
+            }
+        }
+    }
+}
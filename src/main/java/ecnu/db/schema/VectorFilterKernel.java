@@ -0,0 +1,240 @@
+package ecnu.db.schema;
+
+import ecnu.db.generator.constraintchain.filter.operation.CompareOperator;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * FilterKernel的SIMD实现，按照列的原始类型每次比较一个向量的数据并将比较结果的mask写入bitmap。
+ * 列数据在堆外，Java 21中向量只能不依赖preview API从数组加载，因此先将一个block的数据复制到线程私有的数组中再比较。
+ * 只有JVM加载了jdk.incubator.vector模块时才能加载该类
+ */
+final class VectorFilterKernel {
+    /**
+     * 向量的lane数为2的幂且不超过64，一个向量的结果不会跨越两个long
+     */
+    private static final VectorSpecies<Byte> BYTE_SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Short> SHORT_SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Long> LONG_SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private VectorFilterKernel() {
+    }
+
+    /**
+     * value需要可以存放在列的类型中，不处理null
+     */
+    static void compare(CompareOperator operator, ColumnBuffer data, int start, int end, long value, long[] words) {
+        VectorOperators.Comparison comparison = switch (operator) {
+            case EQ, LIKE -> VectorOperators.EQ;
+            case NE, NOT_LIKE -> VectorOperators.NE;
+            case LT -> VectorOperators.LT;
+            case LE -> VectorOperators.LE;
+            case GT -> VectorOperators.GT;
+            case GE -> VectorOperators.GE;
+            default -> throw new UnsupportedOperationException();
+        };
+        Arrays.fill(words, 0, FilterKernel.getWordSize(start, end), 0L);
+        Scratch scratch = SCRATCH.get();
+        int length = end - start;
+        int rowId = start + switch (data.getWidth()) {
+            case BYTE -> compareBytes(comparison, scratch.loadBytes(data, start, end), length, (byte) value, words);
+            case SHORT -> compareShorts(comparison, scratch.loadShorts(data, start, end), length, (short) value, words);
+            case INT -> compareInts(comparison, scratch.loadInts(data, start, end), length, (int) value, words);
+            case LONG -> compareLongs(comparison, scratch.loadLongs(data, start, end), length, value, words);
+        };
+        if (rowId < end) {
+            long[] tailWords = scratch.tailWords;
+            FilterKernel.compareScalar(operator, data, rowId, end, value, tailWords);
+            words[(rowId - start) >>> 6] |= tailWords[0] << (rowId - start);
+        }
+    }
+
+    /**
+     * values中的值需要可以存放在列的类型中，不处理null
+     */
+    static void in(ColumnBuffer data, int start, int end, long[] values, boolean negate, long[] words) {
+        Arrays.fill(words, 0, FilterKernel.getWordSize(start, end), 0L);
+        Scratch scratch = SCRATCH.get();
+        int length = end - start;
+        int rowId = start + switch (data.getWidth()) {
+            case BYTE -> inBytes(scratch.loadBytes(data, start, end), length, values, negate, words);
+            case SHORT -> inShorts(scratch.loadShorts(data, start, end), length, values, negate, words);
+            case INT -> inInts(scratch.loadInts(data, start, end), length, values, negate, words);
+            case LONG -> inLongs(scratch.loadLongs(data, start, end), length, values, negate, words);
+        };
+        if (rowId < end) {
+            long[] tailWords = scratch.tailWords;
+            FilterKernel.inScalar(data, rowId, end, values, negate, tailWords);
+            words[(rowId - start) >>> 6] |= tailWords[0] << (rowId - start);
+        }
+    }
+
+    /**
+     * data中存放从第start行开始的length行，第start行对应words[0]的最低位
+     *
+     * @return 向量部分处理的行数，之后的行由标量实现计算
+     */
+    private static int compareBytes(VectorOperators.Comparison comparison, byte[] data, int length,
+                                    byte value, long[] words) {
+        int vectorEnd = BYTE_SPECIES.loopBound(length);
+        int rowId = 0;
+        for (; rowId < vectorEnd; rowId += BYTE_SPECIES.length()) {
+            long mask = ByteVector.fromArray(BYTE_SPECIES, data, rowId).compare(comparison, value).toLong();
+            words[rowId >>> 6] |= mask << rowId;
+        }
+        return rowId;
+    }
+
+    private static int compareShorts(VectorOperators.Comparison comparison, short[] data, int length,
+                                     short value, long[] words) {
+        int vectorEnd = SHORT_SPECIES.loopBound(length);
+        int rowId = 0;
+        for (; rowId < vectorEnd; rowId += SHORT_SPECIES.length()) {
+            long mask = ShortVector.fromArray(SHORT_SPECIES, data, rowId).compare(comparison, value).toLong();
+            words[rowId >>> 6] |= mask << rowId;
+        }
+        return rowId;
+    }
+
+    private static int compareInts(VectorOperators.Comparison comparison, int[] data, int length,
+                                   int value, long[] words) {
+        int vectorEnd = INT_SPECIES.loopBound(length);
+        int rowId = 0;
+        for (; rowId < vectorEnd; rowId += INT_SPECIES.length()) {
+            long mask = IntVector.fromArray(INT_SPECIES, data, rowId).compare(comparison, value).toLong();
+            words[rowId >>> 6] |= mask << rowId;
+        }
+        return rowId;
+    }
+
+    private static int compareLongs(VectorOperators.Comparison comparison, long[] data, int length,
+                                    long value, long[] words) {
+        int vectorEnd = LONG_SPECIES.loopBound(length);
+        int rowId = 0;
+        for (; rowId < vectorEnd; rowId += LONG_SPECIES.length()) {
+            long mask = LongVector.fromArray(LONG_SPECIES, data, rowId).compare(comparison, value).toLong();
+            words[rowId >>> 6] |= mask << rowId;
+        }
+        return rowId;
+    }
+
+    private static int inBytes(byte[] data, int length, long[] values, boolean negate, long[] words) {
+        int vectorEnd = BYTE_SPECIES.loopBound(length);
+        int rowId = 0;
+        for (; rowId < vectorEnd; rowId += BYTE_SPECIES.length()) {
+            ByteVector vector = ByteVector.fromArray(BYTE_SPECIES, data, rowId);
+            VectorMask<Byte> mask = BYTE_SPECIES.maskAll(false);
+            for (long value : values) {
+                mask = mask.or(vector.compare(VectorOperators.EQ, (byte) value));
+            }
+            long word = negate ? mask.not().toLong() : mask.toLong();
+            words[rowId >>> 6] |= word << rowId;
+        }
+        return rowId;
+    }
+
+    private static int inShorts(short[] data, int length, long[] values, boolean negate, long[] words) {
+        int vectorEnd = SHORT_SPECIES.loopBound(length);
+        int rowId = 0;
+        for (; rowId < vectorEnd; rowId += SHORT_SPECIES.length()) {
+            ShortVector vector = ShortVector.fromArray(SHORT_SPECIES, data, rowId);
+            VectorMask<Short> mask = SHORT_SPECIES.maskAll(false);
+            for (long value : values) {
+                mask = mask.or(vector.compare(VectorOperators.EQ, (short) value));
+            }
+            long word = negate ? mask.not().toLong() : mask.toLong();
+            words[rowId >>> 6] |= word << rowId;
+        }
+        return rowId;
+    }
+
+    private static int inInts(int[] data, int length, long[] values, boolean negate, long[] words) {
+        int vectorEnd = INT_SPECIES.loopBound(length);
+        int rowId = 0;
+        for (; rowId < vectorEnd; rowId += INT_SPECIES.length()) {
+            IntVector vector = IntVector.fromArray(INT_SPECIES, data, rowId);
+            VectorMask<Integer> mask = INT_SPECIES.maskAll(false);
+            for (long value : values) {
+                mask = mask.or(vector.compare(VectorOperators.EQ, (int) value));
+            }
+            long word = negate ? mask.not().toLong() : mask.toLong();
+            words[rowId >>> 6] |= word << rowId;
+        }
+        return rowId;
+    }
+
+    private static int inLongs(long[] data, int length, long[] values, boolean negate, long[] words) {
+        int vectorEnd = LONG_SPECIES.loopBound(length);
+        int rowId = 0;
+        for (; rowId < vectorEnd; rowId += LONG_SPECIES.length()) {
+            LongVector vector = LongVector.fromArray(LONG_SPECIES, data, rowId);
+            VectorMask<Long> mask = LONG_SPECIES.maskAll(false);
+            for (long value : values) {
+                mask = mask.or(vector.compare(VectorOperators.EQ, value));
+            }
+            long word = negate ? mask.not().toLong() : mask.toLong();
+            words[rowId >>> 6] |= word << rowId;
+        }
+        return rowId;
+    }
+
+    /**
+     * 线程私有的堆内数组，长度不足时按需扩容
+     */
+    private static final class Scratch {
+        private final long[] tailWords = new long[1];
+
+        private byte[] bytes = new byte[0];
+
+        private short[] shorts = new short[0];
+
+        private int[] ints = new int[0];
+
+        private long[] longs = new long[0];
+
+        private byte[] loadBytes(ColumnBuffer data, int start, int end) {
+            if (bytes.length < end - start) {
+                bytes = new byte[end - start];
+            }
+            data.copyBytes(start, end, bytes);
+            return bytes;
+        }
+
+        private short[] loadShorts(ColumnBuffer data, int start, int end) {
+            if (shorts.length < end - start) {
+                shorts = new short[end - start];
+            }
+            data.copyShorts(start, end, shorts);
+            return shorts;
+        }
+
+        private int[] loadInts(ColumnBuffer data, int start, int end) {
+            if (ints.length < end - start) {
+                ints = new int[end - start];
+            }
+            data.copyInts(start, end, ints);
+            return ints;
+        }
+
+        private long[] loadLongs(ColumnBuffer data, int start, int end) {
+            if (longs.length < end - start) {
+                longs = new long[end - start];
+            }
+            data.copyLongs(start, end, longs);
+            return longs;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package ecnu.db.utils;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+
+/**
+ * batch内按行分配的缓冲区的复用池。一个batch输出完成后归还的缓冲区由之后行数相同的batch继续使用，
+ * 生成过程中不再反复分配与回收大块内存。只复用按当前批大小分配的缓冲区，其余长度的缓冲区归还时直接丢弃。
+ * 取出的缓冲区内容未清零，使用者需要写入所有行。
+ * <p>
+ * 需要等待输出的数据，即主键、外键、属性列和属性列的null bitmap，分配在堆外的direct buffer中，
+ * 在途batch的数据不再占用堆，也不会在young GC中被复制。只在一个batch生成期间使用的行号数组与filter status bitmap
+ * 仍然分配在堆内，复用后只在第一次分配时晋升一次。
+ * 被丢弃的堆外缓冲区立即释放内存，不等待Full GC回收，避免堆外内存达到上限时触发System.gc
+ */
+public final class BatchArena {
+    private static final Unsafe UNSAFE;
+
+    static {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            UNSAFE = (Unsafe) field.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final BatchArena INSTANCE = new BatchArena();
+
+    /**
+     * 使用中与空闲的堆外缓冲区到其内存所属的ByteBuffer，只有后者可以释放内存
+     */
+    private final Map<Buffer, ByteBuffer> directBuffers = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final Pool<int[]> ints = new Pool<>(int[]::new, array -> array.length, Integer.BYTES,
+            IntUnaryOperator.identity(), array -> {});
+
+    private final Pool<long[]> bitmaps = new Pool<>(long[]::new, array -> array.length, Long.BYTES,
+            BatchArena::getWordSize, array -> {});
+
+    private final Pool<ByteBuffer> byteBuffers = new Pool<>(length -> register(allocateDirect(length),
+            ByteBuffer::duplicate), ByteBuffer::capacity, Byte.BYTES, IntUnaryOperator.identity(), this::releaseDirect);
+
+    private final Pool<ShortBuffer> shortBuffers = new Pool<>(length -> register(allocateDirect(length * Short.BYTES),
+            ByteBuffer::asShortBuffer), ShortBuffer::capacity, Short.BYTES, IntUnaryOperator.identity(),
+            this::releaseDirect);
+
+    private final Pool<IntBuffer> intBuffers = new Pool<>(length -> register(allocateDirect(length * Integer.BYTES),
+            ByteBuffer::asIntBuffer), IntBuffer::capacity, Integer.BYTES, IntUnaryOperator.identity(),
+            this::releaseDirect);
+
+    private final Pool<LongBuffer> longBuffers = new Pool<>(length -> register(allocateDirect(length * Long.BYTES),
+            ByteBuffer::asLongBuffer), LongBuffer::capacity, Long.BYTES, IntUnaryOperator.identity(),
+            this::releaseDirect);
+
+    private final Pool<LongBuffer> bitmapBuffers = new Pool<>(length -> register(allocateDirect(length * Long.BYTES),
+            ByteBuffer::asLongBuffer), LongBuffer::capacity, Long.BYTES, BatchArena::getWordSize,
+            this::releaseDirect);
+
+    /**
+     * 由arena分配且没有被丢弃的缓冲区占用的字节数
+     */
+    private final AtomicLong reservedBytes = new AtomicLong();
+
+    private final AtomicLong peakBytes = new AtomicLong();
+
+    private final LongAdder reuseCount = new LongAdder();
+
+    private volatile int batchSize;
+
+    private BatchArena() {
+    }
+
+    public static BatchArena getInstance() {
+        return INSTANCE;
+    }
+
+    private static ByteBuffer allocateDirect(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @param memory 新分配的堆外内存
+     * @param view   创建使用者读写的缓冲区，ByteBuffer使用duplicate，释放内存需要未经duplicate或slice的原对象
+     */
+    private <T extends Buffer> T register(ByteBuffer memory, Function<ByteBuffer, T> view) {
+        T buffer = view.apply(memory);
+        directBuffers.put(buffer, memory);
+        return buffer;
+    }
+
+    private void releaseDirect(Buffer buffer) {
+        ByteBuffer memory = directBuffers.remove(buffer);
+        if (memory != null) {
+            UNSAFE.invokeCleaner(memory);
+        }
+    }
+
+    /**
+     * @return rows行压缩为bitmap后的long数
+     */
+    private static int getWordSize(int rows) {
+        return (rows + Long.SIZE - 1) >>> 6;
+    }
+
+    /**
+     * 设置之后batch的行数，丢弃长度不同的空闲缓冲区
+     */
+    public void setBatchSize(int batchSize) {
+        if (this.batchSize != batchSize) {
+            this.batchSize = batchSize;
+            ints.clear();
+            bitmaps.clear();
+            byteBuffers.clear();
+            shortBuffers.clear();
+            intBuffers.clear();
+            longBuffers.clear();
+            bitmapBuffers.clear();
+        }
+    }
+
+    public int[] allocateInts(int length) {
+        return ints.allocate(length);
+    }
+
+    /**
+     * @param rows bitmap表示的行数
+     * @return 堆内的bitmap，第i行对应第i / 64个long的第i % 64位
+     */
+    public long[] allocateBitmap(int rows) {
+        return bitmaps.allocate(getWordSize(rows));
+    }
+
+    public ByteBuffer allocateByteBuffer(int length) {
+        return byteBuffers.allocate(length);
+    }
+
+    public ShortBuffer allocateShortBuffer(int length) {
+        return shortBuffers.allocate(length);
+    }
+
+    public IntBuffer allocateIntBuffer(int length) {
+        return intBuffers.allocate(length);
+    }
+
+    public LongBuffer allocateLongBuffer(int length) {
+        return longBuffers.allocate(length);
+    }
+
+    /**
+     * @param rows bitmap表示的行数
+     * @return 堆外的bitmap，第i行对应第i / 64个long的第i % 64位
+     */
+    public LongBuffer allocateBitmapBuffer(int rows) {
+        return bitmapBuffers.allocate(getWordSize(rows));
+    }
+
+    public void free(int[] array) {
+        ints.free(array);
+    }
+
+    public void freeBitmap(long[] bitmap) {
+        bitmaps.free(bitmap);
+    }
+
+    public void free(ByteBuffer buffer) {
+        byteBuffers.free(buffer);
+    }
+
+    public void free(ShortBuffer buffer) {
+        shortBuffers.free(buffer);
+    }
+
+    public void free(IntBuffer buffer) {
+        intBuffers.free(buffer);
+    }
+
+    public void free(LongBuffer buffer) {
+        longBuffers.free(buffer);
+    }
+
+    public void freeBitmapBuffer(LongBuffer bitmap) {
+        bitmapBuffers.free(bitmap);
+    }
+
+    public long getReservedBytes() {
+        return reservedBytes.get();
+    }
+
+    public long getPeakBytes() {
+        return peakBytes.get();
+    }
+
+    /**
+     * @return 从空闲缓冲区中取出的次数
+     */
+    public long getReuseCount() {
+        return reuseCount.sum();
+    }
+
+    private void reserve(long size) {
+        peakBytes.accumulateAndGet(reservedBytes.addAndGet(size), Math::max);
+    }
+
+    private final class Pool<T> {
+        private final Queue<T> freeArrays = new ConcurrentLinkedQueue<>();
+
+        private final IntFunction<T> constructor;
+
+        private final ToIntFunction<T> lengthOf;
+
+        private final int elementBytes;
+
+        /**
+         * 由批大小计算复用的长度
+         */
+        private final IntUnaryOperator pooledLength;
+
+        /**
+         * 丢弃时释放内存
+         */
+        private final Consumer<T> destructor;
+
+        private Pool(IntFunction<T> constructor, ToIntFunction<T> lengthOf, int elementBytes,
+                     IntUnaryOperator pooledLength, Consumer<T> destructor) {
+            this.constructor = constructor;
+            this.lengthOf = lengthOf;
+            this.elementBytes = elementBytes;
+            this.pooledLength = pooledLength;
+            this.destructor = destructor;
+        }
+
+        private T allocate(int length) {
+            if (length == pooledLength.applyAsInt(batchSize)) {
+                T array;
+                // 批大小变化时正在归还的缓冲区可能长度不同
+                while ((array = freeArrays.poll()) != null) {
+                    if (lengthOf.applyAsInt(array) == length) {
+                        reuseCount.increment();
+                        return array;
+                    }
+                    drop(array);
+                }
+            }
+            reserve((long) length * elementBytes);
+            return constructor.apply(length);
+        }
+
+        private void free(T array) {
+            if (lengthOf.applyAsInt(array) == pooledLength.applyAsInt(batchSize)) {
+                freeArrays.offer(array);
+            } else {
+                drop(array);
+            }
+        }
+
+        private void clear() {
+            T array;
+            while ((array = freeArrays.poll()) != null) {
+                drop(array);
+            }
+        }
+
+        private void drop(T array) {
+            reserve(-(long) lengthOf.applyAsInt(array) * elementBytes);
+            destructor.accept(array);
+        }
+    }
+}
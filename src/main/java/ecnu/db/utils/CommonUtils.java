@@ -15,10 +15,12 @@ import ecnu.db.generator.constraintchain.filter.arithmetic.ArithmeticNode;
 import ecnu.db.generator.constraintchain.filter.arithmetic.ArithmeticNodeDeserializer;
 
 import java.io.*;
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.temporal.ChronoField;
+import java.time.zone.ZoneRules;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -33,6 +35,16 @@ public class CommonUtils {
     private CommonUtils() {
     }
 
+    /**
+     * 将epoch second换算为系统时区下的本地秒数，与dateFormatter和dateTimeFormatter的格式化结果一致
+     */
+    public static long toLocalEpochSecond(long epochSecond) {
+        if (ZONE_RULES.isFixedOffset()) {
+            return epochSecond + FIXED_OFFSET_SECONDS;
+        }
+        return epochSecond + ZONE_RULES.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+    }
+
     public static final int DECIMAL_DIVIDE_SCALE = 10;
 
     public static final String CANONICAL_NAME_CONTACT_SYMBOL = ".";
@@ -53,6 +65,8 @@ public class CommonUtils {
             .toFormatter();
     public static final DateTimeFormatter dateFormatter = DateTimeFormatter.ISO_LOCAL_DATE.withZone(ZoneId.systemDefault());
     public static final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME.withZone(ZoneId.systemDefault());
+    private static final ZoneRules ZONE_RULES = ZoneId.systemDefault().getRules();
+    private static final int FIXED_OFFSET_SECONDS = ZONE_RULES.isFixedOffset() ? ZONE_RULES.getOffset(Instant.EPOCH).getTotalSeconds() : 0;
     private static final SimpleModule touchStoneJsonModule = new SimpleModule()
             .addDeserializer(ArithmeticNode.class, new ArithmeticNodeDeserializer())
             .addDeserializer(ConstraintChainNode.class, new ConstraintChainNodeDeserializer())
@@ -0,0 +1,66 @@
+package ecnu.db.utils;
+
+/**
+ * 基于计数器的随机数。一个流的第counter个随机数只由全局种子、流的名称与counter决定，
+ * 与生成的线程和顺序无关，任意batch的任意一行都可以独立地重新生成。
+ * 第counter个随机数等于以流的密钥为种子的SplittableRandom的第counter个输出，counter从0开始
+ */
+public final class CounterRandom {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private static long seed = 0;
+
+    private final long key;
+
+    private CounterRandom(long key) {
+        this.key = key;
+    }
+
+    /**
+     * 需要在创建所有的流之前设置
+     */
+    public static void setSeed(long seed) {
+        CounterRandom.seed = seed;
+    }
+
+    /**
+     * @param names 流的名称，例如列名，不同名称的流互不相关
+     */
+    public static CounterRandom of(String... names) {
+        long key = mix(seed);
+        for (String name : names) {
+            for (int i = 0; i < name.length(); i++) {
+                key = mix(key ^ name.charAt(i));
+            }
+            key = mix(key + GOLDEN_GAMMA);
+        }
+        return new CounterRandom(key);
+    }
+
+    public long nextLong(long counter) {
+        return mix(key + (counter + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * @return [origin, bound)内的随机数
+     */
+    public long nextLong(long counter, long origin, long bound) {
+        return origin + Math.unsignedMultiplyHigh(nextLong(counter), bound - origin);
+    }
+
+    /**
+     * @return [0, bound)内的随机数
+     */
+    public int nextInt(long counter, int bound) {
+        return (int) Math.unsignedMultiplyHigh(nextLong(counter), bound);
+    }
+
+    /**
+     * splitmix64的输出函数
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,84 @@
+package ecnu.db.generator;
+
+import ecnu.db.schema.Column;
+import ecnu.db.schema.ColumnBuffer;
+import ecnu.db.schema.ColumnType;
+import ecnu.db.schema.Table;
+import ecnu.db.schema.TableManager;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.TimeStampSecTZVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.util.ByteArrayReadableSeekableByteChannel;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArrowBatchWriterTest {
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    /**
+     * Arrow文件中DATE与DATETIME列的值与CSV输出一致
+     */
+    @Test
+    void testDateRoundTrip() throws Exception {
+        TableManager.getInstance().addSchema("public.arrow",
+                new Table(new ArrayList<>(List.of("public.arrow.d", "public.arrow.t")), 3));
+        Column dateColumn = new Column(ColumnType.DATE);
+        dateColumn.setMin(10000);
+        Column dateTimeColumn = new Column(ColumnType.DATETIME);
+        dateTimeColumn.setMin(1_000_000_000L);
+        DataBatch batch = new DataBatch("public.arrow", new String[0], new LongBuffer[0],
+                new Column[]{dateColumn, dateTimeColumn},
+                new ColumnBuffer[]{ColumnBuffer.of(new long[]{0, 5000, Long.MIN_VALUE}),
+                        ColumnBuffer.of(new long[]{0, 86399, Long.MIN_VALUE})}, 3);
+
+        RowEncoder encoder = new RowEncoder(1);
+        batch.encodeRows(0, batch.size(), encoder);
+        ByteArrayOutputStream csvStream = new ByteArrayOutputStream();
+        encoder.writeTo(csvStream);
+        String[] csvRows = csvStream.toString(StandardCharsets.UTF_8).split("\n");
+
+        ByteArrayOutputStream arrowStream = new ByteArrayOutputStream();
+        try (ArrowBatchWriter arrowBatchWriter = new ArrowBatchWriter(OutputCodec.NONE)) {
+            arrowBatchWriter.write(batch, arrowStream);
+        }
+        try (BufferAllocator allocator = new RootAllocator();
+             ArrowFileReader reader = new ArrowFileReader(
+                     new ByteArrayReadableSeekableByteChannel(arrowStream.toByteArray()), allocator)) {
+            assertTrue(reader.loadNextBatch());
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            DateDayVector dates = (DateDayVector) root.getVector("d");
+            TimeStampSecTZVector dateTimes = (TimeStampSecTZVector) root.getVector("t");
+            ZoneId zoneId = ZoneId.of(dateTimes.getTimeZone());
+            assertEquals(batch.size(), root.getRowCount());
+            for (int rowId = 0; rowId < batch.size(); rowId++) {
+                String[] csvValues = csvRows[rowId].split(",");
+                if (dates.isNull(rowId)) {
+                    assertEquals("\\N", csvValues[0]);
+                } else {
+                    assertEquals(csvValues[0], LocalDate.ofEpochDay(dates.get(rowId)).toString());
+                }
+                if (dateTimes.isNull(rowId)) {
+                    assertEquals("\\N", csvValues[1]);
+                } else {
+                    assertEquals(csvValues[1], DATE_TIME_FORMATTER.format(
+                            Instant.ofEpochSecond(dateTimes.get(rowId)).atZone(zoneId)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ecnu.db.generator;
+
+import ecnu.db.generator.joininfo.JoinStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConstructCpModelTest {
+
+    private static ConstructCpModel constructModel(long trueSize, long falseSize) {
+        Map<JoinStatus, Long> histogram = new LinkedHashMap<>();
+        histogram.put(new JoinStatus(new boolean[]{true}), trueSize);
+        histogram.put(new JoinStatus(new boolean[]{false}), falseSize);
+        int range = (int) (trueSize + falseSize);
+        ConstructCpModel cpModel = new ConstructCpModel();
+        cpModel.initModel(histogram, 2, range);
+        // 满足filter的数据中有一半填充第0个主键状态
+        cpModel.addJoinCardinalityValidVar(0, 0);
+        cpModel.addJoinCardinalityConstraint(trueSize / 2);
+        return cpModel;
+    }
+
+    @Test
+    void testReuse() {
+        ConstructCpModel cpModel = constructModel(4000, 6000);
+        cpModel.solve();
+        CpSolution solution = cpModel.getSolution();
+
+        ConstructCpModel closeModel = constructModel(8000, 12000);
+        assertTrue(closeModel.reuse(solution, 0.01));
+        long[][] populations = closeModel.solve();
+        assertEquals(8000, Arrays.stream(populations[0]).sum());
+        assertEquals(12000, Arrays.stream(populations[1]).sum());
+        assertEquals(4000, populations[0][0], 4000 * 0.04);
+
+        ConstructCpModel farModel = constructModel(6000, 4000);
+        assertFalse(farModel.reuse(solution, 0.01));
+        farModel.warmStart(solution);
+        populations = farModel.solve();
+        assertEquals(6000, Arrays.stream(populations[0]).sum());
+        assertEquals(3000, populations[0][0], 3000 * 0.04);
+    }
+
+    @Test
+    void testGreedyFallback() {
+        Map<JoinStatus, Long> histogram = new LinkedHashMap<>();
+        histogram.put(new JoinStatus(new boolean[]{true}), 100L);
+        histogram.put(new JoinStatus(new boolean[]{false}), 300L);
+        ConstructCpModel cpModel = new ConstructCpModel(new CpSolverConfig(10, 1, 0, true));
+        cpModel.initModel(histogram, 3, 400);
+        // 第0个主键状态最多只能填充100行，约束无解
+        cpModel.addJoinCardinalityValidVar(0, 0);
+        cpModel.addJoinCardinalityConstraint(200);
+        cpModel.addJoinCardinalityValidVar(0, 1);
+        cpModel.addJoinCardinalityValidVar(1, 1);
+        cpModel.addJoinCardinalityConstraint(150);
+        long[][] populations = cpModel.solve();
+        assertEquals(100, Arrays.stream(populations[0]).sum());
+        assertEquals(300, Arrays.stream(populations[1]).sum());
+        assertEquals(100, populations[0][0]);
+        assertEquals(150, populations[0][1] + populations[1][1], 150 * 0.04);
+    }
+
+    @Test
+    void testMergeEquivalentPkStatuses() {
+        Map<JoinStatus, Long> histogram = new LinkedHashMap<>();
+        histogram.put(new JoinStatus(new boolean[]{true}), 1000L);
+        ConstructCpModel cpModel = new ConstructCpModel();
+        // 主键状态0与1出现在相同的约束中且输出状态相同，合并为一个变量，解只填充在代表状态0上
+        JoinStatus[] outputStatuses = {new JoinStatus(new boolean[]{false}), new JoinStatus(new boolean[]{true})};
+        cpModel.initModel(histogram, outputStatuses, new int[]{0, 0, 0, 1}, 1000);
+        cpModel.addJoinCardinalityValidVar(0, 0);
+        cpModel.addJoinCardinalityValidVar(0, 1);
+        cpModel.addJoinCardinalityConstraint(500);
+        long[][] populations = cpModel.solve();
+        assertEquals(1000, Arrays.stream(populations[0]).sum());
+        assertEquals(0, populations[0][1]);
+        assertEquals(500, populations[0][0], 500 * 0.04);
+    }
+}
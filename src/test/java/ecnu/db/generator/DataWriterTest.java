@@ -0,0 +1,116 @@
+package ecnu.db.generator;
+
+import ecnu.db.schema.Column;
+import ecnu.db.schema.ColumnBuffer;
+import ecnu.db.schema.ColumnManager;
+import ecnu.db.schema.ColumnType;
+import ecnu.db.utils.exception.TouchstoneException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DataWriterTest {
+    @TempDir
+    Path outputDir;
+
+    private static DataBatch createBatch() throws TouchstoneException {
+        Column keyColumn = new Column(ColumnType.INTEGER);
+        keyColumn.setOriginalType("bigint");
+        ColumnManager.getInstance().addColumn("public.copy.k", keyColumn);
+        Column attColumn = new Column(ColumnType.INTEGER);
+        attColumn.setSpecialValue(1);
+        return new DataBatch("public.copy", new String[]{"public.copy.k"},
+                new LongBuffer[]{LongBuffer.wrap(new long[]{1, Long.MIN_VALUE})},
+                new Column[]{attColumn}, new ColumnBuffer[]{ColumnBuffer.of(new long[]{5, Long.MIN_VALUE})}, 2);
+    }
+
+    private byte[] write(BatchEncoder batchEncoder, int size) throws Exception {
+        DataWriter dataWriter = new DataWriter(outputDir.toString(), 0, 1, 1, OutputFormat.CSV, OutputCodec.NONE);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        dataWriter.writeBatch(batchEncoder, size, outputStream);
+        dataWriter.waitWriteFinish();
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    void testGetCopySql() {
+        List<String> columnNames = List.of("public.copy.k", "public.copy.a");
+        assertEquals("COPY public.copy (\"k\",\"a\") FROM STDIN DELIMITER ',' NULL '\\N'",
+                DataWriter.getCopySql("public.copy", columnNames, OutputFormat.CSV));
+        assertEquals("COPY public.copy (\"k\",\"a\") FROM STDIN WITH (FORMAT binary)",
+                DataWriter.getCopySql("public.copy", columnNames, OutputFormat.PG_BINARY));
+    }
+
+    @Test
+    void testCsvCopyFraming() throws Exception {
+        DataBatch batch = createBatch();
+        assertEquals("1,5\n\\N,\\N\n", new String(write(batch, batch.size()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testBinaryCopyFraming() throws Exception {
+        DataBatch batch = createBatch();
+        ByteBuffer buffer = ByteBuffer.wrap(write(new PgBinaryBatchEncoder(batch), batch.size()));
+        byte[] signature = new byte[11];
+        buffer.get(signature);
+        assertArrayEquals(new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0}, signature);
+        assertEquals(0, buffer.getInt());
+        assertEquals(0, buffer.getInt());
+        // 第一行：int8主键与int4属性
+        assertEquals(2, buffer.getShort());
+        assertEquals(8, buffer.getInt());
+        assertEquals(1, buffer.getLong());
+        assertEquals(4, buffer.getInt());
+        assertEquals(5, buffer.getInt());
+        // 第二行：两列均为null
+        assertEquals(2, buffer.getShort());
+        assertEquals(-1, buffer.getInt());
+        assertEquals(-1, buffer.getInt());
+        assertEquals(-1, buffer.getShort());
+        assertEquals(0, buffer.remaining());
+    }
+
+    /**
+     * 写入文件的binary数据只包含行，文件头和文件尾由导入脚本写出
+     */
+    @Test
+    void testBinaryFileWithoutFraming() throws Exception {
+        DataWriter dataWriter = new DataWriter(outputDir.toString(), 0, 1, 1, OutputFormat.PG_BINARY, OutputCodec.NONE);
+        dataWriter.addWriteTask(createBatch());
+        dataWriter.waitWriteFinish();
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(outputDir.resolve("public.copy-0-0.bin")));
+        assertEquals(2, buffer.getShort());
+        assertEquals(8, buffer.getInt());
+        assertEquals(1, buffer.getLong());
+        buffer.position(buffer.position() + 8);
+        assertEquals(2, buffer.getShort());
+        assertEquals(-1, buffer.getInt());
+        assertEquals(-1, buffer.getInt());
+        assertEquals(0, buffer.remaining());
+    }
+
+    /**
+     * 编码时抛出的RuntimeException需要使waitWriteFinish失败
+     */
+    @Test
+    void testRuntimeFailure() throws Exception {
+        DataWriter dataWriter = new DataWriter(outputDir.toString(), 0, 1, 1, OutputFormat.CSV, OutputCodec.NONE);
+        // 没有类型的列在输出时抛出NullPointerException
+        dataWriter.addWriteTask(new DataBatch("public.copy", new String[0], new LongBuffer[0], new Column[]{new Column()},
+                new ColumnBuffer[]{ColumnBuffer.of(new long[]{1})}, 1));
+        IOException exception = assertThrows(IOException.class, dataWriter::waitWriteFinish);
+        assertEquals(NullPointerException.class, exception.getCause().getClass());
+    }
+}
@@ -0,0 +1,22 @@
+package ecnu.db.generator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class GreedyPopulationSolverTest {
+
+    private static GreedyPopulationSolver createSolver() {
+        GreedyPopulationSolver solver = new GreedyPopulationSolver(new long[]{100}, 2, new boolean[]{true, true});
+        solver.addConstraint(new int[]{0}, 60, 60);
+        return solver;
+    }
+
+    @Test
+    void testWorkBudget() {
+        // 没有评估次数时保留初始分配，所有行填充到不在约束中的cell
+        assertArrayEquals(new long[]{0, 100}, createSolver().solve(null, Double.POSITIVE_INFINITY, 0));
+        // 一次评估即可找到满足约束的移动，与时间上限无关
+        assertArrayEquals(new long[]{60, 40}, createSolver().solve(null, Double.POSITIVE_INFINITY, 1));
+    }
+}
@@ -0,0 +1,80 @@
+package ecnu.db.generator;
+
+import ecnu.db.schema.Column;
+import ecnu.db.schema.ColumnBuffer;
+import ecnu.db.schema.ColumnType;
+import ecnu.db.utils.exception.TouchstoneException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PgBinaryBatchEncoderTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "13047|2|0|0|130;4700",
+            "5|2|-1|0|500",
+            "123456789|1|1|0|1234;5678;9000",
+            "-1|0|0|16384|1",
+            "0|2|0|0|''",
+            "100000000|0|2|0|1",
+            "-99999999999|4|1|16384|999;9999;9999",
+            "0|0|0|0|''",
+            "-1234567|3|0|16384|1234;5670",
+            "123456789|5|0|0|1234;5678;9000",
+            "-5|7|-2|16384|50",
+            "9223372036854775807|16|0|0|922;3372;368;5477;5807",
+            "-9223372036854775807|16|0|16384|922;3372;368;5477;5807"})
+    void testAppendNumeric(long unscaledValue, int scale, int weight, int sign, String digits) throws IOException {
+        RowEncoder encoder = new RowEncoder(1);
+        PgBinaryBatchEncoder.appendNumeric(encoder, unscaledValue, scale, new short[10]);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        encoder.writeTo(outputStream);
+        ByteBuffer buffer = ByteBuffer.wrap(outputStream.toByteArray());
+        List<Short> expectedDigits = new ArrayList<>();
+        for (String digit : digits.split(";")) {
+            if (!digit.isEmpty()) {
+                expectedDigits.add(Short.parseShort(digit));
+            }
+        }
+        assertEquals(8 + 2 * expectedDigits.size(), buffer.getInt());
+        assertEquals(expectedDigits.size(), buffer.getShort());
+        assertEquals(weight, buffer.getShort());
+        assertEquals(sign, buffer.getShort());
+        assertEquals(scale, buffer.getShort());
+        for (Short expectedDigit : expectedDigits) {
+            assertEquals(expectedDigit, buffer.getShort());
+        }
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    void testDecimalScale() throws TouchstoneException {
+        Column column = new Column(ColumnType.DECIMAL);
+        column.setOriginalType("DECIMAL(15,2)");
+        column.setSpecialValue(1);
+        assertEquals(0, column.getDecimalScale());
+        column.setSpecialValue(1000);
+        assertEquals(3, column.getDecimalScale());
+        column.setSpecialValue(10_000_000_000_000_000L);
+        assertEquals(PgBinaryBatchEncoder.NUMERIC_MAX_SCALE, column.getDecimalScale());
+        DataBatch batch = new DataBatch("public.numeric", new String[0], new LongBuffer[0], new Column[]{column},
+                new ColumnBuffer[]{ColumnBuffer.of(new long[]{1})}, 1);
+        new PgBinaryBatchEncoder(batch);
+        column.setSpecialValue(100_000_000_000_000_000L);
+        assertThrows(TouchstoneException.class, () -> new PgBinaryBatchEncoder(batch));
+        column.setSpecialValue(20);
+        assertEquals(-1, column.getDecimalScale());
+        assertThrows(TouchstoneException.class, () -> new PgBinaryBatchEncoder(batch));
+    }
+}
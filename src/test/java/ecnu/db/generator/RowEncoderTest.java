@@ -0,0 +1,88 @@
+package ecnu.db.generator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RowEncoderTest {
+
+    private static String encode(RowEncoder encoder) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        encoder.writeTo(outputStream);
+        return outputStream.toString(StandardCharsets.US_ASCII);
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, 1, -1, 9, 10, 99, 100, 123456789, -987654321, Long.MAX_VALUE, Long.MIN_VALUE})
+    void testAppendLong(long value) throws IOException {
+        RowEncoder encoder = new RowEncoder(1);
+        encoder.appendLong(value);
+        encoder.appendDelimiter();
+        encoder.appendNull();
+        assertEquals(value + ",\\N", encode(encoder));
+        assertEquals(0, encoder.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, 1, -1, 5, -5, 13047, -13047, 100, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE})
+    void testAppendFixedPoint(long unscaledValue) throws IOException {
+        RowEncoder encoder = new RowEncoder(1);
+        for (int scale : new int[]{0, 2, 10}) {
+            encoder.appendFixedPoint(unscaledValue, scale);
+            assertEquals(BigDecimal.valueOf(unscaledValue, scale).toPlainString(), encode(encoder));
+        }
+    }
+
+    @Test
+    void testAppendDateAndDateTime() throws IOException {
+        RowEncoder encoder = new RowEncoder(1);
+        long minDay = LocalDate.of(1, 1, 1).toEpochDay();
+        long maxDay = LocalDate.of(9999, 12, 31).toEpochDay();
+        for (long day = -800_000; day <= 800_000; day += 7) {
+            encoder.appendDate(day);
+            assertEquals(LocalDate.ofEpochDay(day).toString(), encode(encoder));
+        }
+        for (long day : new long[]{minDay, maxDay, maxDay + 1, minDay - 367}) {
+            encoder.appendDate(day);
+            assertEquals(LocalDate.ofEpochDay(day).toString(), encode(encoder));
+        }
+        Random random = new Random(20240229L);
+        for (int i = 0; i < 100_000; i++) {
+            assertDateTime(encoder, random.nextLong(-5_000_000_000L, 5_000_000_000L));
+        }
+    }
+
+    /**
+     * 负的epoch、日期与闰日的边界，以及夏令时切换前后的本地时间
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"1969-12-31T23:59:59", "1970-01-01T00:00:00", "1970-01-01T23:59:59", "1900-02-28T23:59:59",
+            "1900-03-01T00:00:00", "2000-02-29T00:00:00", "2000-02-29T23:59:59", "0001-01-01T00:00:00",
+            "9999-12-31T23:59:59", "2021-03-14T01:59:59", "2021-03-14T02:30:00", "2021-03-14T03:00:00",
+            "2021-11-07T00:59:59", "2021-11-07T01:30:00", "2021-11-07T02:00:00"})
+    void testAppendDateTimeEdges(String dateTime) throws IOException {
+        long second = LocalDateTime.parse(dateTime).toEpochSecond(ZoneOffset.UTC);
+        RowEncoder encoder = new RowEncoder(1);
+        assertDateTime(encoder, second);
+        assertDateTime(encoder, second - 1);
+        assertDateTime(encoder, second + 1);
+    }
+
+    private static void assertDateTime(RowEncoder encoder, long second) throws IOException {
+        encoder.appendDateTime(second);
+        assertEquals(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC)),
+                encode(encoder));
+    }
+}
@@ -0,0 +1,42 @@
+package ecnu.db.generator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatusMatrixTest {
+
+    @Test
+    void testProjectAndRetain() {
+        int range = 1000;
+        Random random = new Random(1);
+        boolean[][] statusVectors = new boolean[3][range];
+        StatusMatrix statusMatrix = new StatusMatrix(range, statusVectors.length);
+        for (int chainIndex = 0; chainIndex < statusVectors.length; chainIndex++) {
+            long[] bitmap = new long[statusMatrix.getWordSize()];
+            for (int rowId = 0; rowId < range; rowId++) {
+                statusVectors[chainIndex][rowId] = random.nextBoolean();
+                if (statusVectors[chainIndex][rowId]) {
+                    bitmap[rowId >>> 6] |= 1L << rowId;
+                }
+            }
+            statusMatrix.setChainStatus(chainIndex, bitmap);
+        }
+        int[] chainIndexes = {2, 0};
+        long[] codes = new long[Long.SIZE];
+        for (int wordIndex = 0; wordIndex < statusMatrix.getWordSize(); wordIndex++) {
+            statusMatrix.projectWord(chainIndexes, wordIndex, codes);
+            for (int rowId = wordIndex * Long.SIZE; rowId < Math.min((wordIndex + 1) * Long.SIZE, range); rowId++) {
+                long expected = (statusVectors[2][rowId] ? 1 : 0) | (statusVectors[0][rowId] ? 2 : 0);
+                assertEquals(expected, codes[rowId % Long.SIZE]);
+            }
+        }
+        statusMatrix.retain(1, rowId -> rowId % 3 == 0);
+        for (int rowId = 0; rowId < range; rowId++) {
+            assertEquals(statusVectors[1][rowId] && rowId % 3 == 0, statusMatrix.get(rowId, 1));
+            assertEquals(statusVectors[0][rowId], statusMatrix.get(rowId, 0));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ecnu.db.generator.constraintchain.filter;
+
+import ecnu.db.generator.constraintchain.filter.operation.CompareOperator;
+import ecnu.db.generator.constraintchain.filter.operation.UniVarFilterOperation;
+import ecnu.db.schema.Column;
+import ecnu.db.schema.ColumnBuffer;
+import ecnu.db.schema.ColumnManager;
+import ecnu.db.schema.ColumnType;
+import ecnu.db.utils.exception.TouchstoneException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilterCacheTest {
+    private static final String COLUMN_NAME = "public.cache.c";
+
+    private static UniVarFilterOperation operation(CompareOperator operator, long data) {
+        Parameter parameter = new Parameter();
+        parameter.setData(data);
+        return new UniVarFilterOperation(COLUMN_NAME, operator, new ArrayList<>(List.of(parameter)));
+    }
+
+    private static LogicNode logicNode(BoolExprType type, BoolExprNode... children) {
+        LogicNode logicNode = new LogicNode();
+        logicNode.setType(type);
+        logicNode.setChildren(new ArrayList<>(List.of(children)));
+        return logicNode;
+    }
+
+    /**
+     * PG的filter根节点是只有一个子节点的AND
+     */
+    @Test
+    void testBuildWithSingleChildRoots() throws TouchstoneException {
+        Column column = new Column(ColumnType.INTEGER);
+        column.setColumnData(ColumnBuffer.of(new long[]{1, 7, 3, 9, 4, 5}));
+        ColumnManager.getInstance().addColumn(COLUMN_NAME, column);
+        List<LogicNode> roots = new ArrayList<>();
+        for (long value = 1; value <= 3; value++) {
+            roots.add(logicNode(BoolExprType.AND,
+                    logicNode(BoolExprType.AND, operation(CompareOperator.LT, 5), operation(CompareOperator.NE, value))));
+        }
+        FilterCache cache = FilterCache.build(roots, 6);
+        assertTrue(cache.size() > 0);
+        assertEquals(1, cache.size());
+        long[] bitmap = cache.getBitmap(operation(CompareOperator.LT, 5));
+        assertNotNull(bitmap);
+        assertArrayEquals(new long[]{0b10101L}, bitmap);
+    }
+}
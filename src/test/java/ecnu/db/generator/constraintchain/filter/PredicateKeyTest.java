@@ -0,0 +1,46 @@
+package ecnu.db.generator.constraintchain.filter;
+
+import ecnu.db.generator.constraintchain.filter.operation.CompareOperator;
+import ecnu.db.generator.constraintchain.filter.operation.UniVarFilterOperation;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class PredicateKeyTest {
+
+    private static UniVarFilterOperation operation(CompareOperator operator, long... data) {
+        List<Parameter> parameters = new ArrayList<>();
+        for (long d : data) {
+            Parameter parameter = new Parameter();
+            parameter.setData(d);
+            parameters.add(parameter);
+        }
+        return new UniVarFilterOperation("public.t.c", operator, parameters);
+    }
+
+    private static LogicNode logicNode(BoolExprType type, BoolExprNode... children) {
+        LogicNode logicNode = new LogicNode();
+        logicNode.setType(type);
+        logicNode.setChildren(new ArrayList<>(List.of(children)));
+        return logicNode;
+    }
+
+    @Test
+    void testPredicateKey() {
+        assertEquals(operation(CompareOperator.IN, 3, 1, 3).getPredicateKey(),
+                operation(CompareOperator.IN, 1, 3).getPredicateKey());
+        assertNotEquals(operation(CompareOperator.LT, 1).getPredicateKey(),
+                operation(CompareOperator.LE, 1).getPredicateKey());
+        LogicNode left = logicNode(BoolExprType.AND, operation(CompareOperator.LT, 1), operation(CompareOperator.EQ, 2));
+        LogicNode right = logicNode(BoolExprType.AND, operation(CompareOperator.EQ, 2), operation(CompareOperator.LT, 1));
+        assertEquals(left.getPredicateKey(), right.getPredicateKey());
+        assertEquals(operation(CompareOperator.LT, 1).getPredicateKey(),
+                logicNode(BoolExprType.AND, operation(CompareOperator.LT, 1)).getPredicateKey());
+        right.reverse();
+        assertNotEquals(left.getPredicateKey(), right.getPredicateKey());
+    }
+}
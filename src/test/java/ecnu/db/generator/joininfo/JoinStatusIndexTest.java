@@ -0,0 +1,37 @@
+package ecnu.db.generator.joininfo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JoinStatusIndexTest {
+
+    @Test
+    void testNarrowStatus() {
+        JoinStatusIndex statusIndex = new JoinStatusIndex();
+        for (long code = 0; code < 100; code++) {
+            assertEquals(code, statusIndex.add(JoinStatus.ofCode(code * 3, 10)));
+        }
+        for (long code = 0; code < 100; code++) {
+            assertEquals(code, statusIndex.indexOf(code * 3));
+            assertEquals(code, statusIndex.add(JoinStatus.ofCode(code * 3, 10)));
+        }
+        assertEquals(-1, statusIndex.indexOf(1));
+        boolean[] status = {true, false, true};
+        assertEquals(JoinStatus.ofCode(5, 3), new JoinStatus(status));
+        assertArrayEquals(status, statusIndex.get(statusIndex.add(new JoinStatus(status))).status());
+    }
+
+    @Test
+    void testWideStatus() {
+        JoinStatusIndex statusIndex = new JoinStatusIndex();
+        boolean[] status = new boolean[70];
+        status[69] = true;
+        assertEquals(0, statusIndex.add(new JoinStatus(status)));
+        status[0] = true;
+        assertEquals(1, statusIndex.add(new JoinStatus(status)));
+        assertEquals(1, statusIndex.indexOf(new JoinStatus(status)));
+        assertEquals(-1, statusIndex.indexOf(new JoinStatus(new boolean[70])));
+    }
+}
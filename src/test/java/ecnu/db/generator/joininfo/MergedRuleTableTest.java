@@ -0,0 +1,41 @@
+package ecnu.db.generator.joininfo;
+
+import ecnu.db.utils.CounterRandom;
+import org.junit.jupiter.api.Test;
+
+import java.nio.LongBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MergedRuleTableTest {
+
+    @Test
+    void testGetKeys() {
+        JoinStatus trueStatus = new JoinStatus(new boolean[]{true});
+        JoinStatus falseStatus = new JoinStatus(new boolean[]{false});
+        Map<JoinStatus, List<PkRange>> mergedRules = new LinkedHashMap<>();
+        // 展开规则生成的首尾相接的区间
+        mergedRules.put(trueStatus, List.of(new PkRange(10, 12), new PkRange(12, 14), new PkRange(14, 15),
+                new PkRange(100, 103)));
+        mergedRules.put(falseStatus, List.of(new PkRange(0, 10)));
+        MergedRuleTable ruleTable = new MergedRuleTable(mergedRules);
+        assertEquals(8, ruleTable.getStatusSize(trueStatus));
+        int[] ruleIndexes = ruleTable.getRuleIndexes(new JoinStatus[]{trueStatus, falseStatus,
+                new JoinStatus(new boolean[]{true, true})});
+        assertArrayEquals(new int[]{0, 1, -1}, ruleIndexes);
+
+        long[] keys = {0, 4, 5, 7, 3, 2};
+        ruleTable.getKeys(new int[]{0, 0, 0, 0, 1, 2}, ruleIndexes, LongBuffer.wrap(keys), 0, keys.length, CounterRandom.of("fk"), 0);
+        assertArrayEquals(new long[]{10, 14, 100, 102, 3, Long.MIN_VALUE}, keys);
+
+        ruleTable.updateAssignedIndex(trueStatus, 4);
+        ruleTable.refreshRuleCounter();
+        keys = new long[]{1, 4};
+        ruleTable.getKeys(new int[]{0, 1}, ruleIndexes, LongBuffer.wrap(keys), 0, keys.length, CounterRandom.of("fk"), 0);
+        assertArrayEquals(new long[]{100, 4}, keys);
+    }
+}
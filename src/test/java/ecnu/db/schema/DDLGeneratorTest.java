@@ -0,0 +1,35 @@
+package ecnu.db.schema;
+
+import ecnu.db.generator.PgBinaryBatchEncoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DDLGeneratorTest {
+    @TempDir
+    Path dataDir;
+
+    /**
+     * binary导入命令在POSIX sh中输出 文件头 + 各个文件的行 + 文件尾
+     */
+    @Test
+    void testBinaryLoadCommand() throws Exception {
+        Files.write(dataDir.resolve("t-0-0.bin"), new byte[]{0, 1, 2});
+        Files.write(dataDir.resolve("t-0-1.bin"), new byte[]{(byte) 0xff, '\n', '\\'});
+        Process process = new ProcessBuilder("/bin/sh", "-c", DDLGenerator.getBinaryLoadCommand("cat ./t-0-*.bin"))
+                .directory(dataDir.toFile()).start();
+        byte[] output = process.getInputStream().readAllBytes();
+        assertEquals(0, process.waitFor());
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(PgBinaryBatchEncoder.getHeader());
+        expected.write(new byte[]{0, 1, 2, (byte) 0xff, '\n', '\\'});
+        expected.write(PgBinaryBatchEncoder.getTrailer());
+        assertArrayEquals(expected.toByteArray(), output);
+    }
+}
@@ -0,0 +1,77 @@
+package ecnu.db.schema;
+
+import ecnu.db.generator.constraintchain.filter.operation.CompareOperator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比较FilterKernel的标量实现与SIMD实现，运行方式：
+ * java --add-modules jdk.incubator.vector -cp target/test-classes:target/classes:依赖 ecnu.db.schema.FilterKernelBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class FilterKernelBenchmark {
+    @Param({"LT", "EQ", "NE"})
+    private CompareOperator operator;
+
+    @Param({"4096", "1048576"})
+    private int size;
+
+    private ColumnBuffer data;
+
+    private long[] inValues;
+
+    private long[] words;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        long[] values = new long[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt(20) == 0 ? Long.MIN_VALUE : random.nextInt(1000);
+        }
+        data = ColumnBuffer.of(values);
+        inValues = new long[]{7, 100, 365, 512, 999};
+        words = new long[FilterKernel.getWordSize(0, size)];
+    }
+
+    @Benchmark
+    public long[] compareScalar() {
+        FilterKernel.compareScalar(operator, data, 0, size, 500, words);
+        // 与compare一致，结果与null bitmap合并
+        data.clearNulls(0, size, words);
+        return words;
+    }
+
+    @Benchmark
+    public long[] compareVector() {
+        FilterKernel.compare(operator, data, 0, size, 500, words);
+        return words;
+    }
+
+    @Benchmark
+    public long[] inScalar() {
+        FilterKernel.inScalar(data, 0, size, inValues, false, words);
+        data.clearNulls(0, size, words);
+        return words;
+    }
+
+    @Benchmark
+    public long[] inVector() {
+        FilterKernel.in(data, 0, size, inValues, false, words);
+        return words;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(FilterKernelBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,104 @@
+package ecnu.db.schema;
+
+import ecnu.db.generator.constraintchain.filter.operation.CompareOperator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FilterKernelTest {
+    private static final CompareOperator[] OPERATORS = {CompareOperator.ISNULL, CompareOperator.IS_NOT_NULL,
+            CompareOperator.EQ, CompareOperator.NE, CompareOperator.LT, CompareOperator.LE, CompareOperator.GT, CompareOperator.GE};
+
+    /**
+     * 取值范围覆盖byte、short、int与long四种类型
+     */
+    private static final long[] SCALES = {1, 1000, 1_000_000, 100_000_000_000L};
+
+    private static long[] randomData(int size, long scale) {
+        Random random = new Random(7);
+        long[] data = new long[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextInt(10) == 0 ? Long.MIN_VALUE : random.nextInt(100) * scale;
+        }
+        return data;
+    }
+
+    private static boolean expected(CompareOperator operator, long data, long value) {
+        return switch (operator) {
+            case ISNULL -> data == Long.MIN_VALUE;
+            case IS_NOT_NULL -> data != Long.MIN_VALUE;
+            case EQ -> data != Long.MIN_VALUE && data == value;
+            case NE -> data != Long.MIN_VALUE && data != value;
+            case LT -> data != Long.MIN_VALUE && data < value;
+            case LE -> data != Long.MIN_VALUE && data <= value;
+            case GT -> data != Long.MIN_VALUE && data > value;
+            case GE -> data != Long.MIN_VALUE && data >= value;
+            default -> throw new UnsupportedOperationException();
+        };
+    }
+
+    @Test
+    void testCompare() {
+        for (long scale : SCALES) {
+            long[] data = randomData(1000, scale);
+            ColumnBuffer buffer = ColumnBuffer.of(data);
+            // 起始行不与64对齐，参数超出byte的范围
+            int start = 37;
+            int end = 1000;
+            for (long value : new long[]{42 * scale, 300}) {
+                for (CompareOperator operator : OPERATORS) {
+                    long[] expectedWords = new long[FilterKernel.getWordSize(start, end)];
+                    for (int rowId = start; rowId < end; rowId++) {
+                        if (expected(operator, data[rowId], value)) {
+                            expectedWords[(rowId - start) >>> 6] |= 1L << (rowId - start);
+                        }
+                    }
+                    long[] words = new long[expectedWords.length];
+                    Arrays.fill(words, -1L);
+                    FilterKernel.compare(operator, buffer, start, end, value, words);
+                    assertArrayEquals(expectedWords, words, buffer.getWidth() + " " + operator.name());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testNarrowWidth() {
+        assertEquals(ColumnBuffer.Width.BYTE, ColumnBuffer.of(new long[]{Long.MIN_VALUE, 0, 127}).getWidth());
+        assertEquals(ColumnBuffer.Width.SHORT, ColumnBuffer.of(new long[]{128, Long.MIN_VALUE}).getWidth());
+        assertEquals(ColumnBuffer.Width.INT, ColumnBuffer.of(new long[]{-40000}).getWidth());
+        assertEquals(ColumnBuffer.Width.LONG, ColumnBuffer.of(new long[]{1L << 40}).getWidth());
+        ColumnBuffer buffer = ColumnBuffer.of(new long[]{Long.MIN_VALUE, 0, 300});
+        assertEquals(Long.MIN_VALUE, buffer.get(0));
+        assertEquals(0, buffer.get(1));
+        assertEquals(300, buffer.get(2));
+    }
+
+    @Test
+    void testIn() {
+        for (long scale : SCALES) {
+            long[] data = randomData(777, scale);
+            ColumnBuffer buffer = ColumnBuffer.of(data);
+            long[] shortList = {3 * scale, 17 * scale, 42 * scale, 1L << 40};
+            long[] longList = new long[20];
+            for (int i = 0; i < longList.length; i++) {
+                longList[i] = i * 5L * scale;
+            }
+            for (long[] values : new long[][]{shortList, longList}) {
+                for (boolean negate : new boolean[]{false, true}) {
+                    long[] words = new long[FilterKernel.getWordSize(0, data.length)];
+                    FilterKernel.in(buffer, 0, data.length, FilterKernel.retainFitting(buffer, values), negate, words);
+                    for (int rowId = 0; rowId < data.length; rowId++) {
+                        boolean contains = Arrays.binarySearch(values, data[rowId]) >= 0;
+                        boolean expected = data[rowId] != Long.MIN_VALUE && contains != negate;
+                        assertEquals(expected, (words[rowId >>> 6] & (1L << rowId)) != 0);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ecnu.db.schema;
+
+import ecnu.db.generator.RowEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StringTemplateTest {
+
+    @Test
+    void testParameterValue() throws IOException {
+        StringTemplate stringTemplate = new StringTemplate(20, 30, 7, 10000);
+        stringTemplate.addSubStringIndex(30);
+        stringTemplate.addSubStringIndex(10);
+        stringTemplate.addSubStringIndex(20);
+        RowEncoder encoder = new RowEncoder(1);
+        Set<String> values = new HashSet<>();
+        for (long dataId = -1; dataId < 10000; dataId++) {
+            String value = stringTemplate.getParameterValue(dataId);
+            assertEquals(20, value.length());
+            assertEquals(value, stringTemplate.getParameterValue(dataId));
+            stringTemplate.writeParameterValue(dataId, encoder);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            encoder.writeTo(outputStream);
+            assertEquals(value, outputStream.toString(StandardCharsets.US_ASCII));
+            assertTrue(values.add(value));
+        }
+        assertEquals('-', stringTemplate.getParameterValue(-1).charAt(0));
+        assertEquals('0', stringTemplate.getParameterValue(10).charAt(0));
+        assertEquals('1', stringTemplate.getParameterValue(20).charAt(0));
+        stringTemplate.addSubStringIndex(15);
+        assertEquals('2', stringTemplate.getParameterValue(20).charAt(0));
+    }
+
+    @Test
+    void testValueCache() throws IOException {
+        StringTemplate uncached = new StringTemplate(12, 12, 3, 5000);
+        StringTemplate dictionary = new StringTemplate(12, 12, 3, 5000);
+        dictionary.prepareValueCache(5020, 8192, 0);
+        StringTemplate boundedCache = new StringTemplate(12, 12, 3, 5000);
+        boundedCache.prepareValueCache(5020, 1024, 1024);
+        RowEncoder encoder = new RowEncoder(1);
+        for (long dataId = -1; dataId < 5020; dataId += 7) {
+            String value = uncached.getParameterValue(dataId);
+            for (StringTemplate stringTemplate : new StringTemplate[]{dictionary, boundedCache, dictionary}) {
+                stringTemplate.writeParameterValue(dataId, encoder);
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                encoder.writeTo(outputStream);
+                assertEquals(value, outputStream.toString(StandardCharsets.US_ASCII));
+            }
+        }
+        dictionary.addSubStringIndex(14);
+        dictionary.writeParameterValue(14, encoder);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        encoder.writeTo(outputStream);
+        assertEquals('0', outputStream.toString(StandardCharsets.US_ASCII).charAt(0));
+    }
+}
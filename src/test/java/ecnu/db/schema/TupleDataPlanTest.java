@@ -0,0 +1,76 @@
+package ecnu.db.schema;
+
+import ecnu.db.utils.CounterRandom;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TupleDataPlanTest {
+    private static final CounterRandom RANDOM = CounterRandom.of("public.t.col");
+
+    private static long[] fill(TupleDataPlan plan, int size, int[] rowPermutation, long counterStart, long cumulativeError) {
+        ColumnBuffer buffer = new ColumnBuffer(plan.getWidth(), size);
+        plan.fill(buffer, rowPermutation, RANDOM, counterStart, cumulativeError);
+        return IntStream.range(0, size).mapToLong(buffer::get).toArray();
+    }
+
+    @Test
+    void testFillWithBound() {
+        SortedMap<Long, BigDecimal> paraData2Probability = new TreeMap<>();
+        paraData2Probability.put(10L, BigDecimal.valueOf(0.25));
+        paraData2Probability.put(20L, BigDecimal.valueOf(0.5));
+        paraData2Probability.put(30L, BigDecimal.valueOf(0.125));
+        SortedMap<BigDecimal, Long> offset2Pv = new TreeMap<>();
+        offset2Pv.put(BigDecimal.valueOf(0.25), 20L);
+        TupleDataPlan plan = new TupleDataPlan(8, paraData2Probability, offset2Pv);
+        assertEquals(ColumnBuffer.Width.BYTE, plan.getWidth());
+        long[] columnData = fill(plan, 8, null, 0, 0);
+        assertTrue(Arrays.stream(columnData, 0, 2).allMatch(value -> value >= 1 && value <= 10));
+        assertTrue(Arrays.stream(columnData, 2, 6).allMatch(value -> value == 20));
+        assertTrue(columnData[6] >= 21 && columnData[6] <= 30);
+        assertEquals(Long.MIN_VALUE, columnData[7]);
+        // 相同的计数器生成相同的数据
+        assertArrayEquals(columnData, fill(plan, 8, null, 0, 0));
+    }
+
+    @Test
+    void testCumulativeError() {
+        SortedMap<Long, BigDecimal> paraData2Probability = new TreeMap<>();
+        paraData2Probability.put(5L, BigDecimal.valueOf(0.5));
+        TupleDataPlan plan = new TupleDataPlan(3, paraData2Probability, new TreeMap<>());
+        ColumnBuffer buffer = new ColumnBuffer(plan.getWidth(), 3);
+        long cumulativeError = plan.fill(buffer, null, RANDOM, 0, 0);
+        assertEquals(TupleDataPlan.ONE / 2, cumulativeError);
+        assertEquals(Long.MIN_VALUE, buffer.get(2));
+        assertEquals(0, plan.fill(buffer, null, RANDOM, 3, cumulativeError));
+        assertFalse(buffer.isNull(0));
+        assertTrue(buffer.isNull(1) && buffer.isNull(2));
+    }
+
+    @Test
+    void testFillWithPermutation() {
+        for (int size : new int[]{1, 2, 1000, 1025}) {
+            int[] rowPermutation = RowPermutation.generate(size, 42);
+            assertArrayEquals(IntStream.range(0, size).toArray(), Arrays.stream(rowPermutation).sorted().toArray());
+        }
+        SortedMap<Long, BigDecimal> paraData2Probability = new TreeMap<>();
+        paraData2Probability.put(1L, BigDecimal.valueOf(0.3));
+        paraData2Probability.put(2L, BigDecimal.valueOf(0.2));
+        paraData2Probability.put(3L, BigDecimal.valueOf(0.4));
+        SortedMap<BigDecimal, Long> offset2Pv = new TreeMap<>();
+        offset2Pv.put(BigDecimal.valueOf(0.3), 2L);
+        TupleDataPlan plan = new TupleDataPlan(1000, paraData2Probability, offset2Pv);
+        long[] orderedData = fill(plan, 1000, null, 0, 0);
+        int[] rowPermutation = RowPermutation.generate(1000, 7);
+        long[] shuffledData = fill(plan, 1000, rowPermutation, 0, 0);
+        for (int rowId = 0; rowId < 1000; rowId++) {
+            assertEquals(orderedData[rowId], shuffledData[rowPermutation[rowId]]);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ecnu.db.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.LongBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchArenaTest {
+    @Test
+    void testReuse() {
+        BatchArena arena = BatchArena.getInstance();
+        arena.setBatchSize(100);
+        LongBuffer longs = arena.allocateLongBuffer(100);
+        int[] ints = arena.allocateInts(100);
+        long[] bitmap = arena.allocateBitmap(100);
+        assertTrue(longs.isDirect());
+        assertEquals(2, bitmap.length);
+        arena.free(longs);
+        arena.free(ints);
+        arena.freeBitmap(bitmap);
+        long reuseCount = arena.getReuseCount();
+        assertSame(longs, arena.allocateLongBuffer(100));
+        assertSame(ints, arena.allocateInts(100));
+        assertSame(bitmap, arena.allocateBitmap(100));
+        assertEquals(reuseCount + 3, arena.getReuseCount());
+        // 长度与批大小不同的缓冲区不复用
+        LongBuffer lastBatch = arena.allocateLongBuffer(80);
+        long reservedBytes = arena.getReservedBytes();
+        arena.free(lastBatch);
+        assertEquals(reservedBytes - 80 * Long.BYTES, arena.getReservedBytes());
+        assertNotSame(lastBatch, arena.allocateLongBuffer(80));
+        // 批大小变化时丢弃空闲缓冲区
+        arena.free(longs);
+        arena.setBatchSize(200);
+        assertNotSame(longs, arena.allocateLongBuffer(100));
+        assertTrue(arena.getPeakBytes() >= arena.getReservedBytes());
+    }
+}